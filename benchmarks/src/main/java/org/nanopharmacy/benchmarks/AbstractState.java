@@ -0,0 +1,40 @@
+package org.nanopharmacy.benchmarks;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Estado por hilo que entrega los abstracts del corpus en orden ciclico, uno por operacion, para
+ * que cada medicion recorra textos de distinto tamaño y contenido.
+ */
+@State(Scope.Thread)
+public class AbstractState {
+
+    /** Abstracts del corpus */
+    String[] abstracts;
+
+    /** Posicion del siguiente abstract */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> corpus = Corpus.abstracts();
+        this.abstracts = corpus.toArray(new String[corpus.size()]);
+        this.next = 0;
+    }
+
+    /**
+     * Obtiene el siguiente abstract del corpus.
+     * @return el abstract
+     */
+    public String next() {
+        String text = this.abstracts[this.next];
+        if (++this.next == this.abstracts.length) {
+            this.next = 0;
+        }
+        return text;
+    }
+}
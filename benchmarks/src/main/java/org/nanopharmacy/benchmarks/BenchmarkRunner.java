@@ -0,0 +1,42 @@
+package org.nanopharmacy.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta los benchmarks con el perfilador de recoleccion de basura de JMH, que reporta la tasa de
+ * asignacion de memoria ({@literal gc.alloc.rate.norm}, bytes por operacion) junto a cada tiempo.
+ * <p>
+ * Uso, sin acceso a la red una vez que las dependencias estan en el repositorio local de Maven:
+ * </p>
+ * <pre>
+ * mvn -o install                          (en la raiz del proyecto)
+ * mvn -o -f benchmarks/pom.xml package
+ * java -jar benchmarks/target/benchmarks.jar [opciones de JMH] [expresion de benchmarks]
+ * </pre>
+ * <p>
+ * Acepta las mismas opciones de linea de comandos que JMH; por ejemplo,
+ * {@literal java -jar benchmarks.jar Text -f 2}. Para usar un corpus propio se agrega
+ * {@literal -jvmArgsAppend -Dnanopharmacy.bench.corpus=ruta}, como se describe en {@link Corpus}.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,167 @@
+package org.nanopharmacy.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Textos de entrada de los benchmarks: abstracts con el marcado HTML, las entidades y las comillas
+ * que contienen los registros de PubMed, y las frases de un glosario.
+ * <p>
+ * Por omision, los abstracts se generan combinando, con una semilla fija, las oraciones de
+ * {@literal sentences.txt}, de modo que todas las ejecuciones procesan exactamente el mismo texto
+ * sin necesidad de acceso a la red. Para medir con publicaciones reales, la propiedad del sistema
+ * {@literal nanopharmacy.bench.corpus} puede indicar un archivo local: si su extension es
+ * {@literal .xml} se toma como una respuesta de efetch de PubMed y se usa el contenido de cada
+ * elemento {@literal AbstractText}; en otro caso, cada linea no vacia es un abstract.
+ * </p>
+ */
+public final class Corpus {
+
+    /** Propiedad del sistema con la ruta de un archivo de abstracts */
+    public static final String CORPUS_PROPERTY = "nanopharmacy.bench.corpus";
+
+    /** Numero de abstracts generados cuando no se indica un archivo */
+    public static final int GENERATED_SIZE = Integer.getInteger("nanopharmacy.bench.corpus.size", 500);
+
+    /** Simbolo del gen de los esquemas de busqueda simulados */
+    public static final String GENE = "BRAF";
+
+    /** Alteracion molecular de los esquemas de busqueda simulados */
+    public static final String ALTERATION = "V600E";
+
+    /** Semilla con que se combinan las oraciones */
+    private static final long SEED = 0x4E50L;
+
+    /** Contenido de los elementos {@literal AbstractText} de una respuesta de efetch */
+    private static final Pattern ABSTRACT_TEXT =
+            Pattern.compile("<AbstractText[^>]*>(.*?)</AbstractText>", Pattern.DOTALL);
+
+    /** Abstracts del corpus, cargados una sola vez */
+    private static volatile List<String> abstracts;
+
+    private Corpus() {
+    }
+
+    /**
+     * Obtiene los abstracts del corpus.
+     * @return lista inmutable de abstracts
+     */
+    public static List<String> abstracts() {
+
+        List<String> current = Corpus.abstracts;
+        if (current == null) {
+            synchronized (Corpus.class) {
+                current = Corpus.abstracts;
+                if (current == null) {
+                    String path = System.getProperty(CORPUS_PROPERTY);
+                    current = Collections.unmodifiableList(
+                            path != null ? Corpus.readFile(Paths.get(path)) : Corpus.generate(GENERATED_SIZE));
+                    if (current.isEmpty()) {
+                        throw new IllegalStateException("El corpus no contiene abstracts: " + path);
+                    }
+                    Corpus.abstracts = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Obtiene las frases del glosario de ejemplo.
+     * @return lista de frases
+     */
+    public static List<String> glossary() {
+        return Corpus.readResource("glossary.txt");
+    }
+
+    /**
+     * Genera abstracts combinando las oraciones de {@literal sentences.txt}.
+     * @param size numero de abstracts a generar
+     * @return los abstracts generados
+     */
+    static List<String> generate(int size) {
+
+        List<String> sentences = Corpus.readResource("sentences.txt");
+        Random random = new Random(SEED);
+        List<String> result = new ArrayList<>(size);
+        StringBuilder sb = new StringBuilder(2048);
+        for (int i = 0; i < size; i++) {
+            sb.setLength(0);
+            int count = 6 + random.nextInt(10);
+            for (int j = 0; j < count; j++) {
+                if (j > 0) {
+                    sb.append(' ');
+                }
+                sb.append(sentences.get(random.nextInt(sentences.size())));
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Lee los abstracts de un archivo local.
+     * @param path ruta del archivo
+     * @return los abstracts del archivo
+     */
+    static List<String> readFile(Path path) {
+
+        try {
+            String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            List<String> result = new ArrayList<>();
+            if (path.toString().endsWith(".xml")) {
+                Matcher m = ABSTRACT_TEXT.matcher(content);
+                while (m.find()) {
+                    result.add(m.group(1));
+                }
+            } else {
+                for (String line : content.split("\r?\n")) {
+                    if (!line.trim().isEmpty()) {
+                        result.add(line);
+                    }
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lee las lineas de un recurso de este paquete, omitiendo las vacias y los comentarios.
+     * @param name nombre del recurso
+     * @return las lineas del recurso
+     */
+    private static List<String> readResource(String name) {
+
+        try (InputStream in = Corpus.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("No se encontro el recurso " + name);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
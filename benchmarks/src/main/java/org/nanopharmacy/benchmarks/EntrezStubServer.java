@@ -0,0 +1,644 @@
+package org.nanopharmacy.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.nanopharmacy.eutility.impl.ESearchImpl;
+
+/**
+ * Servidor HTTP local que imita los servicios esearch, esummary y efetch de E-utilities,
+ * reproduciendo respuestas grabadas, para realizar pruebas de carga de {@link ESearchImpl} sin
+ * realizar peticiones a la NCBI. Las instancias de {@code ESearchImpl} se dirigen a este servidor
+ * con la propiedad del sistema {@literal nanopharmacy.entrez.baseUrl} o con el constructor
+ * {@link ESearchImpl#ESearchImpl(org.nanopharmacy.eutility.impl.EntrezTransport, String,
+ * org.nanopharmacy.eutility.impl.EntrezRateLimiter)}, usando {@link #getBaseUrl()}.
+ * <p>
+ * Cada respuesta se busca, en este orden, en:
+ * </p>
+ * <ol>
+ * <li>{@literal <servicio>/<base de datos>/<huella>.xml} del directorio de respuestas, donde la
+ * huella identifica los parametros de la peticion, salvo los que cambian entre sesiones
+ * ({@literal WebEnv}, {@literal query_key}) y los de identificacion ({@literal tool},
+ * {@literal email}, {@literal api_key});</li>
+ * <li>{@literal <servicio>/<base de datos>.xml} del directorio de respuestas;</li>
+ * <li>las respuestas sinteticas incluidas en este modulo, con la misma estructura.</li>
+ * </ol>
+ * <p>
+ * En modo de grabacion, cada peticion se reenvia al servidor real y su respuesta se guarda en el
+ * directorio de respuestas, tanto con su huella como, si aun no existe, como respuesta general de
+ * la base de datos.
+ * </p>
+ * <p>
+ * Para simular las condiciones de la red y de la NCBI se pueden configurar una latencia fija mas
+ * una variacion aleatoria, una proporcion de respuestas de error, una proporcion de respuestas
+ * interrumpidas a la mitad, un limite de peticiones por segundo (las peticiones que lo exceden
+ * reciben el estado 429, como en E-utilities) y un limite de bytes por segundo por respuesta.
+ * La configuracion debe establecerse antes de {@link #start(int)}.
+ * </p>
+ */
+public class EntrezStubServer {
+
+    /** Ruta en que el servidor atiende las peticiones, equivalente a la de E-utilities */
+    public static final String CONTEXT = "/entrez/eutils/";
+
+    /** Prefijo de las respuestas incluidas como recursos de este paquete */
+    private static final String RESOURCE_ROOT = "fixtures/";
+
+    /** Parametros que no forman parte de la huella de una peticion */
+    private static final Set<String> IGNORED_PARAMS =
+            new HashSet<>(Arrays.asList("tool", "email", "api_key", "WebEnv", "query_key"));
+
+    /** Tamaño de los bloques en que se escriben las respuestas */
+    private static final int CHUNK_SIZE = 8192;
+
+    /** Directorio de respuestas; {@literal null} si solo se usan las incluidas en el modulo */
+    private final Path fixtures;
+
+    /** Respuestas ya leidas, indexadas por su ruta relativa; {@code byte[0]} si no existe */
+    private final ConcurrentHashMap<String, byte[]> cache = new ConcurrentHashMap<>();
+
+    /** URL base del servidor real en modo de grabacion; {@literal null} para reproducir */
+    private String upstream;
+
+    /** Latencia fija, en milisegundos, de cada respuesta */
+    private long latencyMillis;
+
+    /** Variacion aleatoria maxima, en milisegundos, que se suma a la latencia */
+    private long jitterMillis;
+
+    /** Proporcion, entre 0 y 1, de peticiones que reciben una respuesta de error */
+    private double errorRate;
+
+    /** Estado HTTP de las respuestas de error */
+    private int errorStatus = 503;
+
+    /** Proporcion, entre 0 y 1, de respuestas que se interrumpen a la mitad */
+    private double truncateRate;
+
+    /** Peticiones por segundo atendidas; 0 si no hay limite */
+    private double requestsPerSecond;
+
+    /** Bytes por segundo que se escriben en cada respuesta; 0 si no hay limite */
+    private long bytesPerSecond;
+
+    /** Numero de hilos que atienden las peticiones */
+    private int threads = 16;
+
+    /** Fichas disponibles del limite de peticiones por segundo */
+    private double permits;
+
+    /** Momento, en nanosegundos, de la ultima actualizacion de {@link #permits} */
+    private long lastRefill;
+
+    /** Servidor HTTP; {@literal null} si no se ha iniciado */
+    private HttpServer server;
+
+    /** Hilos que atienden las peticiones */
+    private ExecutorService executor;
+
+    /** Peticiones recibidas */
+    private final AtomicLong requests = new AtomicLong();
+
+    /** Respuestas completas enviadas */
+    private final AtomicLong served = new AtomicLong();
+
+    /** Respuestas de error inyectadas */
+    private final AtomicLong errors = new AtomicLong();
+
+    /** Respuestas interrumpidas */
+    private final AtomicLong truncated = new AtomicLong();
+
+    /** Peticiones rechazadas por exceder el limite de peticiones por segundo */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** Peticiones sin respuesta grabada */
+    private final AtomicLong notFound = new AtomicLong();
+
+    /** Respuestas grabadas del servidor real */
+    private final AtomicLong recorded = new AtomicLong();
+
+    /**
+     * Crea un servidor que reproduce las respuestas del directorio especificado.
+     * @param fixtures directorio de respuestas; {@literal null} para usar solo las incluidas en el modulo
+     */
+    public EntrezStubServer(Path fixtures) {
+        this.fixtures = fixtures;
+    }
+
+    /**
+     * Establece la latencia de cada respuesta.
+     * @param latencyMillis latencia fija, en milisegundos
+     * @param jitterMillis variacion aleatoria maxima, en milisegundos, que se suma a la latencia
+     * @return esta instancia
+     */
+    public EntrezStubServer setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = Math.max(0L, latencyMillis);
+        this.jitterMillis = Math.max(0L, jitterMillis);
+        return this;
+    }
+
+    /**
+     * Establece la proporcion de peticiones que reciben una respuesta de error.
+     * @param errorRate proporcion, entre 0 y 1
+     * @param errorStatus estado HTTP de las respuestas de error, por ejemplo 500 o 503
+     * @return esta instancia
+     */
+    public EntrezStubServer setErrorRate(double errorRate, int errorStatus) {
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    /**
+     * Establece la proporcion de respuestas que se interrumpen a la mitad, cerrando la conexion.
+     * @param truncateRate proporcion, entre 0 y 1
+     * @return esta instancia
+     */
+    public EntrezStubServer setTruncateRate(double truncateRate) {
+        this.truncateRate = truncateRate;
+        return this;
+    }
+
+    /**
+     * Limita el numero de peticiones atendidas por segundo.
+     * @param requestsPerSecond peticiones por segundo; 0 si no hay limite
+     * @return esta instancia
+     */
+    public EntrezStubServer setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = Math.max(0.0, requestsPerSecond);
+        return this;
+    }
+
+    /**
+     * Limita la velocidad con que se escribe cada respuesta.
+     * @param bytesPerSecond bytes por segundo; 0 si no hay limite
+     * @return esta instancia
+     */
+    public EntrezStubServer setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0L, bytesPerSecond);
+        return this;
+    }
+
+    /**
+     * Establece el numero de hilos que atienden las peticiones.
+     * @param threads numero de hilos
+     * @return esta instancia
+     */
+    public EntrezStubServer setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads debe ser mayor a cero");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Activa el modo de grabacion: cada peticion se reenvia al servidor especificado y su respuesta
+     * se guarda en el directorio de respuestas.
+     * @param upstream URL base de E-utilities, por ejemplo {@link ESearchImpl#DEFAULT_BASE_URL}
+     * @return esta instancia
+     */
+    public EntrezStubServer setRecordFrom(String upstream) {
+        if (this.fixtures == null) {
+            throw new IllegalStateException("El modo de grabacion requiere un directorio de respuestas");
+        }
+        this.upstream = upstream.endsWith("/") ? upstream : upstream + "/";
+        return this;
+    }
+
+    /**
+     * Inicia el servidor en la interfaz local.
+     * @param port puerto; 0 para usar uno libre
+     * @return esta instancia
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public synchronized EntrezStubServer start(int port) throws IOException {
+
+        if (this.server != null) {
+            throw new IllegalStateException("El servidor ya fue iniciado");
+        }
+        this.permits = Math.max(1.0, this.requestsPerSecond);
+        this.lastRefill = System.nanoTime();
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "entrez-stub");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 256);
+        this.server.createContext(CONTEXT, this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        return this;
+    }
+
+    /**
+     * Detiene el servidor.
+     */
+    public synchronized void stop() {
+        if (this.server != null) {
+            this.server.stop(0);
+            this.executor.shutdownNow();
+            this.server = null;
+        }
+    }
+
+    /**
+     * Obtiene la URL base que deben usar las instancias de {@link ESearchImpl}.
+     * @return la URL base del servidor, terminada en {@literal /}
+     */
+    public String getBaseUrl() {
+        if (this.server == null) {
+            throw new IllegalStateException("El servidor no ha sido iniciado");
+        }
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + CONTEXT;
+    }
+
+    /**
+     * Atiende una peticion.
+     * @param exchange la peticion y su respuesta
+     * @throws IOException en caso de problemas al escribir la respuesta
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            this.requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+            String service = path.endsWith(".fcgi") ? path.substring(0, path.length() - 5) : path;
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            Map<String, String> params = EntrezStubServer.parseQuery(rawQuery);
+            String db = params.containsKey("db") ? params.get("db") : "pubmed";
+
+            if (!this.acquire()) {
+                this.rejected.incrementAndGet();
+                this.send(exchange, 429, "{\"error\":\"API rate limit exceeded\"}", "application/json");
+                return;
+            }
+            this.delay();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (this.errorRate > 0 && random.nextDouble() < this.errorRate) {
+                this.errors.incrementAndGet();
+                this.send(exchange, this.errorStatus, "<ERROR>Injected error</ERROR>", "text/xml");
+                return;
+            }
+
+            String exact = service + "/" + db + "/" + EntrezStubServer.fingerprint(params) + ".xml";
+            String general = service + "/" + db + ".xml";
+            byte[] body;
+            if (this.upstream != null) {
+                body = this.record(service, rawQuery, exact, general, exchange);
+                if (body == null) {
+                    return;
+                }
+            } else {
+                body = this.lookup(exact);
+                if (body.length == 0) {
+                    body = this.lookup(general);
+                }
+            }
+            if (body.length == 0) {
+                this.notFound.incrementAndGet();
+                this.send(exchange, 404, "<ERROR>No fixture for " + general + "</ERROR>", "text/xml");
+                return;
+            }
+
+            boolean truncate = this.truncateRate > 0 && random.nextDouble() < this.truncateRate;
+            exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            this.write(out, body, truncate ? body.length / 2 : body.length);
+            if (truncate) {
+                this.truncated.incrementAndGet();
+                // cerrar el intercambio sin completar el cuerpo corta la conexion
+                return;
+            }
+            out.flush();
+            this.served.incrementAndGet();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            Logger.getLogger(EntrezStubServer.class.getName()).log(Level.FINE, null, e);
+        } finally {
+            try {
+                exchange.close();
+            } catch (RuntimeException e) {
+                Logger.getLogger(EntrezStubServer.class.getName()).log(Level.FINE, null, e);
+            }
+        }
+    }
+
+    /**
+     * Obtiene una ficha del limite de peticiones por segundo, sin esperar.
+     * @return {@literal true} si la peticion puede atenderse
+     */
+    private boolean acquire() {
+
+        if (this.requestsPerSecond <= 0) {
+            return true;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            double max = Math.max(1.0, this.requestsPerSecond);
+            this.permits = Math.min(max, this.permits + (now - this.lastRefill) / 1e9 * this.requestsPerSecond);
+            this.lastRefill = now;
+            if (this.permits < 1.0) {
+                return false;
+            }
+            this.permits -= 1.0;
+            return true;
+        }
+    }
+
+    /**
+     * Espera la latencia configurada.
+     * @throws InterruptedException si el hilo es interrumpido durante la espera
+     */
+    private void delay() throws InterruptedException {
+
+        long millis = this.latencyMillis;
+        if (this.jitterMillis > 0) {
+            millis += ThreadLocalRandom.current().nextLong(this.jitterMillis + 1);
+        }
+        if (millis > 0) {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+    }
+
+    /**
+     * Escribe el cuerpo de una respuesta respetando el limite de bytes por segundo.
+     * @param out flujo de la respuesta
+     * @param body contenido de la respuesta
+     * @param length numero de bytes a escribir
+     * @throws IOException en caso de problemas al escribir
+     * @throws InterruptedException si el hilo es interrumpido durante la espera
+     */
+    private void write(OutputStream out, byte[] body, int length) throws IOException, InterruptedException {
+
+        if (this.bytesPerSecond <= 0) {
+            out.write(body, 0, length);
+            return;
+        }
+        long start = System.nanoTime();
+        for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, length - offset);
+            out.write(body, offset, count);
+            out.flush();
+            long due = start + (offset + count) * 1000000000L / this.bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
+    /**
+     * Envia una respuesta breve, sin latencia adicional.
+     * @param exchange la peticion y su respuesta
+     * @param status estado HTTP
+     * @param message cuerpo de la respuesta
+     * @param contentType tipo de contenido del cuerpo
+     * @throws IOException en caso de problemas al escribir la respuesta
+     */
+    private void send(HttpExchange exchange, int status, String message, String contentType) throws IOException {
+
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Obtiene una respuesta grabada del directorio de respuestas o de los recursos del modulo.
+     * @param relative ruta relativa de la respuesta
+     * @return el contenido de la respuesta, o un arreglo vacio si no existe
+     */
+    private byte[] lookup(String relative) {
+
+        byte[] body = this.cache.get(relative);
+        if (body == null) {
+            body = new byte[0];
+            try {
+                Path file = this.fixtures != null ? this.fixtures.resolve(relative) : null;
+                if (file != null && Files.isRegularFile(file)) {
+                    body = Files.readAllBytes(file);
+                } else if (relative.indexOf('/') == relative.lastIndexOf('/')) {
+                    try (InputStream in = EntrezStubServer.class.getResourceAsStream(RESOURCE_ROOT + relative)) {
+                        if (in != null) {
+                            body = EntrezStubServer.readAll(in);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                Logger.getLogger(EntrezStubServer.class.getName()).log(Level.SEVERE, relative, e);
+            }
+            this.cache.put(relative, body);
+        }
+        return body;
+    }
+
+    /**
+     * Reenvia una peticion al servidor real y guarda su respuesta.
+     * @param service servicio solicitado
+     * @param rawQuery parametros de la peticion, sin decodificar
+     * @param exact ruta relativa de la respuesta para esta peticion
+     * @param general ruta relativa de la respuesta general de la base de datos
+     * @param exchange la peticion y su respuesta, por la que se reenvian los errores del servidor real
+     * @return el contenido de la respuesta, o {@literal null} si ya se respondio con un error
+     * @throws IOException en caso de problemas con el servidor real o al guardar la respuesta
+     */
+    private byte[] record(String service, String rawQuery, String exact, String general, HttpExchange exchange)
+            throws IOException {
+
+        URL url = new URL(this.upstream + service + ".fcgi" + (rawQuery != null ? "?" + rawQuery : ""));
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(30000);
+        conn.setReadTimeout(300000);
+        int status = conn.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            InputStream err = conn.getErrorStream();
+            String message = err != null ? new String(EntrezStubServer.readAll(err), StandardCharsets.UTF_8) : "";
+            this.send(exchange, status, message, "text/xml");
+            return null;
+        }
+        byte[] body;
+        try (InputStream in = conn.getInputStream()) {
+            body = EntrezStubServer.readAll(in);
+        }
+        this.save(exact, body, true);
+        this.save(general, body, false);
+        this.recorded.incrementAndGet();
+        return body;
+    }
+
+    /**
+     * Guarda una respuesta en el directorio de respuestas.
+     * @param relative ruta relativa de la respuesta
+     * @param body contenido de la respuesta
+     * @param replace si es {@literal false}, no se reemplaza una respuesta existente
+     * @throws IOException en caso de problemas al escribir el archivo
+     */
+    private void save(String relative, byte[] body, boolean replace) throws IOException {
+
+        Path file = this.fixtures.resolve(relative);
+        synchronized (this.cache) {
+            if (!replace && Files.exists(file)) {
+                return;
+            }
+            Files.createDirectories(file.getParent());
+            Files.write(file, body);
+            this.cache.put(relative, body);
+        }
+    }
+
+    /**
+     * Calcula la huella de una peticion a partir de sus parametros, omitiendo los de
+     * {@link #IGNORED_PARAMS}.
+     * @param params parametros decodificados de la peticion
+     * @return la huella en hexadecimal
+     */
+    static String fingerprint(Map<String, String> params) {
+
+        StringBuilder canonical = new StringBuilder(256);
+        for (Map.Entry<String, String> param : new TreeMap<>(params).entrySet()) {
+            if (!IGNORED_PARAMS.contains(param.getKey())) {
+                canonical.append(param.getKey()).append('=').append(param.getValue()).append('&');
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+                    canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodifica los parametros de una peticion.
+     * @param rawQuery parametros sin decodificar; puede ser {@literal null}
+     * @return los parametros de la peticion
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+
+        Map<String, String> params = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                params.put(name, value);
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            Logger.getLogger(EntrezStubServer.class.getName()).log(Level.FINE, rawQuery, e);
+        }
+        return params;
+    }
+
+    /**
+     * Lee todo el contenido de un flujo.
+     * @param in el flujo
+     * @return el contenido leido
+     * @throws IOException en caso de problemas con la lectura
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(CHUNK_SIZE);
+        byte[] buffer = new byte[CHUNK_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return "EntrezStubServer{requests=" + this.requests.get() + ", served=" + this.served.get()
+                + ", errors=" + this.errors.get() + ", truncated=" + this.truncated.get()
+                + ", rejected=" + this.rejected.get() + ", notFound=" + this.notFound.get()
+                + ", recorded=" + this.recorded.get() + "}";
+    }
+
+    /**
+     * Inicia el servidor desde la linea de comandos. Opciones:
+     * <pre>
+     * --port N               puerto (8089)
+     * --fixtures DIR         directorio de respuestas
+     * --record [URL]         graba las respuestas del servidor real (E-utilities de la NCBI)
+     * --latency MS           latencia fija de cada respuesta (0)
+     * --jitter MS            variacion aleatoria de la latencia (0)
+     * --error-rate R         proporcion de respuestas de error (0)
+     * --error-status N       estado HTTP de las respuestas de error (503)
+     * --truncate-rate R      proporcion de respuestas interrumpidas (0)
+     * --rps N                peticiones por segundo atendidas (sin limite)
+     * --bytes-per-second N   velocidad de escritura de cada respuesta (sin limite)
+     * --threads N            hilos que atienden las peticiones (16)
+     * </pre>
+     * @param args opciones de linea de comandos
+     * @throws IOException si no se puede iniciar el servidor
+     * @throws InterruptedException si el hilo principal es interrumpido
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        Map<String, String> options = new TreeMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (!name.startsWith("--")) {
+                throw new IllegalArgumentException("Opcion desconocida: " + name);
+            }
+            boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+            options.put(name.substring(2), hasValue ? args[++i] : "");
+        }
+        String dir = options.get("fixtures");
+        EntrezStubServer stub = new EntrezStubServer(dir != null ? Paths.get(dir) : null)
+                .setLatency(Long.parseLong(options.getOrDefault("latency", "0")),
+                        Long.parseLong(options.getOrDefault("jitter", "0")))
+                .setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")),
+                        Integer.parseInt(options.getOrDefault("error-status", "503")))
+                .setTruncateRate(Double.parseDouble(options.getOrDefault("truncate-rate", "0")))
+                .setRequestsPerSecond(Double.parseDouble(options.getOrDefault("rps", "0")))
+                .setBytesPerSecond(Long.parseLong(options.getOrDefault("bytes-per-second", "0")))
+                .setThreads(Integer.parseInt(options.getOrDefault("threads", "16")));
+        if (options.containsKey("record")) {
+            String upstream = options.get("record");
+            stub.setRecordFrom(upstream.isEmpty() ? ESearchImpl.DEFAULT_BASE_URL : upstream);
+        }
+        stub.start(Integer.parseInt(options.getOrDefault("port", "8089")));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(stub)));
+        System.out.println("Entrez stub: -Dnanopharmacy.entrez.baseUrl=" + stub.getBaseUrl());
+        Thread.currentThread().join();
+    }
+}
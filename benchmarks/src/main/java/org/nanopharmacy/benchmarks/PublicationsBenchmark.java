@@ -0,0 +1,64 @@
+package org.nanopharmacy.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.nanopharmacy.eutility.impl.ESearchImpl;
+import org.nanopharmacy.eutility.impl.EntrezRateLimiter;
+import org.nanopharmacy.eutility.impl.HttpTransport;
+import org.nanopharmacy.eutility.impl.NoDataException;
+import org.nanopharmacy.eutility.impl.UseHistoryException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendimiento de extremo a extremo de {@link ESearchImpl#getPublicationsInfo(String, String, int, int, int, int)}:
+ * busqueda en PubMed y PubMed Central, descarga de los registros, interpretacion y calculo de
+ * relevancia, contra un {@link EntrezStubServer} local. La latencia simulada de cada respuesta se
+ * controla con el parametro {@code latencyMillis}; el limite de peticiones de la NCBI no se aplica.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PublicationsBenchmark {
+
+    /** Latencia, en milisegundos, de cada respuesta del servidor simulado */
+    @Param({"0", "50"})
+    public long latencyMillis;
+
+    /** Servidor simulado */
+    private EntrezStubServer stub;
+
+    /** Cliente dirigido al servidor simulado */
+    private ESearchImpl esearch;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.stub = new EntrezStubServer(null).setLatency(this.latencyMillis, this.latencyMillis / 5).start(0);
+        this.esearch = new ESearchImpl(new HttpTransport(16, 30000), this.stub.getBaseUrl(),
+                new EntrezRateLimiter(1000000.0, null, "NanoPharmacyBenchmarks", null));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.stub.stop();
+    }
+
+    @Benchmark
+    public JSONObject getPublicationsInfo() throws NoDataException, UseHistoryException, IOException {
+        return this.esearch.getPublicationsInfo(Corpus.GENE, Corpus.ALTERATION, 0, 0, 0, 12);
+    }
+}
@@ -0,0 +1,57 @@
+package org.nanopharmacy.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.nanopharmacy.utils.KeywordScanner;
+import org.nanopharmacy.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calculo de relevancia de un abstract: {@link Utils#getRanking(String, String, String)} y la
+ * busqueda de las frases del glosario como palabras completas que realiza
+ * {@code Analizer.calculateRanking}. Cada operacion procesa un abstract del corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingBenchmark {
+
+    /** Automata con las frases del glosario, como lo construye {@code Analizer} */
+    private KeywordScanner glossary;
+
+    /** Numero de frases del glosario */
+    private int phrases;
+
+    @Setup
+    public void setUp() {
+        this.glossary = new KeywordScanner(Corpus.glossary(), true);
+        this.phrases = this.glossary.size();
+    }
+
+    @Benchmark
+    public int getRanking(AbstractState state) {
+        return Utils.getRanking(state.next(), Corpus.GENE, Corpus.ALTERATION);
+    }
+
+    @Benchmark
+    public long scanTerms(AbstractState state) {
+        return Utils.scanTerms(state.next(), Corpus.ALTERATION);
+    }
+
+    @Benchmark
+    public int glossaryRanking(AbstractState state) {
+        int ranking = this.glossary.scan(state.next()).cardinality();
+        return Math.round(((float) ranking / (float) this.phrases) * 10);
+    }
+}
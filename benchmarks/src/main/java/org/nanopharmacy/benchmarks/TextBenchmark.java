@@ -0,0 +1,86 @@
+package org.nanopharmacy.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.nanopharmacy.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extraccion de texto de los fragmentos HTML de un abstract con {@link Utils.TEXT#parseHTML(String)}
+ * y reemplazo de comillas con {@link Utils.TEXT#parseTextJson(String)}, los pasos que
+ * {@code Utils.ENG.setPropArticle} aplica a cada titulo, referencia y seccion del abstract.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+
+    /**
+     * Estado por hilo con el texto ya extraido de cada abstract, para medir el reemplazo de
+     * comillas por separado, y un buffer reutilizable.
+     */
+    @State(Scope.Thread)
+    public static class PlainState {
+
+        /** Texto extraido de cada abstract del corpus */
+        private String[] texts;
+
+        /** Posicion del siguiente texto */
+        private int next;
+
+        /** Buffer reutilizado entre operaciones */
+        final StringBuilder buffer = new StringBuilder(4096);
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, InterruptedException {
+            this.texts = new String[Corpus.abstracts().size()];
+            for (int i = 0; i < this.texts.length; i++) {
+                this.texts[i] = Utils.TEXT.parseHTML(Corpus.abstracts().get(i));
+            }
+        }
+
+        /** @return el siguiente texto extraido */
+        String next() {
+            String text = this.texts[this.next];
+            if (++this.next == this.texts.length) {
+                this.next = 0;
+            }
+            return text;
+        }
+    }
+
+    @Benchmark
+    public String parseHTML(AbstractState state) throws IOException, InterruptedException {
+        return Utils.TEXT.parseHTML(state.next());
+    }
+
+    @Benchmark
+    public int parseHTMLInto(AbstractState state, PlainState plain) throws IOException {
+        StringBuilder out = plain.buffer;
+        out.setLength(0);
+        Utils.TEXT.parseHTML(state.next(), out);
+        return out.length();
+    }
+
+    @Benchmark
+    public String parseTextJson(PlainState plain) {
+        return Utils.TEXT.parseTextJson(plain.next());
+    }
+
+    @Benchmark
+    public String parseHTMLThenTextJson(AbstractState state) throws IOException, InterruptedException {
+        return Utils.TEXT.parseTextJson(Utils.TEXT.parseHTML(state.next()));
+    }
+}
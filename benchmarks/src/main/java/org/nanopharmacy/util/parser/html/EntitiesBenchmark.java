@@ -0,0 +1,66 @@
+package org.nanopharmacy.util.parser.html;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.nanopharmacy.benchmarks.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodificacion de entidades HTML con {@link Entities#decode(String)}, que es de acceso de paquete;
+ * por eso este benchmark se declara en el paquete del analizador. Cada operacion decodifica una de
+ * las entidades que aparecen en el corpus, en el orden en que aparecen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntitiesBenchmark {
+
+    /** Entidades con nombre, decimales y hexadecimales, como las reconoce el analizador */
+    private static final Pattern ENTITY = Pattern.compile("&(#[xX]?[0-9a-fA-F]+|[a-zA-Z][a-zA-Z0-9]*);?");
+
+    /** Entidades del corpus */
+    private String[] entities;
+
+    /** Posicion de la siguiente entidad */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> found = new ArrayList<>();
+        for (String text : Corpus.abstracts()) {
+            Matcher m = ENTITY.matcher(text);
+            while (m.find()) {
+                found.add(m.group());
+            }
+        }
+        // referencias numericas, que el corpus generado no contiene
+        found.add("&#946;");
+        found.add("&#x3B2;");
+        this.entities = found.toArray(new String[found.size()]);
+    }
+
+    @Benchmark
+    public String decode() {
+        String entity = this.entities[this.next];
+        if (++this.next == this.entities.length) {
+            this.next = 0;
+        }
+        return Entities.decode(entity);
+    }
+}
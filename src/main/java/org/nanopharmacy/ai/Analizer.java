@@ -4,14 +4,21 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import org.nanopharmacy.utils.KeywordScanner;
+import org.nanopharmacy.utils.NanoSources;
+import org.nanopharmacy.utils.NanoSources.Source;
 import org.nanopharmacy.utils.Utils;
 import org.semanticwb.datamanager.DataList;
-import org.semanticwb.datamanager.DataMgr;
 import org.semanticwb.datamanager.DataObject;
 import org.semanticwb.datamanager.SWBDataSource;
 import org.semanticwb.datamanager.SWBScriptEngine;
@@ -24,13 +31,121 @@ import org.semanticwb.datamanager.SWBScriptEngine;
  */
 public class Analizer {
 
+    /**
+     * Milisegundos minimos entre dos lecturas del glosario; los cambios en {@literal Glossary} que no
+     * pasan por {@link #loadGlossary(String)} se reflejan a mas tardar tras este intervalo
+     */
+    public static final long GLOSSARY_CHECK_INTERVAL = Long.getLong("nanopharmacy.glossary.checkInterval", 60000L);
+
+    /** Numero maximo de automatas de frases que se conservan */
+    private static final int MAX_PHRASE_SCANNERS = 64;
+
+    /**
+     * Automatas de busqueda de las frases de cada esquema de busqueda, indexados por la lista de frases
+     * con que se construyeron. Estas listas son cortas; una lista distinta (por cambios en
+     * {@literal Analize}) genera un automata nuevo y los menos usados se descartan.
+     */
+    private static final Map<List<String>, KeywordScanner> PHRASE_SCANNERS =
+            new LinkedHashMap<List<String>, KeywordScanner>(16, 0.75F, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<String>, KeywordScanner> eldest) {
+                    return size() > MAX_PHRASE_SCANNERS;
+                }
+            };
+
+    /**
+     * Version del glosario; aumenta cada vez que se descartan los automatas, de modo que un glosario
+     * leido antes de ese momento no se conserva
+     */
+    private static final AtomicInteger GLOSSARY_VERSION = new AtomicInteger();
+
+    /** Evita que varios hilos lean el glosario al mismo tiempo */
+    private static final Object GLOSSARY_LOCK = new Object();
+
+    /** Frases del glosario y su automata, {@literal null} si no se han leido */
+    private static volatile PhraseSet glossary;
+
+    /**
+     * Obtiene las frases del glosario y su automata. El glosario se lee de {@literal Glossary} la
+     * primera vez, tras cada llamada a {@link #invalidatePhraseScanners()} y cuando han pasado
+     * {@link #GLOSSARY_CHECK_INTERVAL} milisegundos desde la ultima lectura. Si las frases leidas
+     * no cambiaron, se conserva el automata existente. Mientras un hilo vuelve a leer el glosario,
+     * los demas utilizan el anterior.
+     * @return las frases del glosario y su automata
+     */
+    private static PhraseSet getGlossary() {
+        long now = System.currentTimeMillis();
+        PhraseSet current = glossary;
+        if (current != null) {
+            if (now - current.checkedAt < GLOSSARY_CHECK_INTERVAL) {
+                return current;
+            }
+            current.checkedAt = now;
+        }
+        synchronized (GLOSSARY_LOCK) {
+            PhraseSet latest = glossary;
+            if (latest != null && latest != current) {
+                return latest;
+            }
+            int version = GLOSSARY_VERSION.get();
+            Iterator<DataObject> it = Analizer.getGlossaryList();
+            if (it == null) {
+                //si el glosario no pudo leerse, se conserva el anterior y se leera de nuevo
+                return latest != null ? latest : new PhraseSet(Collections.<String>emptyList(), now);
+            }
+            List<String> phrases = new ArrayList<>();
+            while (it.hasNext()) {
+                String s = it.next().getString("key");
+                if (s != null) {
+                    phrases.add(s);
+                }
+            }
+            PhraseSet next = latest != null && latest.phrases.equals(phrases) ? latest : new PhraseSet(phrases, now);
+            next.checkedAt = now;
+            //si el glosario cambio durante la lectura, se leera de nuevo
+            if (version == GLOSSARY_VERSION.get()) {
+                glossary = next;
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Obtiene el automata que busca, como palabras completas y sin distinguir mayusculas de minusculas,
+     * las frases especificadas. El automata se construye una sola vez por lista de frases.
+     * @param phrases lista de frases; el indice de cada frase corresponde al de los resultados del automata
+     * @return el automata para {@code phrases}
+     */
+    private static KeywordScanner getPhraseScanner(List<String> phrases) {
+        synchronized (PHRASE_SCANNERS) {
+            KeywordScanner scanner = PHRASE_SCANNERS.get(phrases);
+            if (scanner == null) {
+                List<String> key = new ArrayList<>(phrases);
+                scanner = new KeywordScanner(key, true);
+                PHRASE_SCANNERS.put(key, scanner);
+            }
+            return scanner;
+        }
+    }
+
+    /**
+     * Descarta el glosario leido y los automatas de frases construidos, para que se generen de nuevo
+     * con el contenido actual del glosario y de las frases de cada esquema de busqueda.
+     */
+    public static void invalidatePhraseScanners() {
+        GLOSSARY_VERSION.incrementAndGet();
+        glossary = null;
+        synchronized (PHRASE_SCANNERS) {
+            PHRASE_SCANNERS.clear();
+        }
+    }
+
     /**
      * Lee archivo txt de glosario e inserta su contenido en el datasource Glossary
      * @param path direccion fisica del archivo txt
      */
     public static void loadGlossary(String path) {
-        SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-        final SWBDataSource dsGlossary = engine.getDataSource("Glossary");
+        final SWBDataSource dsGlossary = NanoSources.get(Source.GLOSSARY);
         DataObject newGlossaryObj = new DataObject();
         Stream<String> lines;
         try {
@@ -45,6 +160,8 @@ public class Analizer {
             }
         } catch (IOException ex) {
             Logger.getLogger(Analizer.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            Analizer.invalidatePhraseScanners();
         }
     }
 
@@ -55,8 +172,7 @@ public class Analizer {
     public static Iterator<DataObject> getGlossaryList() {
         Iterator<DataObject> dataList = null;
         try {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource dsGlossary = engine.getDataSource("Glossary");
+            SWBDataSource dsGlossary = NanoSources.get(Source.GLOSSARY);
             DataObject dataProperty = Utils.ENG.getDataProperty(dsGlossary, null, null, 0);
             dataList = Utils.ENG.getDataList(dataProperty);
         } catch (IOException ex) {
@@ -74,14 +190,13 @@ public class Analizer {
     public static int analizer(String idSearch, String idArticle) {
         int newRecommended = 0;
         try {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource dsArticle = engine.getDataSource("Article");
+            SWBDataSource dsArticle = NanoSources.get(Source.ARTICLE);
             DataObject obj = Utils.ENG.getDataProperty(dsArticle, "_id", idArticle, 0);
             int rows = obj.getDataObject("response").getInt("totalRows");
             if (rows > 0) {
                 String abstractTxt = obj.getDataObject("response").getDataList("data").getDataObject(0).getString("abstract");
                 //System.out.println("abstract: " + abstractTxt);
-                newRecommended = Analizer.analizeAbstract(engine, abstractTxt, idSearch);
+                newRecommended = Analizer.analizeAbstract(abstractTxt, idSearch);
             }
         } catch (IOException ex) {
             Logger.getLogger(Analizer.class.getName()).log(Level.SEVERE, null, ex);
@@ -91,17 +206,31 @@ public class Analizer {
 
     /**
      * Califica la relevancia de los articulos en base a las frases aceptadas
-     * @param engine maquina de scripts proporcionada por SemanticWebBuilder
+     * @param engine maquina de scripts proporcionada por SemanticWebBuilder, no se utiliza
      * @param idSearch identificador del esquema de busqueda del que se desea calificar sus articulos
      * @param phrases lista de frases aceptadas como keywords para evaluar los abstracts de los articulos
      * @param isByUser indica si los esquemas de busqueda se asocian a los usuarios que los crean o no
      * @return el numero de articulos considerados {@literal recomendados} con base a la calificacion asignada.
+     * @deprecated las fuentes de datos se obtienen de {@link NanoSources}; utilice
+     *     {@link #reclassifyArticles(String, ArrayList, boolean)}
      */
+    @Deprecated
     public static int reclassifyArticles(SWBScriptEngine engine, String idSearch, ArrayList<String> phrases, boolean isByUser) {
+        return Analizer.reclassifyArticles(idSearch, phrases, isByUser);
+    }
+
+    /**
+     * Califica la relevancia de los articulos en base a las frases aceptadas
+     * @param idSearch identificador del esquema de busqueda del que se desea calificar sus articulos
+     * @param phrases lista de frases aceptadas como keywords para evaluar los abstracts de los articulos
+     * @param isByUser indica si los esquemas de busqueda se asocian a los usuarios que los crean o no
+     * @return el numero de articulos considerados {@literal recomendados} con base a la calificacion asignada.
+     */
+    public static int reclassifyArticles(String idSearch, ArrayList<String> phrases, boolean isByUser) {
         int newRecommended = 0;
         try {
-            SWBDataSource dsArtSearch = engine.getDataSource("Art_Search");
-            SWBDataSource dsArticle = engine.getDataSource("Article");
+            SWBDataSource dsArtSearch = NanoSources.get(Source.ART_SEARCH);
+            SWBDataSource dsArticle = NanoSources.get(Source.ARTICLE);
             DataObject dataArticle;
             DataObject dataArtSearch = Utils.ENG.getDataProperty(dsArtSearch, new String[]{"search"}, new String[]{idSearch}, null, null);
             int rows = dataArtSearch.getDataObject("response").getInt("totalRows");
@@ -149,18 +278,8 @@ public class Analizer {
      * en base a las {@code phrases} especificadas. El valor devuelto cumple con lo siguiente: 0 >= valorDevuelto <= 10
      */
     private static int calculateRanking(ArrayList<String> phrases, String abstractTxt, boolean isByUser) {
-        Iterator it = phrases.iterator();
         int finalRanking = 0;
-        int ranking = 0;
-        while (it.hasNext()) {
-            String phrase = it.next().toString();
-            Pattern pattern = Pattern.compile("^" + Pattern.quote(phrase) + "\\W|\\W"
-                    + Pattern.quote(phrase) + "\\W|\\W" + Pattern.quote(phrase) + "$",
-                    Pattern.DOTALL + Pattern.CASE_INSENSITIVE);
-            if (pattern.matcher(abstractTxt).find()) {
-                ranking++;
-            }
-        }
+        int ranking = Analizer.getPhraseScanner(phrases).scan(abstractTxt).cardinality();
         if (isByUser) {
             if (ranking > 0) {
                 finalRanking = ranking + 6;
@@ -178,19 +297,36 @@ public class Analizer {
      * Ejecuta el calculo del ranking para un articulo de acuerdo a la aparicion de uno o
      * mas keywords y determina si dicho articulo se considera recomendado o no, con base en el
      * valor del ranking obtenido
-     * @param engine maquina de scripts proporcionada por SemanticWebBuilder
+     * @param engine maquina de scripts proporcionada por SemanticWebBuilder, no se utiliza
      * @param idSearch identificador del esquema de busqueda al que esta asociado el articulo
      * @param abstractTxt contenido del abstract de un articulo
      * @param artSearch identificador del registro que contiene la relacion entre el esquema 
      *        de busqueda y el articulo que contiene el abstract
      * @return un entero cuyo valor es 1 si el articulo es recomendado, o 0 si no es recomendado
+     * @deprecated las fuentes de datos se obtienen de {@link NanoSources}; utilice
+     *     {@link #getUpdateArticleRanking(String, String, String)}
      */
+    @Deprecated
     public static int getUpdateArticleRanking(SWBScriptEngine engine, String idSearch, String abstractTxt, String artSearch) {
+        return Analizer.getUpdateArticleRanking(idSearch, abstractTxt, artSearch);
+    }
+
+    /**
+     * Ejecuta el calculo del ranking para un articulo de acuerdo a la aparicion de uno o
+     * mas keywords y determina si dicho articulo se considera recomendado o no, con base en el
+     * valor del ranking obtenido
+     * @param idSearch identificador del esquema de busqueda al que esta asociado el articulo
+     * @param abstractTxt contenido del abstract de un articulo
+     * @param artSearch identificador del registro que contiene la relacion entre el esquema 
+     *        de busqueda y el articulo que contiene el abstract
+     * @return un entero cuyo valor es 1 si el articulo es recomendado, o 0 si no es recomendado
+     */
+    public static int getUpdateArticleRanking(String idSearch, String abstractTxt, String artSearch) {
         int recommended = 0;
         try {
-            SWBDataSource dsArtSearch = engine.getDataSource("Art_Search");
+            SWBDataSource dsArtSearch = NanoSources.get(Source.ART_SEARCH);
             DataObject datObjSearch = dsArtSearch.fetchObjById(artSearch);
-            ArrayList<String> phrases = Analizer.getGlossaryThresholdSearch(engine, idSearch, false, true);
+            ArrayList<String> phrases = Analizer.getGlossaryThresholdSearch(idSearch, false, true);
             if (phrases.size() > 0) {
                 int ranking = Analizer.calculateRanking(phrases, abstractTxt, false);
                 datObjSearch.put("ranking", ranking);
@@ -207,7 +343,6 @@ public class Analizer {
 
     /**
      * Obtiene el listado de keywords en específico para un esquema de busqueda en particular
-     * @param engine la maquina de scripts proporcionada por SemanticWebBuilder.
      * @param idSearch identificador del esquema de busqueda del que se desea obtener los keywords
      * @param isAddByUser si es {@code true} indica que los keywods devueltos son las frases que 
      *        el usuario agregó al glosario y que actualmente tienen estatus de keyword
@@ -215,12 +350,12 @@ public class Analizer {
      *        en el glosario que actualmente tienen estatus de keyword
      * @return {@code ArrayList<String>} con los keywords asociados al esquema de busqueda indicado
      */
-    private static ArrayList getGlossaryThresholdSearch(SWBScriptEngine engine, String idSearch,
+    private static ArrayList getGlossaryThresholdSearch(String idSearch,
             boolean isAddByUser, boolean isUpdated) {
         
         ArrayList<String> phrases = new ArrayList<>();
         try {
-            SWBDataSource dsAnalize = engine.getDataSource("Analize");
+            SWBDataSource dsAnalize = NanoSources.get(Source.ANALIZE);
             String[] properties;
             int[] values;
             if (isUpdated) {
@@ -299,27 +434,36 @@ public class Analizer {
      * Analiza el abstract de un articulo, incrementa el contador de las apariciones de una
      * frase, determina si alguna frase se convierte en un keyword para
      * reclasificar los articulos que tienen estatus de nuevo.
-     * @param engine la maquina de scripts provista por SemanticWebBuilder
+     * @param engine la maquina de scripts provista por SemanticWebBuilder, no se utiliza
      * @param abstractTxt representa el abstract de un articulo
      * @param idSearch identificador de un esquema de busqueda
+     * @deprecated las fuentes de datos se obtienen de {@link NanoSources}; utilice
+     *     {@link #analizeAbstract(String, String)}
      */
+    @Deprecated
     public static int analizeAbstract(SWBScriptEngine engine, String abstractTxt, String idSearch) {
+        return Analizer.analizeAbstract(abstractTxt, idSearch);
+    }
+
+    /**
+     * Analiza el abstract de un articulo, incrementa el contador de las apariciones de una
+     * frase, determina si alguna frase se convierte en un keyword para
+     * reclasificar los articulos que tienen estatus de nuevo.
+     * @param abstractTxt representa el abstract de un articulo
+     * @param idSearch identificador de un esquema de busqueda
+     */
+    public static int analizeAbstract(String abstractTxt, String idSearch) {
         int newRecommended = 0;
         try {
-            SWBDataSource dsAnalize = engine.getDataSource("Analize");
-            SWBDataSource dsArtSearch = engine.getDataSource("Art_Search");
+            SWBDataSource dsAnalize = NanoSources.get(Source.ANALIZE);
+            SWBDataSource dsArtSearch = NanoSources.get(Source.ART_SEARCH);
             DataObject obj = Utils.ENG.getDataProperty(dsArtSearch, new String[]{"search"}, new String[]{idSearch}, new String[]{"status"}, new int[]{2});//status
             int totalArtsAccept = obj.getDataObject("response").getInt("totalRows");
-            Iterator<DataObject> it = Analizer.getGlossaryList();
             ArrayList phrases = new ArrayList();
-            while (it.hasNext()) {
-                String s = it.next().getString("key");
-                Pattern pattern = Pattern.compile("^" + Pattern.quote(s) + "\\W|\\W"
-                        + Pattern.quote(s) + "\\W|\\W" + Pattern.quote(s) + "$",
-                        Pattern.DOTALL + Pattern.CASE_INSENSITIVE);
-                if (pattern.matcher(abstractTxt).find()) {
-                    Analizer.increaseFrequency(dsAnalize, s, idSearch);
-                }
+            PhraseSet glossary = Analizer.getGlossary();
+            BitSet found = glossary.scanner.scan(abstractTxt);
+            for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+                Analizer.increaseFrequency(dsAnalize, glossary.phrases.get(i), idSearch);
             }
             boolean calculateThreshold = false;
             if (totalArtsAccept > 2) {
@@ -335,10 +479,10 @@ public class Analizer {
 //                        phrases.add(analizeObj.getString("key"));
 //                    }
                 }
-                phrases = Analizer.getGlossaryThresholdSearch(engine, idSearch, false, false);
+                phrases = Analizer.getGlossaryThresholdSearch(idSearch, false, false);
 
                 if (phrases.size() > 0 && calculateThreshold) {
-                    newRecommended = Analizer.reclassifyArticles(engine, idSearch, phrases, false);
+                    newRecommended = Analizer.reclassifyArticles(idSearch, phrases, false);
                 }
             }
         } catch (IOException ex) {
@@ -355,9 +499,8 @@ public class Analizer {
      * @return el numero de articulos clasificados como recomendados asociados al esquema de busqueda
      */
     public static int userReclassifyArticle(String key, String idSearch) {
-        SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-        ArrayList<String> thresholdList = Analizer.getGlossaryThresholdSearch(engine, idSearch, true, false);
-        int reclassifyArticles = reclassifyArticles(engine, idSearch, thresholdList, true);
+        ArrayList<String> thresholdList = Analizer.getGlossaryThresholdSearch(idSearch, true, false);
+        int reclassifyArticles = reclassifyArticles(idSearch, thresholdList, true);
         return reclassifyArticles;
     }
 
@@ -403,9 +546,8 @@ public class Analizer {
      */
     public static void analyzeRejected(String idSearch, String idArticle) {
         try {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource dsArticle = engine.getDataSource("Article");
-            SWBDataSource dsAnalize = engine.getDataSource("Analize");
+            SWBDataSource dsArticle = NanoSources.get(Source.ARTICLE);
+            SWBDataSource dsAnalize = NanoSources.get(Source.ANALIZE);
             DataObject obj = Utils.ENG.getDataProperty(dsArticle, "_id", idArticle, 0);
             int rows = obj.getDataObject("response").getInt("totalRows");
             if (rows > 0) {
@@ -414,13 +556,14 @@ public class Analizer {
                 rows = obj.getDataObject("response").getInt("totalRows");
                 if (rows > 0) {
                     DataList list = obj.getDataObject("response").getDataList("data");
+                    List<String> keys = new ArrayList<>(list.size());
                     for (int j = 0; j < list.size(); j++) {
+                        keys.add(list.getDataObject(j).getString("key"));
+                    }
+                    BitSet found = Analizer.getPhraseScanner(keys).scan(abstractTxt);
+                    for (int j = found.nextSetBit(0); j >= 0; j = found.nextSetBit(j + 1)) {
                         DataObject keyList = list.getDataObject(j);
-                        String s = keyList.getString("key");
-                        Pattern pattern = Pattern.compile("^" + Pattern.quote(s) + "\\W|\\W"
-                                + Pattern.quote(s) + "\\W|\\W" + Pattern.quote(s) + "$",
-                                Pattern.DOTALL + Pattern.CASE_INSENSITIVE);
-                        if (pattern.matcher(abstractTxt).find()) {
+                        if (keyList.getString("key") != null) {
                             keyList.put("frequency", keyList.getInt("frequency") - 1);
                             dsAnalize.updateObj(keyList);
                         }
@@ -432,4 +575,25 @@ public class Analizer {
             Logger.getLogger(Analizer.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
+
+    /**
+     * Lista de frases junto con el automata que las busca.
+     */
+    private static final class PhraseSet {
+
+        /** Las frases; el indice de cada frase corresponde al de los resultados del automata */
+        private final List<String> phrases;
+
+        /** Automata que busca las frases como palabras completas */
+        private final KeywordScanner scanner;
+
+        /** Momento, en milisegundos, de la ultima lectura del glosario con estas frases */
+        private volatile long checkedAt;
+
+        PhraseSet(List<String> phrases, long checkedAt) {
+            this.phrases = Collections.unmodifiableList(phrases);
+            this.scanner = new KeywordScanner(this.phrases, true);
+            this.checkedAt = checkedAt;
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package org.nanopharmacy.eutility.impl;
+
+import org.jdom.Element;
+import org.json.JSONObject;
+
+/**
+ * Seccion del abstract de un articulo recuperado de Entrez, junto con su relevancia respecto
+ * al gen y la alteracion molecular de la busqueda.
+ */
+public class AbstractSection {
+
+    /** Etiqueta de la seccion, {@literal Unlabeled} si el articulo no la define */
+    private final String label;
+
+    /** Texto de la seccion */
+    private final String text;
+
+    /** Relevancia del texto, calculada con {@link org.nanopharmacy.utils.Utils#getRanking} */
+    private final int rank;
+
+    /** Indica si el texto menciona el pronostico */
+    private final boolean prognosis;
+
+    /** Indica si el texto menciona el tratamiento */
+    private final boolean treatment;
+
+    /** Indica si el texto menciona la prediccion */
+    private final boolean prediction;
+
+    AbstractSection(String label, String text, int rank, boolean prognosis, boolean treatment,
+            boolean prediction) {
+        this.label = label != null ? label : "";
+        this.text = text;
+        this.rank = rank;
+        this.prognosis = prognosis;
+        this.treatment = treatment;
+        this.prediction = prediction;
+    }
+
+    /** @return la etiqueta de la seccion, {@literal Unlabeled} si el articulo no la define */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /** @return el texto de la seccion */
+    public String getText() {
+        return this.text;
+    }
+
+    /** @return la relevancia del texto de la seccion */
+    public int getRank() {
+        return this.rank;
+    }
+
+    /** @return {@literal true} si el texto menciona el pronostico */
+    public boolean isPrognosis() {
+        return this.prognosis;
+    }
+
+    /** @return {@literal true} si el texto menciona el tratamiento */
+    public boolean isTreatment() {
+        return this.treatment;
+    }
+
+    /** @return {@literal true} si el texto menciona la prediccion */
+    public boolean isPrediction() {
+        return this.prediction;
+    }
+
+    /**
+     * Genera la representacion JSON de la seccion, con las propiedades {@literal label},
+     * {@literal text}, {@literal prognosis}, {@literal prediction} y {@literal treatment}; las
+     * ultimas tres con valor {@literal "1"} o {@literal "0"}.
+     * @return un objeto JSON con los datos de la seccion
+     */
+    public JSONObject toJSON() {
+
+        JSONObject abstrct = new JSONObject();
+        abstrct.put("label", this.label);
+        abstrct.put("text", this.text);
+        abstrct.put("prognosis", this.prognosis ? "1" : "0");
+        abstrct.put("prediction", this.prediction ? "1" : "0");
+        abstrct.put("treatment", this.treatment ? "1" : "0");
+        return abstrct;
+    }
+
+    /**
+     * Genera el elemento JDOM {@literal abstract} que representa la seccion.
+     * @return el elemento {@literal abstract} con los datos de la seccion
+     */
+    public Element toElement() {
+
+        Element abs = new Element("abstract");
+        abs.addContent(new Element("label").setText(this.label));
+        abs.addContent(new Element("text").setText(this.text));
+        abs.addContent(new Element("prognosis").setText(this.prognosis ? "1" : "0"));
+        abs.addContent(new Element("treatment").setText(this.treatment ? "1" : "0"));
+        abs.addContent(new Element("prediction").setText(this.prediction ? "1" : "0"));
+        abs.addContent(new Element("rank").setText(Integer.toString(this.rank)));
+        return abs;
+    }
+}
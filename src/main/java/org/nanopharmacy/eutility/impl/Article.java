@@ -0,0 +1,217 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.util.Collections;
+import java.util.List;
+import org.jdom.Element;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Articulo recuperado de PubMed o de PubMed Central, con las secciones de su abstract y su
+ * relevancia respecto al gen y la alteracion molecular de la busqueda.
+ * <p>
+ * Los identificadores, la fecha de publicacion y la relevancia se conservan como valores
+ * numericos; las representaciones JSON y JDOM se generan bajo demanda con {@link #toJSON()}
+ * y {@link #toElement()}.
+ * </p>
+ */
+public class Article {
+
+    /**
+     * Base de datos de la que proviene un articulo.
+     */
+    public enum Source {
+        /** Base de datos PubMed */
+        PUBMED,
+        /** Base de datos PubMed Central */
+        PMC
+    }
+
+    /** Base de datos de la que proviene el articulo */
+    private final Source source;
+
+    /** Identificador del articulo en PubMed, 0 si no se conoce */
+    private final int pmid;
+
+    /** Identificador del articulo en PubMed Central, 0 si no se conoce */
+    private final int pmc;
+
+    /** Titulo del articulo */
+    private final String title;
+
+    /** Direccion del articulo en el sitio de la NCBI */
+    private final String url;
+
+    /** Primer autor del articulo, en la forma {@literal apellido, nombre}; puede ser {@literal null} */
+    private final String author;
+
+    /** Referencia bibliografica del articulo */
+    private final String reference;
+
+    /** Año de publicacion, 0 si no se conoce */
+    private final int publicationYear;
+
+    /** Mes de publicacion (1 a 12), 0 si no se conoce */
+    private final int publicationMonth;
+
+    /** Secciones del abstract */
+    private final List<AbstractSection> sections;
+
+    /** Relevancia del articulo: la mayor relevancia de sus secciones */
+    private final int ranking;
+
+    Article(Source source, int pmid, int pmc, String title, String url, String author, String reference,
+            int publicationYear, int publicationMonth, List<AbstractSection> sections) {
+        this.source = source;
+        this.pmid = pmid;
+        this.pmc = pmc;
+        this.title = title;
+        this.url = url;
+        this.author = author;
+        this.reference = reference;
+        this.publicationYear = publicationYear;
+        this.publicationMonth = publicationMonth;
+        this.sections = Collections.unmodifiableList(sections);
+        int max = 0;
+        for (AbstractSection section : sections) {
+            max = max < section.getRank() ? section.getRank() : max;
+        }
+        this.ranking = max;
+    }
+
+    /**
+     * Convierte a entero un identificador o un componente de fecha.
+     * @param value el texto a convertir, puede ser {@literal null}
+     * @return el valor numerico de {@code value}, o 0 si no es un entero positivo
+     */
+    static int parseInt(String value) {
+
+        if (value == null) {
+            return 0;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            return number > 0 ? number : 0;
+        } catch (NumberFormatException nfe) {
+            return 0;
+        }
+    }
+
+    /** @return la base de datos de la que proviene el articulo */
+    public Source getSource() {
+        return this.source;
+    }
+
+    /** @return el identificador del articulo en PubMed, 0 si no se conoce */
+    public int getPmid() {
+        return this.pmid;
+    }
+
+    /** @return el identificador del articulo en PubMed Central, 0 si no se conoce */
+    public int getPmc() {
+        return this.pmc;
+    }
+
+    /** @return el titulo del articulo */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /** @return la direccion del articulo en el sitio de la NCBI */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /** @return el primer autor del articulo, o {@literal null} si no se conoce */
+    public String getAuthor() {
+        return this.author;
+    }
+
+    /** @return la referencia bibliografica del articulo */
+    public String getReference() {
+        return this.reference;
+    }
+
+    /** @return el año de publicacion, 0 si no se conoce */
+    public int getPublicationYear() {
+        return this.publicationYear;
+    }
+
+    /** @return el mes de publicacion (1 a 12), 0 si no se conoce */
+    public int getPublicationMonth() {
+        return this.publicationMonth;
+    }
+
+    /** @return las secciones del abstract, en una lista no modificable */
+    public List<AbstractSection> getSections() {
+        return this.sections;
+    }
+
+    /** @return la relevancia del articulo, la mayor relevancia de sus secciones */
+    public int getRanking() {
+        return this.ranking;
+    }
+
+    /**
+     * Genera la representacion JSON del articulo que forma parte del arreglo {@literal outstanding}
+     * de {@link ESearchImpl#getPublicationsInfo}. Los identificadores se expresan como cadenas; un
+     * identificador o una fecha desconocidos se expresan como cadena vacia, y {@literal pmc} solo
+     * se incluye en articulos de PubMed Central.
+     * @return un objeto JSON con los datos del articulo
+     */
+    public JSONObject toJSON() {
+
+        JSONArray abstracts = new JSONArray();
+        for (AbstractSection section : this.sections) {
+            abstracts.put(section.toJSON());
+        }
+        JSONObject article = new JSONObject();
+        article.put("pmid", this.pmid > 0 ? Integer.toString(this.pmid) : "");
+        if (this.source == Source.PMC) {
+            article.put("pmc", this.pmc > 0 ? Integer.toString(this.pmc) : "");
+        }
+        article.put("ranking", this.ranking);
+        article.put("abstract", abstracts);
+        article.put("articleTitle", this.title);
+        article.put("url", this.url);
+        article.put("author", this.author);
+        article.put("reference", this.reference);
+        article.put("publicationYear", this.publicationYear > 0 ? Integer.toString(this.publicationYear) : "");
+        article.put("publicationMonth", this.publicationMonth > 0 ? Integer.toString(this.publicationMonth) : "");
+        return article;
+    }
+
+    /**
+     * Genera el elemento JDOM {@literal article} que representa al articulo, con la estructura
+     * de los elementos {@literal ArticleList} de {@link ESearchImpl#getPublicationsDom}.
+     * @return el elemento {@literal article} con los datos del articulo
+     */
+    public Element toElement() {
+
+        Element art = new Element("article");
+        for (AbstractSection section : this.sections) {
+            art.addContent(section.toElement());
+        }
+        art.addContent(new Element("title").setText(this.title));
+        art.addContent(new Element("pmid").setText(this.pmid > 0 ? Integer.toString(this.pmid) : ""));
+        if (this.source == Source.PMC) {
+            art.addContent(new Element("pmc").setText(this.pmc > 0 ? Integer.toString(this.pmc) : ""));
+        }
+        art.addContent(new Element("url").setText(this.url));
+        if (this.author != null) {
+            art.addContent(new Element("author").setText(this.author));
+        }
+        art.addContent(new Element("reference").setText(this.reference));
+        art.addContent(new Element("publicationYear").setText(
+                this.publicationYear > 0 ? Integer.toString(this.publicationYear) : ""));
+        art.addContent(new Element("publicationMonth").setText(
+                this.publicationMonth > 0 ? Integer.toString(this.publicationMonth) : ""));
+        return art;
+    }
+
+    @Override
+    public String toString() {
+        return "Article{source=" + this.source + ", pmid=" + this.pmid + ", pmc=" + this.pmc +
+                ", ranking=" + this.ranking + ", title=" + this.title + "}";
+    }
+}
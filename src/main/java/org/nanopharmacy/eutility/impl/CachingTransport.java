@@ -0,0 +1,713 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Implementacion de {@link EntrezTransport} que conserva en disco las respuestas de otro transporte,
+ * de modo que las peticiones repetidas a Entrez (el mismo gen consultado por varios usuarios, o los
+ * reintentos tras una {@link UseHistoryException}) se atienden sin salir a la red.
+ * <p>
+ * Cada respuesta se identifica por el SHA-256 de su peticion en forma canonica: el servicio
+ * ({@literal esearch}, {@literal esummary}, {@literal efetch}) y sus parametros ordenados por nombre,
+ * con una misma codificacion URL, sin los parametros de identificacion ({@literal tool}, {@literal email}, {@literal api_key}). Como
+ * el parametro {@literal WebEnv} cambia en cada busqueda, en las peticiones que lo utilizan se
+ * sustituye por la forma canonica del {@literal esearch} que lo genero; las peticiones con un
+ * {@literal WebEnv} de origen desconocido no se almacenan.
+ * </p>
+ * <p>
+ * Las respuestas se guardan comprimidas con deflate en {@literal <dir>/<db>/<xx>/<sha256>.z}. La
+ * respuesta se comprime conforme el analizador la lee de la red y solo se publica, con un
+ * renombrado atomico, si el analizador no lanzo excepciones, el documento termina con el cierre de
+ * su elemento raiz y no contiene un elemento {@literal ERROR}. Al leerla de nuevo, el archivo se mapea en memoria y se descomprime
+ * directamente hacia el analizador, sin copias intermedias.
+ * </p>
+ * <p>
+ * La vigencia de las respuestas se define por base de datos con las propiedades del sistema
+ * {@literal nanopharmacy.entrez.cache.ttl.<db>}, en minutos, o {@literal nanopharmacy.entrez.cache.ttl}
+ * para las bases de datos no especificadas. Las busquedas con {@literal usehistory=y} tienen ademas
+ * una vigencia maxima de {@link #HISTORY_TTL_MINUTES} minutos, menor al tiempo que Entrez conserva el
+ * {@literal WebEnv}, para que el {@literal WebEnv} de una busqueda almacenada siga siendo valido
+ * cuando alguna de las descargas que dependen de ella no se encuentre en disco.
+ * </p>
+ */
+public class CachingTransport implements EntrezTransport {
+
+    /** Propiedad del sistema con el directorio del cache; si no se define, no se utiliza cache */
+    public static final String DIR_PROPERTY = "nanopharmacy.entrez.cache.dir";
+
+    /** Prefijo de las propiedades del sistema con la vigencia, en minutos, de cada base de datos */
+    public static final String TTL_PROPERTY = "nanopharmacy.entrez.cache.ttl";
+
+    /** Vigencia por omision, en minutos, de las respuestas */
+    private static final long DEFAULT_TTL_MINUTES = Long.getLong(TTL_PROPERTY, 24 * 60);
+
+    /** Vigencia maxima, en minutos, de las busquedas con {@literal usehistory=y} */
+    public static final long HISTORY_TTL_MINUTES = 60;
+
+    /** Archivos de menor tamaño se leen a memoria en lugar de mapearse */
+    private static final long MAP_THRESHOLD = 64 * 1024;
+
+    /** Numero de bytes iniciales de la respuesta que se examinan en busca de errores y del {@literal WebEnv} */
+    private static final int HEAD_SIZE = 4096;
+
+    /** Numero de bytes finales de la respuesta que se examinan para verificar que este completa */
+    private static final int TAIL_SIZE = 256;
+
+    /** Numero maximo de {@literal WebEnv} cuya busqueda de origen se recuerda */
+    private static final int MAX_WEBENVS = 4096;
+
+    /** Parametros que no forman parte de la forma canonica de una peticion */
+    private static final List<String> IDENTITY_PARAMS = Arrays.asList("tool", "email", "api_key");
+
+    /** Vigencia, en milisegundos, de cada base de datos con valor distinto al de omision */
+    private static final Map<String, Long> DB_TTL = new HashMap<>();
+
+    static {
+        DB_TTL.put("gene", TimeUnit.DAYS.toMillis(7));
+        DB_TTL.put("medgen", TimeUnit.DAYS.toMillis(7));
+        DB_TTL.put("gtr", TimeUnit.DAYS.toMillis(7));
+    }
+
+    /** Transporte que realiza las peticiones no encontradas en disco */
+    private final EntrezTransport delegate;
+
+    /** Directorio del cache */
+    private final Path dir;
+
+    /** Busqueda en forma canonica que genero cada {@literal WebEnv}, con el mas antiguo primero */
+    private final LinkedHashMap<String, String> webEnvs = new LinkedHashMap<String, String>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_WEBENVS;
+        }
+    };
+
+    /** Numero de peticiones atendidas desde disco */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Numero de peticiones atendidas por {@link #delegate} */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Numero de peticiones que no pueden almacenarse */
+    private final AtomicLong bypassed = new AtomicLong();
+
+    /** Numero de respuestas almacenadas */
+    private final AtomicLong stored = new AtomicLong();
+
+    /** Numero de respuestas descartadas por contener un error o por fallar su lectura */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Crea un cache en el directorio especificado sobre otro transporte.
+     * @param delegate transporte que realiza las peticiones no encontradas en disco
+     * @param dir directorio del cache; se crea si no existe
+     * @throws IOException si el directorio no existe y no puede crearse
+     */
+    public CachingTransport(EntrezTransport delegate, Path dir) throws IOException {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate es nulo");
+        }
+        if (dir == null) {
+            throw new IllegalArgumentException("dir es nulo");
+        }
+        this.delegate = delegate;
+        this.dir = Files.createDirectories(dir);
+    }
+
+    /**
+     * Agrega un cache a un transporte si la propiedad del sistema {@value #DIR_PROPERTY} indica un
+     * directorio.
+     * @param delegate el transporte a utilizar en las peticiones no encontradas en disco
+     * @return un {@code CachingTransport} sobre {@code delegate}, o {@code delegate} si el cache no
+     *     esta configurado o su directorio no puede crearse
+     */
+    public static EntrezTransport fromSystemProperties(EntrezTransport delegate) {
+
+        String path = System.getProperty(DIR_PROPERTY);
+        if (path == null || path.trim().isEmpty()) {
+            return delegate;
+        }
+        try {
+            return new CachingTransport(delegate, Paths.get(path.trim()));
+        } catch (IOException | RuntimeException e) {
+            Logger.getLogger(CachingTransport.class.getName()).log(Level.SEVERE, null, e);
+            return delegate;
+        }
+    }
+
+    @Override
+    public boolean isCached(String path) {
+
+        Request request = this.canonicalize(path);
+        return request != null && this.isFresh(this.getFile(request), request);
+    }
+
+    @Override
+    public <T> T execute(String path, int readTimeout, ResponseHandler<T> handler) throws IOException {
+
+        Request request = this.canonicalize(path);
+        if (request == null) {
+            this.bypassed.incrementAndGet();
+            return this.delegate.execute(path, readTimeout, handler);
+        }
+        Path file = this.getFile(request);
+        if (this.isFresh(file, request)) {
+            try {
+                T res = this.read(file, request, handler);
+                this.hits.incrementAndGet();
+                return res;
+            } catch (NoSuchFileException nsfe) {
+                //el archivo se elimino despues de validar su vigencia
+            }
+        }
+        this.misses.incrementAndGet();
+        return this.delegate.execute(path, readTimeout, in -> this.store(in, file, request, handler));
+    }
+
+    /**
+     * Entrega a {@code handler} una respuesta almacenada. Si la lectura falla, el archivo se elimina
+     * para que la siguiente peticion se realice a Entrez.
+     */
+    private <T> T read(Path file, Request request, ResponseHandler<T> handler) throws IOException {
+
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                data = ByteBuffer.allocate((int) size);
+                while (data.hasRemaining() && channel.read(data) > -1) {
+                }
+                data.flip();
+            }
+        }
+        Inflater inflater = new Inflater();
+        HeadInputStream in = new HeadInputStream(new InflaterInputStream(new BufferInputStream(data), inflater, 8192));
+        try {
+            T res = handler.handle(in);
+            this.registerWebEnv(request, in.getHead());
+            return res;
+        } catch (IOException | RuntimeException e) {
+            this.rejected.incrementAndGet();
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            //el mapeo del archivo se libera cuando el recolector de basura reclama el buffer
+            inflater.end();
+        }
+    }
+
+    /**
+     * Entrega a {@code handler} una respuesta de la red mientras se comprime en un archivo temporal,
+     * que se publica en {@code file} solo si la respuesta es valida.
+     */
+    private <T> T store(InputStream body, Path file, Request request, ResponseHandler<T> handler) throws IOException {
+
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), "entrez", ".tmp");
+        boolean publish = false;
+        try {
+            T res;
+            byte[] head;
+            boolean complete;
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(tmp), deflater, 8192)) {
+                TeeInputStream in = new TeeInputStream(body, out);
+                res = handler.handle(in);
+                in.drain();
+                head = in.getHead();
+                complete = in.isComplete();
+            } finally {
+                deflater.end();
+            }
+            if (!complete || CachingTransport.isError(head)
+                    || (request.history && !this.registerWebEnv(request, head))) {
+                this.rejected.incrementAndGet();
+            } else {
+                CachingTransport.publish(tmp, file);
+                publish = true;
+                this.stored.incrementAndGet();
+            }
+            return res;
+        } finally {
+            if (!publish) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * Mueve un archivo temporal a su ubicacion definitiva, reemplazando la version anterior.
+     */
+    private static void publish(Path tmp, Path file) throws IOException {
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Indica si el inicio de una respuesta contiene un error de Entrez, en cuyo caso no se almacena.
+     * @param head bytes iniciales de la respuesta
+     * @return {@literal true} si la respuesta contiene un elemento {@literal ERROR}
+     */
+    private static boolean isError(byte[] head) {
+        return new String(head, StandardCharsets.ISO_8859_1).contains("<ERROR>");
+    }
+
+    /**
+     * Recuerda la busqueda que genero el {@literal WebEnv} de una respuesta de esearch, para
+     * reconocer las peticiones posteriores que lo utilicen.
+     * @param request la peticion que genero la respuesta
+     * @param head bytes iniciales de la respuesta
+     * @return {@literal true} si la respuesta contiene un {@literal WebEnv}
+     */
+    private boolean registerWebEnv(Request request, byte[] head) {
+
+        if (!request.history) {
+            return false;
+        }
+        String text = new String(head, StandardCharsets.ISO_8859_1);
+        int start = text.indexOf("<WebEnv>");
+        int end = start < 0 ? -1 : text.indexOf("</WebEnv>", start);
+        if (end < 0) {
+            return false;
+        }
+        String webEnv = text.substring(start + "<WebEnv>".length(), end).trim();
+        synchronized (this.webEnvs) {
+            this.webEnvs.put(webEnv, request.canonical);
+        }
+        return true;
+    }
+
+    /**
+     * Obtiene la forma canonica de una peticion.
+     * @param path URL de la peticion
+     * @return la peticion en forma canonica, o {@literal null} si no puede almacenarse
+     */
+    Request canonicalize(String path) {
+
+        int query = path.indexOf('?');
+        int slash = path.lastIndexOf('/', query < 0 ? path.length() : query);
+        String service = path.substring(slash + 1, query < 0 ? path.length() : query);
+        int dot = service.indexOf('.');
+        if (dot > 0) {
+            service = service.substring(0, dot);
+        }
+        List<String> params = new ArrayList<>();
+        String db = null, webEnv = null;
+        boolean history = false;
+        if (query > -1) {
+            for (String param : path.substring(query + 1).split("&")) {
+                if (param.isEmpty()) {
+                    continue;
+                }
+                int eq = param.indexOf('=');
+                String name = CachingTransport.decode(eq < 0 ? param : param.substring(0, eq)).toLowerCase();
+                String value = CachingTransport.decode(eq < 0 ? "" : param.substring(eq + 1));
+                if (IDENTITY_PARAMS.contains(name)) {
+                    continue;
+                } else if ("webenv".equals(name)) {
+                    webEnv = value;
+                    continue;
+                } else if ("db".equals(name)) {
+                    db = value.toLowerCase();
+                } else if ("usehistory".equals(name)) {
+                    history = "y".equalsIgnoreCase(value);
+                }
+                //se codifica de nuevo, de modo que las distintas codificaciones de un valor coincidan
+                params.add(CachingTransport.encode(name) + "=" + CachingTransport.encode(value));
+            }
+        }
+        if (db == null || db.isEmpty() || db.indexOf('/') > -1 || db.indexOf('\\') > -1 || db.startsWith(".")) {
+            return null;
+        }
+        if (webEnv != null) {
+            String origin;
+            synchronized (this.webEnvs) {
+                origin = this.webEnvs.get(webEnv);
+            }
+            if (origin == null) {
+                return null;
+            }
+            params.add("webenv=[" + origin + "]");
+        }
+        Collections.sort(params);
+        StringBuilder canonical = new StringBuilder(service.length() + 256).append(service);
+        for (String param : params) {
+            canonical.append(canonical.length() == service.length() ? '?' : '&').append(param);
+        }
+        return new Request(canonical.toString(), db, history);
+    }
+
+    /**
+     * Decodifica un componente de la cadena de consulta de una URL.
+     * @param component el componente codificado
+     * @return el componente decodificado, o el mismo {@code component} si su codificacion no es valida
+     */
+    private static String decode(String component) {
+        try {
+            return URLDecoder.decode(component, "UTF-8");
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            return component;
+        }
+    }
+
+    /**
+     * Codifica un componente de la cadena de consulta de una URL.
+     * @param component el componente decodificado
+     * @return el componente codificado
+     */
+    private static String encode(String component) {
+        try {
+            return URLEncoder.encode(component, "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    /**
+     * Obtiene el archivo en que se almacena la respuesta de una peticion.
+     */
+    private Path getFile(Request request) {
+        String hash = CachingTransport.sha256(request.canonical);
+        return this.dir.resolve(request.db).resolve(hash.substring(0, 2)).resolve(hash + ".z");
+    }
+
+    /**
+     * Indica si existe la respuesta de una peticion y esta vigente.
+     */
+    private boolean isFresh(Path file, Request request) {
+
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            return System.currentTimeMillis() - modified.toMillis() < CachingTransport.getTtlMillis(request);
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Obtiene la vigencia, en milisegundos, de la respuesta de una peticion.
+     */
+    private static long getTtlMillis(Request request) {
+
+        Long minutes = Long.getLong(TTL_PROPERTY + "." + request.db);
+        long ttl = minutes != null ? TimeUnit.MINUTES.toMillis(minutes)
+                : DB_TTL.containsKey(request.db) ? DB_TTL.get(request.db)
+                : TimeUnit.MINUTES.toMillis(DEFAULT_TTL_MINUTES);
+        return request.history ? Math.min(ttl, TimeUnit.MINUTES.toMillis(HISTORY_TTL_MINUTES)) : ttl;
+    }
+
+    /**
+     * Elimina del directorio del cache las respuestas cuya vigencia haya terminado, considerando
+     * la vigencia de su base de datos sin el limite de las busquedas con {@literal usehistory=y}.
+     * @return el numero de archivos eliminados
+     * @throws IOException en caso de problemas al recorrer el directorio
+     */
+    public int purge() throws IOException {
+
+        int removed = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> dbs = Files.newDirectoryStream(this.dir)) {
+            for (Path db : dbs) {
+                if (!Files.isDirectory(db)) {
+                    continue;
+                }
+                long ttl = CachingTransport.getTtlMillis(new Request("", db.getFileName().toString(), false));
+                try (DirectoryStream<Path> buckets = Files.newDirectoryStream(db)) {
+                    for (Path bucket : buckets) {
+                        try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket)) {
+                            for (Path file : files) {
+                                if (now - Files.getLastModifiedTime(file).toMillis() >= ttl
+                                        && Files.deleteIfExists(file)) {
+                                    removed++;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Calcula el SHA-256 de una cadena.
+     * @return el digesto en hexadecimal
+     */
+    private static String sha256(String text) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+                hex[2 * i + 1] = Character.forDigit(digest[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /** @return el numero de peticiones atendidas desde disco */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /** @return el numero de peticiones realizadas a Entrez por no encontrarse en disco */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /** @return el numero de peticiones que no pueden almacenarse */
+    public long getBypassed() {
+        return this.bypassed.get();
+    }
+
+    /** @return el numero de respuestas almacenadas */
+    public long getStored() {
+        return this.stored.get();
+    }
+
+    /** @return el numero de respuestas descartadas por contener un error o por fallar su lectura */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CachingTransport{dir=" + this.dir + ", hits=" + getHits() + ", misses=" + getMisses() +
+                ", bypassed=" + getBypassed() + ", stored=" + getStored() + ", rejected=" + getRejected() +
+                ", delegate=" + this.delegate + "}";
+    }
+
+    /**
+     * Peticion a Entrez en forma canonica.
+     */
+    static final class Request {
+
+        /** Servicio y parametros ordenados, sin identificacion ni {@literal WebEnv} */
+        final String canonical;
+
+        /** Base de datos de la peticion */
+        final String db;
+
+        /** Indica si la peticion es una busqueda con {@literal usehistory=y} */
+        final boolean history;
+
+        Request(String canonical, String db, boolean history) {
+            this.canonical = canonical;
+            this.db = db;
+            this.history = history;
+        }
+    }
+
+    /**
+     * Flujo sobre el contenido de un {@link ByteBuffer}, posiblemente mapeado a un archivo.
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int count = Math.min(len, this.buffer.remaining());
+            if (count == 0) {
+                return -1;
+            }
+            this.buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+
+    /**
+     * Flujo que conserva los primeros {@value #HEAD_SIZE} bytes leidos.
+     */
+    private static class HeadInputStream extends FilterInputStream {
+
+        /** Bytes iniciales leidos */
+        private final byte[] head = new byte[HEAD_SIZE];
+
+        /** Numero de bytes en {@link #head} */
+        private int headLength;
+
+        HeadInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b > -1) {
+                this.onRead(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                this.onRead(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int count = this.read(buffer, 0, buffer.length);
+            return count < 0 ? 0 : count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Procesa bytes recien leidos del flujo.
+         */
+        void onRead(byte[] b, int off, int len) throws IOException {
+            if (this.headLength < this.head.length) {
+                int count = Math.min(len, this.head.length - this.headLength);
+                System.arraycopy(b, off, this.head, this.headLength, count);
+                this.headLength += count;
+            }
+        }
+
+        /** @return los bytes iniciales leidos */
+        byte[] getHead() {
+            return Arrays.copyOf(this.head, this.headLength);
+        }
+    }
+
+    /**
+     * Flujo que copia a otro flujo todo lo leido.
+     */
+    private static final class TeeInputStream extends HeadInputStream {
+
+        private final OutputStream out;
+
+        /** Ultimos bytes leidos, en un buffer circular */
+        private final byte[] tail = new byte[TAIL_SIZE];
+
+        /** Numero total de bytes leidos */
+        private long total;
+
+        TeeInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        void onRead(byte[] b, int off, int len) throws IOException {
+            super.onRead(b, off, len);
+            this.out.write(b, off, len);
+            int start = Math.max(off, off + len - TAIL_SIZE);
+            this.total += start - off;
+            for (int i = start; i < off + len; i++) {
+                this.tail[(int) (this.total++ % TAIL_SIZE)] = b[i];
+            }
+        }
+
+        /**
+         * Indica si el documento leido termina con el cierre de su elemento raiz, es decir, si la
+         * respuesta no se trunco. Debe llamarse despues de {@link #drain()}.
+         * @return {@literal true} si el documento esta completo
+         */
+        boolean isComplete() {
+
+            String head = new String(this.getHead(), StandardCharsets.ISO_8859_1);
+            int i = 0;
+            while ((i = head.indexOf('<', i)) > -1 && i + 1 < head.length()
+                    && (head.charAt(i + 1) == '?' || head.charAt(i + 1) == '!')) {
+                i++;
+            }
+            if (i < 0 || i + 1 >= head.length()) {
+                return false;
+            }
+            int end = i + 1;
+            while (end < head.length() && " \t\r\n/>".indexOf(head.charAt(end)) < 0) {
+                end++;
+            }
+            int count = (int) Math.min(this.total, TAIL_SIZE);
+            byte[] last = new byte[count];
+            for (int j = 0; j < count; j++) {
+                last[j] = this.tail[(int) ((this.total - count + j) % TAIL_SIZE)];
+            }
+            return new String(last, StandardCharsets.ISO_8859_1).trim()
+                    .endsWith("</" + head.substring(i + 1, end) + ">");
+        }
+
+        /**
+         * Lee lo que resta del flujo, para que la copia quede completa.
+         */
+        void drain() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (this.read(buffer, 0, buffer.length) > -1) {
+            }
+        }
+
+        @Override
+        public void close() {
+            //el transporte cierra el flujo original
+        }
+    }
+}
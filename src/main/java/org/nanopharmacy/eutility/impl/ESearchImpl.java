@@ -2,27 +2,37 @@ package org.nanopharmacy.eutility.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
-import java.net.URL;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Deque;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import javax.xml.stream.XMLStreamException;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.nanopharmacy.utils.LongHashSet;
+import org.nanopharmacy.utils.PipelineMetrics;
+import org.nanopharmacy.utils.PipelineMetrics.Counter;
+import org.nanopharmacy.utils.PipelineMetrics.Stage;
+import org.nanopharmacy.utils.TinyLfuCache;
 import org.nanopharmacy.utils.Utils;
 import static org.nanopharmacy.utils.Utils.XML.getXML;
 
@@ -41,16 +51,6 @@ import static org.nanopharmacy.utils.Utils.XML.getXML;
  */
 public class ESearchImpl {
 
-
-    /** Definicion del patron de busqueda para la vertiente {@literal Prognosis} */
-    private final Pattern prognosisPtrn = Pattern.compile(".*prognosis.*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-    
-    /** Definicion del patron de busqueda para la vertiente {@literal Treatment} */
-    private final Pattern treatmentPtrn = Pattern.compile(".*treatment.*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-    
-    /** Definicion del patron de busqueda para la vertiente {@literal Prediction} */
-    private final Pattern predictPtrn = Pattern.compile(".*predict.*", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-    
     /** Constante que define el nombre de la base de datos en que se busca informacion de genes */
     private static final String Db_GENE = "gene";
     
@@ -80,6 +80,12 @@ public class ESearchImpl {
      * en las peticiones a esummary y a efetch */
     private static final String Elem_WebENV = "WebEnv";
     
+    /** Etiqueta de XML que contiene los identificadores de los registros encontrados por esearch */
+    private static final String Elem_IdLIST = "IdList";
+    
+    /** Etiqueta de XML que contiene el identificador de un registro encontrado por esearch */
+    private static final String Elem_ID = "Id";
+    
     /** Etiqueta principal de XML de la respuesta que contiene el detalle del gen */
     private static final String Elem_DocSummary = "DocumentSummary";
     
@@ -119,6 +125,9 @@ public class ESearchImpl {
     /** Valor a sustituir por el parametro WebEnv generado por una busqueda previa */
     private static final String Token_WebENV = "@webenv_";
     
+    /** Valor a sustituir por la lista de identificadores, separados por comas, a descargar con efetch */
+    private static final String Token_IDS = "@ids_";
+    
     /** Valor a sustituir por el año de inicio de periodo de busqueda */
     private static final String Token_LY = "@ly_";
     
@@ -146,34 +155,43 @@ public class ESearchImpl {
     /** Tipo de error utilizado cuando ocurre algun problema no identificado */
     private static final String ERROR_GENERAL = "EXECUTION_ERROR";
     
+    /**
+     * URL base de los servicios E-utilities de Entrez. Las rutas {@code CMD_*} son relativas a esta
+     * URL, o a la indicada con la propiedad del sistema {@literal nanopharmacy.entrez.baseUrl}.
+     */
+    public static final String DEFAULT_BASE_URL = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/";
+    
+    /** URL base configurada para las peticiones a E-utilities */
+    private static final String BASE_URL = System.getProperty("nanopharmacy.entrez.baseUrl", DEFAULT_BASE_URL);
+    
     /** Indica la URL para las busquedas de informaci&oacute;n de genes     */
-    private static final String CMD_ESearch = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esearch.fcgi?db=" +
+    private static final String CMD_ESearch = "esearch.fcgi?db=" +
             Db_GENE + "&term=((" + Token_GENE +
             "%5BGene%20Name%5D)%20AND%20homo%20sapiens%5BOrganism%5D)%20AND%20alive%5Bprop%5D&usehistory=y&retmode=xml";
     
     /** Indica la URL para la peticion de la informacion coincidente con la busqueda de informacion de genes */
-    private static final String CMD_ESummary = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esummary.fcgi?db=" +
+    private static final String CMD_ESummary = "esummary.fcgi?db=" +
             Token_DbNAME + "&query_key=" + Token_QryKEY + "&WebEnv=" + Token_WebENV + "&retmode=xml";
     
     /** Indica la URL para las busquedas de informaci&oacute;n de enfermedades relacionadas a un gen */
-    private static final String CMD_ESearchD = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esearch.fcgi?db=" +
+    private static final String CMD_ESearchD = "esearch.fcgi?db=" +
             Token_DbNAME + "&term=(" + Token_GENE +
             ")%20AND%20%22diseases%22%5BFilter%5D&usehistory=y&retmode=xml&retmax=" + RET_MAX;
     
     /** Indica la URL para la peticion de la informacion coincidente con la busqueda de informacion de tipos de cancer */
-    private static final String CMD_ESummaryD = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esummary.fcgi?db=" +
+    private static final String CMD_ESummaryD = "esummary.fcgi?db=" +
             Token_DbNAME + "&query_key=" + Token_QryKEY + "&WebEnv=" + Token_WebENV + "&retmode=xml";
     
     /** Indica la URL para las busquedas de informaci&oacute;n de pruebas de laboratorio */
-    private static final String CMD_ESearchL = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esearch.fcgi?db=" +
+    private static final String CMD_ESearchL = "esearch.fcgi?db=" +
             Token_DbNAME + "&term=" + Token_GENE + "&usehistory=y&retmode=xml&retmax=" + RET_MAX;
     
     /** Indica la URL para la peticion de la informacion coincidente con la busqueda de informacion de pruebas de laboratorio */
-    private static final String CMD_ESummaryL = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esummary.fcgi?db=" +
+    private static final String CMD_ESummaryL = "esummary.fcgi?db=" +
             Token_DbNAME + "&query_key=" + Token_QryKEY + "&WebEnv=" + Token_WebENV + "&retmode=xml";
     
     /** Indica la URL para las busquedas de articulos en las bases de datos PubMed y PubMed Central */
-    private static final String CMD_ESearchP = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esearch.fcgi?db=" +
+    private static final String CMD_ESearchP = "esearch.fcgi?db=" +
             Token_DbNAME + "&term=" + "(%22" + Token_LY + "%2F" + Token_LM + "%2F" + Token_LD + "%22%5BPDat%5D%20:%20%22" +
             Token_UY + "%2F" + Token_UM + "%2F" + Token_UD +
             "%22%5BPDat%5D%20AND%20%22humans%22%5BMeSH%20Terms%5D%20AND%20%22has%20abstract%22%5BFilter%5D)%20AND%20(%22" +
@@ -181,18 +199,105 @@ public class ESearchImpl {
     
     /** Indica la URL para la peticion de la informacion coincidente con la busqueda de 
      * articulos en las bases de datos PubMed y PubMed Central */
-    private static final String CMD_EFetch = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/efetch.fcgi?db=" +
+    private static final String CMD_EFetch = "efetch.fcgi?db=" +
             Token_DbNAME + "&query_key=" + Token_QryKEY + "&WebEnv=" + Token_WebENV + "&retmode=xml&retstart=" +
             Token_RetStart + "&retmax=" + Token_RetMax;
     
+    /** Indica la URL para la peticion de articulos especificos, por su identificador, en las bases de
+     * datos PubMed y PubMed Central */
+    private static final String CMD_EFetchIds = "efetch.fcgi?db=" +
+            Token_DbNAME + "&id=" + Token_IDS + "&retmode=xml";
+    
+    /** Numero de registros solicitados en cada pagina de efetch */
+    private static final int EFETCH_PAGE_SIZE = Integer.getInteger("nanopharmacy.efetch.pageSize", 200);
+    
+    /** Numero maximo de intentos para descargar una pagina de efetch */
+    private static final int EFETCH_RETRIES = 3;
+    
+    /** Tiempo maximo de espera, en milisegundos, para la lectura de una pagina de efetch */
+    private static final int EFETCH_READ_TIMEOUT = 300000;
+    
+    /** Tiempo maximo, en milisegundos, para obtener las publicaciones de PubMed y PubMed Central de una busqueda */
+    private static final long PUBLICATIONS_TIMEOUT = Long.getLong("nanopharmacy.publications.timeout", 1800000L);
+    
+    /** Plazo, en milisegundos, de las consultas asincronas distintas a las de publicaciones */
+    private static final long ASYNC_TIMEOUT = Long.getLong("nanopharmacy.async.timeout", 120000L);
+    
     /** Indica la URL de la pagina de la NCBI */
     private static final String Url_NBCI = "http://www.ncbi.nlm.nih.gov/";
     
     /** Indica la URL para la busqueda de informacion de un gen con el fin de validar el simbolo proporcionado */
-    private static final String CMD_ESearchGene = "http://eutils.ncbi.nlm.nih.gov/entrez/eutils/esearch.fcgi?db=" +
+    private static final String CMD_ESearchGene = "esearch.fcgi?db=" +
             Token_DbNAME + "&term=((" + Token_GENE +
             "%5BGene%20Name%5D)%20AND%20homo%20sapiens%5BOrganism%5D)%20AND%20alive%5Bprop%5D&retmode=xml";
     
+    /** Transporte compartido por las instancias creadas con el constructor sin parametros */
+    private static final EntrezTransport DEFAULT_TRANSPORT =
+            CachingTransport.fromSystemProperties(HttpTransport.getDefault());
+    
+    /**
+     * Simbolos de genes que Entrez confirmo como inexistentes, por URL base y simbolo. Su tamaño y
+     * vigencia, en minutos, se definen con las propiedades del sistema
+     * {@literal nanopharmacy.genes.invalid.size} y {@literal nanopharmacy.genes.invalid.ttl}.
+     */
+    private static final TinyLfuCache INVALID_GENES = new TinyLfuCache(
+            Integer.getInteger("nanopharmacy.genes.invalid.size", 10000),
+            TimeUnit.MINUTES.toMillis(Long.getLong("nanopharmacy.genes.invalid.ttl", TimeUnit.DAYS.toMinutes(1))),
+            Long.MAX_VALUE, EntrezExecutors.refresh());
+    
+    /** Medio por el que se realizan las peticiones HTTP a Entrez */
+    private final EntrezTransport transport;
+    
+    /** Tiempos y contadores de la obtencion de publicaciones */
+    private static final PipelineMetrics METRICS = PipelineMetrics.getDefault();
+    
+    /** Limita la tasa de peticiones a Entrez; por omision, compartido por todas las instancias */
+    private final EntrezRateLimiter rateLimiter;
+    
+    /** URL base, terminada en {@literal /}, a la que se agregan las rutas {@code CMD_*} */
+    private final String baseUrl;
+    
+    /**
+     * Crea una instancia que realiza sus peticiones a traves del transporte compartido
+     * {@link HttpTransport#getDefault()}, el cual reutiliza las conexiones con Entrez. Si la propiedad
+     * del sistema {@value CachingTransport#DIR_PROPERTY} esta definida, las respuestas se conservan
+     * en disco con un {@link CachingTransport}.
+     */
+    public ESearchImpl() {
+        this(DEFAULT_TRANSPORT);
+    }
+    
+    /**
+     * Crea una instancia que realiza sus peticiones a traves del transporte especificado.
+     * @param transport el medio por el que se realizaran las peticiones HTTP a Entrez
+     */
+    public ESearchImpl(EntrezTransport transport) {
+        this(transport, BASE_URL, EntrezRateLimiter.getDefault());
+    }
+    
+    /**
+     * Crea una instancia que realiza sus peticiones a un servidor distinto del de la NCBI, por
+     * ejemplo, un servidor local que reproduce respuestas grabadas para pruebas de carga.
+     * @param transport el medio por el que se realizaran las peticiones HTTP
+     * @param baseUrl URL base de los servicios E-utilities, por ejemplo
+     *        {@literal http://localhost:8080/entrez/eutils/}
+     * @param rateLimiter limita la tasa de peticiones realizadas por esta instancia
+     */
+    public ESearchImpl(EntrezTransport transport, String baseUrl, EntrezRateLimiter rateLimiter) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport es nulo");
+        }
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            throw new IllegalArgumentException("baseUrl es nulo");
+        }
+        if (rateLimiter == null) {
+            throw new IllegalArgumentException("rateLimiter es nulo");
+        }
+        this.transport = transport;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.rateLimiter = rateLimiter;
+    }
+    
     /**
      * Toma la url especificada en {@code cmd} y remplaza los tokens {@link ESearchImpl.Token_LY},
      * {@link ESearchImpl.Token_LM}, {@link ESearchImpl.Token_LD}, {@link ESearchImpl.Token_UY},
@@ -259,6 +364,26 @@ public class ESearchImpl {
     public JSONObject getGeneInfo(final String geneName)
             throws NoDataException, UseHistoryException, ProtocolException, IOException {
         
+        String key = EntrezResultCache.key(this.baseUrl, EntrezResultCache.GENE, geneName);
+        String cached = EntrezResultCache.getDefault().get(key,
+                k -> this.reloadResult(EntrezResultCache.GENE, geneName));
+        if (cached != null) {
+            return new JSONObject(cached);
+        }
+        JSONObject gene = this.loadGeneInfo(geneName);
+        if (gene != null && !gene.has("error")) {
+            EntrezResultCache.getDefault().put(key, gene.toString());
+        }
+        return gene;
+    }
+    
+    /**
+     * Obtiene de Entrez la informacion basica de un gen, sin consultar {@link EntrezResultCache}.
+     * @see #getGeneInfo(String)
+     */
+    private JSONObject loadGeneInfo(final String geneName)
+            throws NoDataException, UseHistoryException, ProtocolException, IOException {
+        
         JSONObject gene = null;
         Element docSum;
         boolean errorHappened = false;
@@ -310,6 +435,30 @@ public class ESearchImpl {
         return gene;
     }
 
+    /**
+     * Obtiene de nuevo un resultado almacenado en {@link EntrezResultCache}, para renovarlo en
+     * segundo plano.
+     * @param type tipo de resultado
+     * @param geneName simbolo del gen
+     * @return el resultado como texto JSON, o {@literal null} si no pudo obtenerse, contiene un error
+     *     o esta vacio
+     */
+    private String reloadResult(String type, String geneName) {
+        
+        try {
+            if (EntrezResultCache.GENE.equals(type)) {
+                JSONObject gene = this.loadGeneInfo(geneName);
+                return gene == null || gene.has("error") ? null : gene.toString();
+            }
+            JSONArray list = EntrezResultCache.DISEASES.equals(type) ? this.loadDiseasesInfo(geneName)
+                    : this.loadTestingLabInfo(geneName);
+            return list.length() == 0 ? null : list.toString();
+        } catch (NoDataException | UseHistoryException | IOException | JSONException e) {
+            Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, e);
+            return null;
+        }
+    }
+
     /**
      * Entrega un elemento JDOM  que representa la informacion basica de un gen
      * relacionado a humanos. Esta informacion es obtenida usando el sistema
@@ -401,6 +550,26 @@ public class ESearchImpl {
     public JSONArray getDiseasesInfo(final String geneName) throws NoDataException,
             UseHistoryException, ProtocolException, IOException {
         
+        String key = EntrezResultCache.key(this.baseUrl, EntrezResultCache.DISEASES, geneName);
+        String cached = EntrezResultCache.getDefault().get(key,
+                k -> this.reloadResult(EntrezResultCache.DISEASES, geneName));
+        if (cached != null) {
+            return new JSONArray(cached);
+        }
+        JSONArray diseases = this.loadDiseasesInfo(geneName);
+        if (diseases.length() > 0) {
+            EntrezResultCache.getDefault().put(key, diseases.toString());
+        }
+        return diseases;
+    }
+    
+    /**
+     * Obtiene de Entrez las enfermedades relacionadas con un gen, sin consultar {@link EntrezResultCache}.
+     * @see #getDiseasesInfo(String)
+     */
+    private JSONArray loadDiseasesInfo(final String geneName) throws NoDataException,
+            UseHistoryException, ProtocolException, IOException {
+        
         JSONArray diseases = new JSONArray();
         Element docSumSet;
         docSumSet = getDiseasesDom(geneName);
@@ -504,6 +673,27 @@ public class ESearchImpl {
     public JSONArray getTestingLabInfo(final String geneName)
             throws NoDataException, UseHistoryException, ProtocolException, IOException {
         
+        String key = EntrezResultCache.key(this.baseUrl, EntrezResultCache.TESTING_LABS, geneName);
+        String cached = EntrezResultCache.getDefault().get(key,
+                k -> this.reloadResult(EntrezResultCache.TESTING_LABS, geneName));
+        if (cached != null) {
+            return new JSONArray(cached);
+        }
+        JSONArray dataLst = this.loadTestingLabInfo(geneName);
+        if (dataLst.length() > 0) {
+            EntrezResultCache.getDefault().put(key, dataLst.toString());
+        }
+        return dataLst;
+    }
+    
+    /**
+     * Obtiene de Entrez las pruebas de laboratorio relacionadas con un gen, sin consultar
+     * {@link EntrezResultCache}.
+     * @see #getTestingLabInfo(String)
+     */
+    private JSONArray loadTestingLabInfo(final String geneName)
+            throws NoDataException, UseHistoryException, ProtocolException, IOException {
+        
         List<Element> conditionLst;
         JSONArray dataLst = new JSONArray();
         Element docSumSet;
@@ -653,17 +843,74 @@ public class ESearchImpl {
             final int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth)
             throws NoDataException, UseHistoryException, ProtocolException, IOException {
         
+        return this.getPublicationsInfo(geneName, molecularAlt, ellapsedYears, ellapsedDays, initMonth,
+                finalMonth, null);
+    }
+
+    /**
+     * Construye el mismo objeto JSON que
+     * {@link #getPublicationsInfo(String, String, int, int, int, int)}, pero solo con los articulos
+     * que no se conocen localmente. Para cada base de datos, esearch devuelve la lista de identificadores
+     * de la busqueda; los identificadores que {@code known} reconoce se descartan y efetch descarga
+     * unicamente el registro completo de los demas, de modo que una actualizacion en la que la mayoria
+     * de los articulos ya esta almacenada no los vuelve a descargar ni a procesar.
+     * <p>
+     * Si la busqueda tiene mas de {@value #RET_MAX} resultados, la lista de identificadores de esearch
+     * esta incompleta y se descargan todos los articulos, como en la version sin {@code known}.
+     * </p>
+     * @param geneName simbolo del gen a buscar en los articulos, por ejemplo: {@literal SF3B1}
+     * @param molecularAlt simbolo de la alteracion molecular relacionada con el gen. Por ejemplo: {@literal Lys700Glu}.
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @param known indica los articulos que ya se conocen y no deben descargarse; si es {@literal null}
+     *     se descargan todos los articulos de la busqueda
+     * @return un objeto JSON con la informacion de las publicaciones medicas no conocidas
+     * @throws org.nanopharmacy.eutility.impl.NoDataException En caso de no encontrar 
+     *     informaci&oacute;n con los criterios especificados
+     * @throws org.nanopharmacy.eutility.impl.UseHistoryException Si el parametro WebEnv 
+     *     de la petici&oacute;n no es reconocido por Entrez
+     * @throws java.net.ProtocolException Si ocurre un error en el protocolo utilizado 
+     *     durante la conexi&oacute;n con Entrez
+     * @throws java.io.IOException En caso de que haya problemas con la lectura de la 
+     *     respuesta del servidor
+     */
+    public JSONObject getPublicationsInfo(final String geneName, final String molecularAlt,
+            final int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known)
+            throws NoDataException, UseHistoryException, ProtocolException, IOException {
+        
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            JSONObject result = this.collectPublicationsInfo(geneName, molecularAlt, ellapsedYears, ellapsedDays,
+                    initMonth, finalMonth, known);
+            failed = result.has("error");
+            return result;
+        } finally {
+            METRICS.record(Stage.WINDOW, start, failed);
+        }
+    }
+
+    /**
+     * Realiza la busqueda de {@link #getPublicationsInfo(String, String, int, int, int, int, KnownArticles)}.
+     */
+    private JSONObject collectPublicationsInfo(final String geneName, final String molecularAlt,
+            final int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known)
+            throws NoDataException, UseHistoryException, ProtocolException, IOException {
+        
         JSONObject publications = new JSONObject();// publicaciones aceptadas y rechazadas
         JSONArray outstanding = new JSONArray();   // publicaciones aceptadas en el resultado final
         //JSONArray rejected = new JSONArray();      // publicaciones rechazadas debido a su ranking menor a 2
 
-        Document doc = null;
-        Element respRoot = null;
+        List<Article> articles = null;
         try {
             if (ellapsedYears > 0 || ellapsedDays > 0 || 
                     (initMonth >= 0 && finalMonth > 0 && initMonth < finalMonth)) {
-                doc = getPublicationsDom(geneName, molecularAlt, ellapsedYears, ellapsedDays, initMonth, finalMonth);
-                respRoot = doc.getRootElement();
+                articles = getPublications(geneName, molecularAlt, ellapsedYears, ellapsedDays, initMonth,
+                        finalMonth, known);
             } else {
 //                System.out.println("Periodo de busqueda mal definido");
                 throw new NoDataException("Periodo de busqueda mal definido");
@@ -674,7 +921,7 @@ public class ESearchImpl {
             errorData.put("msg", "No data for your search");
             publications.put("error", errorData);
 //            System.out.println("No data for your search: " + nde);
-            doc = null;
+            articles = null;
             Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, nde);
         } catch (IOException ioe) {
             JSONObject errorData = new JSONObject();
@@ -682,7 +929,7 @@ public class ESearchImpl {
             errorData.put("msg", "Communications problem");
             publications.put("error", errorData);
             System.out.println("Communications problem: " + ioe);
-            doc = null;
+            articles = null;
             Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, ioe);
         } catch (Exception e) {
             JSONObject errorData = new JSONObject();
@@ -690,97 +937,45 @@ public class ESearchImpl {
             errorData.put("msg", "General problem");
             publications.put("error", errorData);
             System.out.println("General problem: " + e);
-            doc = null;
+            articles = null;
             Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, e);
         }
         
-        JSONObject article, abstrct;
-        String pmid;
-        int rank, rankMax;
-        StringBuilder acceptedPubMed = new StringBuilder(512);
         int accepted = 0;
         int recovered = 0;
 
-        Date timeNow = new Date(System.currentTimeMillis());
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:SSz");
-//        System.out.println("Inicia creacion de JSON: " + format.format(timeNow));
-        if (respRoot != null) {
-//            System.out.println("Copiando elementos ...");
-            for (Element articleList : (List<Element>) respRoot.getChildren()) {
-                
-//                System.out.println(" ... Elemento: " + articleList.getName());
-                for (Element pubmedArt : (List<Element>) articleList.getChildren("article")) {
-                    recovered++;
-                    pmid = pubmedArt.getChildText("pmid");
-                    if (pmid != null && !pmid.isEmpty() && acceptedPubMed.indexOf(pmid) >= 0) {
-//                        System.out.println("pmid repetido: " + pmid);
-                        continue;
-                    } else if (pmid != null && !pmid.isEmpty()) {
-                        acceptedPubMed.append(pmid).append(",");
-                        accepted++;
-                    }
-                    rankMax = 0;
-                    List<Element> abstractLst = pubmedArt.getChildren("abstract");
+        if (articles != null) {
+            // PMIDs como valores positivos e identificadores de PMC como valores negativos
+            LongHashSet acceptedIds = new LongHashSet(articles.size() * 2);
+            for (Article art : articles) {
+                recovered++;
+                long pmid = art.getPmid();
+                long pmc = -(long) art.getPmc();
+                if (acceptedIds.contains(pmid) || acceptedIds.contains(pmc)) {
+//                    System.out.println("articulo repetido: " + art);
+                    continue;
+                }
+                if (pmid != 0L) {
+                    acceptedIds.add(pmid);
+                }
+                if (pmc != 0L) {
+                    acceptedIds.add(pmc);
+                }
+                accepted++;
+                if (art.getRanking() > 0) {
                     try {
-                        JSONArray abstracts = new JSONArray();
-                        for (Element abs : abstractLst) {
-                            if (abs.getChildText("rank") == null) {
-                                continue;
-                            }
-                            abstrct = new JSONObject();
-                            abstrct.put("label", abs.getChildText("label"));
-                            abstrct.put("text", abs.getChildText("text"));
-
-                            abstrct.put("prognosis", abs.getChildText("prognosis"));
-                            abstrct.put("prediction", abs.getChildText("prediction"));
-                            abstrct.put("treatment", abs.getChildText("treatment"));
-
-                            rank = Integer.parseInt(abs.getChildText("rank"));
-                            abstracts.put(abstrct);
-                            if (rank > rankMax) {
-                                rankMax = rank;
-                            }
-                        }
-                        if (rankMax > 0) {
-                            article = new JSONObject();
-                            if (pmid != null) {
-                                article.put("pmid", pmid);
-                            }
-                            if (pubmedArt.getChild("pmc") != null) {
-                                article.put("pmc", pubmedArt.getChildText("pmc"));
-                            }
-                            article.put("ranking", rankMax);
-                            article.put("abstract", abstracts);
-                            article.put("articleTitle", pubmedArt.getChildText("title"));
-                            article.put("url", pubmedArt.getChildText("url"));
-                            article.put("author", pubmedArt.getChildText("author"));
-                            article.put("reference", pubmedArt.getChildText("reference"));
-                            article.put("publicationYear", pubmedArt.getChildText("publicationYear"));
-                            article.put("publicationMonth", pubmedArt.getChildText("publicationMonth"));
-                            outstanding.put(article);
-        //                } else {
-        //                    article = new JSONObject();
-        //                    if (pubmedArt.getChild("pmc") != null) {
-        //                        article.put("pmc", pubmedArt.getChildText("pmc"));
-        //                    } else {
-        //                        article.put("pmid", pmid);
-        //                    }
-        //                    rejected.put(article);
-                        }
-                    } catch (JSONException | NumberFormatException jse) {
+                        outstanding.put(art.toJSON());
+                    } catch (JSONException jse) {
                         Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, jse);
                     }
-                } // for
-                    
-                    
-                    
+                }
             }
-//            System.out.println(">>>>Fin de copiado");
-//                pubmedArtList = respRoot.getChildren("article");
         }
-        doc = null;
+        articles = null;
+        METRICS.add(Counter.RECOVERED, recovered);
+        METRICS.add(Counter.ACCEPTED, accepted);
 //        System.out.println("total de recuperados = " + recovered);
-//        System.out.println("total de no repetidos (xml) = " + accepted);
+//        System.out.println("total de no repetidos = " + accepted);
 //        System.out.println("total de aceptados (json) = " + outstanding.length());
 
         try {
@@ -795,6 +990,86 @@ public class ESearchImpl {
         return publications;
     }
 
+    /**
+     * Obtiene las publicaciones medicas de un periodo dividido en ventanas consecutivas de
+     * {@code monthInc} meses, empezando por la mas reciente. Cada ventana se consulta con
+     * {@link #getPublicationsInfo(String, String, int, int, int, int, KnownArticles)}; se consultan
+     * hasta {@link EntrezExecutors#WINDOW_THREADS} ventanas simultaneamente, sujetas al limite de
+     * peticiones a Entrez, y cada resultado se entrega a {@code consumer} en el orden de las ventanas,
+     * en el hilo que invoca este metodo.
+     * @param geneName simbolo del gen a buscar en los articulos, por ejemplo: {@literal SF3B1}
+     * @param molecularAlt simbolo de la alteracion molecular relacionada con el gen
+     * @param initMonth numero de meses atras en que inicia la primera ventana
+     * @param finalMonth numero de meses atras en que termina el periodo
+     * @param monthInc numero de meses de cada ventana
+     * @param known indica los articulos que ya se conocen y no deben descargarse; puede ser {@literal null}
+     * @param consumer recibe el resultado de cada ventana, en orden
+     * @throws java.io.IOException si la consulta de una ventana falla de forma inesperada o si
+     *     {@code consumer} no puede procesar su resultado
+     * @throws java.lang.InterruptedException si el hilo se interrumpe mientras espera una ventana
+     */
+    public void getPublicationsInfo(final String geneName, final String molecularAlt, final int initMonth,
+            final int finalMonth, final int monthInc, final KnownArticles known,
+            final PublicationsConsumer consumer) throws IOException, InterruptedException {
+        
+        if (monthInc <= 0) {
+            throw new IllegalArgumentException("monthInc debe ser mayor a cero");
+        }
+        ExecutorService executor = EntrezExecutors.windows();
+        Deque<Future<JSONObject>> pending = new ArrayDeque<>(EntrezExecutors.WINDOW_THREADS);
+        int next = initMonth;
+        int current = initMonth;
+        try {
+            while (next < finalMonth || !pending.isEmpty()) {
+                while (next < finalMonth && pending.size() < EntrezExecutors.WINDOW_THREADS) {
+                    final int from = next;
+                    pending.add(executor.submit(() -> this.getPublicationsInfo(geneName, molecularAlt,
+                            0, 0, from, from + monthInc, known)));
+                    next += monthInc;
+                }
+                JSONObject publications;
+                try {
+                    publications = pending.poll().get();
+                } catch (ExecutionException ee) {
+                    if (ee.getCause() instanceof IOException) {
+                        throw (IOException) ee.getCause();
+                    }
+                    throw new IOException("Error al consultar publicaciones de " + geneName, ee.getCause());
+                }
+                boolean proceed = consumer.accept(current, current + monthInc, publications);
+                current += monthInc;
+                if (!proceed) {
+                    break;
+                }
+            }
+        } finally {
+            for (Future<JSONObject> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Recibe, en orden, el resultado de cada ventana de
+     * {@link ESearchImpl#getPublicationsInfo(String, String, int, int, int, KnownArticles, PublicationsConsumer)}.
+     */
+    public interface PublicationsConsumer {
+        
+        /**
+         * Recibe el resultado de una ventana.
+         * @param initMonth numero de meses atras en que inicia la ventana
+         * @param finalMonth numero de meses atras en que termina la ventana
+         * @param publications el objeto JSON de {@link ESearchImpl#getPublicationsInfo}, con el
+         *     arreglo {@literal outstanding} o con la propiedad {@literal error}
+         * @return {@literal true} para continuar con la siguiente ventana, {@literal false} para
+         *     descartar las ventanas restantes
+         * @throws java.io.IOException si el resultado no puede procesarse
+         * @throws java.lang.InterruptedException si el hilo se interrumpe durante el procesamiento
+         */
+        boolean accept(int initMonth, int finalMonth, JSONObject publications)
+                throws IOException, InterruptedException;
+    }
+
     /**
      * Entrega un elemento JDOM que representa la informacion sobre
      * publicaciones medicas relacionadas con un gen. Esta informacion es
@@ -830,15 +1105,179 @@ public class ESearchImpl {
             int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth)
             throws NoDataException, UseHistoryException, ProtocolException, IOException {
         
+        List<List<Article>> branches = this.getBranchArticles(geneName, molecularAlt, ellapsedYears,
+                ellapsedDays, initMonth, finalMonth, null);
         Document doc = new Document(new Element("PubmedArticleSet"));
-        Element elem;
-        elem = getPubMedDom(Db_PUBMED, geneName, molecularAlt, ellapsedYears, ellapsedDays, initMonth, finalMonth);
-        doc.getRootElement().addContent(elem);
-        elem = getPMCDom(Db_PMC, geneName, molecularAlt, ellapsedYears, ellapsedDays, initMonth, finalMonth);
-        doc.getRootElement().addContent(elem);
+        doc.getRootElement().addContent(ESearchImpl.toArticleList(branches.get(0)));
+        doc.getRootElement().addContent(ESearchImpl.toArticleList(branches.get(1)));
         return doc;
     }
 
+    /**
+     * Obtiene las publicaciones medicas relacionadas con un gen y una alteracion molecular, de las
+     * bases de datos PubMed y PubMed Central, en ese orden. Cada articulo incluye las secciones de su
+     * abstract con su relevancia; los articulos cuyo abstract no tiene relevancia se descartan.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt simbolo de la alteraci&oacute;n gen&eacute;tica relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la
+     *     busqueda. Es excluyente con {@code ellapsedDays} y con
+     *     los valores de {@literal initMonth} y {@literal finalMonth}
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda,
+     * es excluyente con {@code ellapsedYears} y con los valores de {@literal initMonth} y {@literal finalMonth}
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda. 
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda.
+     * @return la lista de articulos de PubMed seguidos de los de PubMed Central, sin eliminar repetidos
+     * @throws org.nanopharmacy.eutility.impl.NoDataException En caso de no encontrar 
+     *     informaci&oacute;n con los criterios especificados
+     * @throws org.nanopharmacy.eutility.impl.UseHistoryException Si el parametro WebEnv 
+     *     de la petici&oacute;n no es reconocido por Entrez
+     * @throws java.net.ProtocolException Si ocurre un error en el protocolo utilizado 
+     *     durante la conexi&oacute;n con Entrez
+     * @throws java.io.IOException En caso de que haya problemas con la lectura de la 
+     *     respuesta del servidor
+     */
+    public List<Article> getPublications(final String geneName, final String molecularAlt,
+            int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth)
+            throws NoDataException, UseHistoryException, ProtocolException, IOException {
+        
+        return this.getPublications(geneName, molecularAlt, ellapsedYears, ellapsedDays, initMonth,
+                finalMonth, null);
+    }
+
+    /**
+     * Obtiene las publicaciones medicas de {@link #getPublications(String, String, int, int, int, int)}
+     * que no se conocen localmente; los articulos que {@code known} reconoce no se descargan.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt simbolo de la alteraci&oacute;n gen&eacute;tica relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @param known indica los articulos que ya se conocen y no deben descargarse; si es {@literal null}
+     *     se descargan todos los articulos de la busqueda
+     * @return la lista de articulos de PubMed seguidos de los de PubMed Central, sin eliminar repetidos
+     * @throws org.nanopharmacy.eutility.impl.NoDataException En caso de no encontrar 
+     *     informaci&oacute;n con los criterios especificados
+     * @throws org.nanopharmacy.eutility.impl.UseHistoryException Si el parametro WebEnv 
+     *     de la petici&oacute;n no es reconocido por Entrez
+     * @throws java.net.ProtocolException Si ocurre un error en el protocolo utilizado 
+     *     durante la conexi&oacute;n con Entrez
+     * @throws java.io.IOException En caso de que haya problemas con la lectura de la 
+     *     respuesta del servidor
+     */
+    public List<Article> getPublications(final String geneName, final String molecularAlt,
+            int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known)
+            throws NoDataException, UseHistoryException, ProtocolException, IOException {
+        
+        List<List<Article>> branches = this.getBranchArticles(geneName, molecularAlt, ellapsedYears,
+                ellapsedDays, initMonth, finalMonth, known);
+        List<Article> articles = branches.get(0);
+        articles.addAll(branches.get(1));
+        return articles;
+    }
+
+    /**
+     * Obtiene los articulos de PubMed y de PubMed Central de forma concurrente, ambas consultas en el
+     * grupo {@link EntrezExecutors#branch()}. Las consultas comparten un plazo de
+     * {@link #PUBLICATIONS_TIMEOUT} milisegundos; si el plazo se agota, si una de ellas falla o si el
+     * hilo que invoca este metodo es interrumpido, se cancelan las consultas pendientes.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt simbolo de la alteraci&oacute;n gen&eacute;tica relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @param known indica los articulos que no deben descargarse, o {@literal null} para descargarlos todos
+     * @return una lista con dos elementos: los articulos de PubMed y los de PubMed Central
+     * @throws org.nanopharmacy.eutility.impl.NoDataException En caso de no encontrar 
+     *     informaci&oacute;n con los criterios especificados
+     * @throws org.nanopharmacy.eutility.impl.UseHistoryException Si el parametro WebEnv 
+     *     de la petici&oacute;n no es reconocido por Entrez
+     * @throws java.io.IOException En caso de que haya problemas con la lectura de la 
+     *     respuesta del servidor o de que se agote el plazo de la consulta
+     */
+    private List<List<Article>> getBranchArticles(final String geneName, final String molecularAlt,
+            final int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known) throws NoDataException, UseHistoryException, IOException {
+        
+        long deadline = System.currentTimeMillis() + PUBLICATIONS_TIMEOUT;
+        CompletionService<List<Article>> branches = new ExecutorCompletionService<>(EntrezExecutors.branch());
+        Future<List<Article>> pubMed = branches.submit(() -> this.getPubMedArticles(Db_PUBMED, geneName,
+                molecularAlt, ellapsedYears, ellapsedDays, initMonth, finalMonth, known));
+        Future<List<Article>> pmc = branches.submit(() -> this.getPMCArticles(Db_PMC, geneName,
+                molecularAlt, ellapsedYears, ellapsedDays, initMonth, finalMonth, known));
+        try {
+            //la primera consulta que falla cancela a la otra al salir, en el bloque finally
+            for (int done = 0; done < 2; done++) {
+                Future<List<Article>> branch;
+                try {
+                    branch = branches.poll(Math.max(0L, deadline - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Consulta de publicaciones interrumpida");
+                }
+                if (branch == null) {
+                    throw new InterruptedIOException("Se agoto el plazo para consultar "
+                            + (pubMed.isDone() ? Db_PMC : pmc.isDone() ? Db_PUBMED : Db_PUBMED + " y " + Db_PMC));
+                }
+                ESearchImpl.getBranchResult(branch, branch == pubMed ? Db_PUBMED : Db_PMC);
+            }
+            List<List<Article>> results = new ArrayList<>(2);
+            results.add(ESearchImpl.getBranchResult(pubMed, Db_PUBMED));
+            results.add(ESearchImpl.getBranchResult(pmc, Db_PMC));
+            return results;
+        } finally {
+            pubMed.cancel(true);
+            pmc.cancel(true);
+        }
+    }
+
+    /**
+     * Obtiene el resultado de una consulta ya terminada de {@link #getBranchArticles}.
+     * @param branch la consulta terminada
+     * @param dbName nombre de la base de datos consultada
+     * @return los articulos obtenidos por la consulta
+     * @throws org.nanopharmacy.eutility.impl.NoDataException si la consulta termino con esta excepcion
+     * @throws org.nanopharmacy.eutility.impl.UseHistoryException si la consulta termino con esta excepcion
+     * @throws java.io.IOException si la consulta termino con cualquier otro error
+     */
+    private static List<Article> getBranchResult(Future<List<Article>> branch, String dbName)
+            throws NoDataException, UseHistoryException, IOException {
+        
+        try {
+            return branch.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Consulta a " + dbName + " interrumpida");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof NoDataException) {
+                throw (NoDataException) cause;
+            } else if (cause instanceof UseHistoryException) {
+                throw (UseHistoryException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error al consultar " + dbName, cause);
+        }
+    }
+
+    /**
+     * Genera un elemento {@literal ArticleList} con la representacion JDOM de cada articulo.
+     * @param articles los articulos a representar
+     * @return el elemento {@literal ArticleList}
+     */
+    private static Element toArticleList(List<Article> articles) {
+        
+        Element root = new Element("ArticleList");
+        for (Article article : articles) {
+            root.addContent(article.toElement());
+        }
+        return root;
+    }
+
     /**
      * Entrega un elemento JDOM que representa la informacion sobre
      * publicaciones medicas relacionadas con un gen y una alteracion molecular proporcionadas.
@@ -874,20 +1313,69 @@ public class ESearchImpl {
             int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth)
             throws NoDataException, UseHistoryException, ProtocolException, IOException {
         
-        Element root = new Element("ArticleList");
+        return ESearchImpl.toArticleList(getPubMedArticles(dbName, geneName, molecularAlt, ellapsedYears,
+                ellapsedDays, initMonth, finalMonth, null));
+    }
+
+    /**
+     * Obtiene de la base de datos PubMed los articulos relacionados con un gen y una alteracion
+     * molecular, cuyo abstract tiene una relevancia mayor a cero. Los parametros tienen el mismo
+     * significado que en {@link #getPubMedDom}.
+     * @param dbName nombre de la base de datos de consulta.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt La alteracion molecular relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @param known indica los articulos que no deben descargarse, o {@literal null} para descargarlos todos
+     * @return la lista de articulos, en el orden de la busqueda
+     * @throws org.nanopharmacy.eutility.impl.NoDataException En caso de no encontrar 
+     *     informacion con los criterios especificados
+     * @throws org.nanopharmacy.eutility.impl.UseHistoryException Si el parametro WebEnv 
+     *     de la petici&oacute;n no es reconocido por Entrez
+     * @throws java.io.IOException En caso de que haya problemas con la lectura de la 
+     *     respuesta del servidor
+     */
+    private List<Article> getPubMedArticles(final String dbName, final String geneName, final String molecularAlt,
+            int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known) throws NoDataException, UseHistoryException, IOException {
+        
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Article> articles = this.searchPubMedArticles(dbName, geneName, molecularAlt, ellapsedYears,
+                    ellapsedDays, initMonth, finalMonth, known);
+            failed = false;
+            return articles;
+        } finally {
+            METRICS.record(Stage.PUBMED, start, failed);
+        }
+    }
+    
+    /**
+     * Realiza la busqueda y descarga de {@link #getPubMedArticles(String, String, String, int, int, int, int, KnownArticles)}.
+     */
+    private List<Article> searchPubMedArticles(final String dbName, final String geneName, final String molecularAlt,
+            int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known) throws NoDataException, UseHistoryException, IOException {
+        
+        final List<Article> articles = new ArrayList<>();
         Document doc;
         String spec;
         spec = getEllapsedTimeQuery(CMD_ESearchP, ellapsedYears, ellapsedDays, initMonth, finalMonth);
         spec = spec.replaceFirst(TOKEN_ALTMOL, getQueryValue(molecularAlt));
         spec = spec.replaceFirst(Token_DbNAME, dbName);
         spec = spec.replaceFirst(Token_GENE, geneName);
+        if (known != null) {
+            spec += "&retmax=" + RET_MAX;
+        }
 //        System.out.println("\nPubMed URL:\n" + spec);
         doc = this.getExternalData(spec);
         
         if (doc != null) {
             int count = 0;
             Element elem;
-            List<Element> nodes;
             String qryKey, webEnv;
 
             Element respRoot = doc.getRootElement();
@@ -913,6 +1401,9 @@ public class ESearchImpl {
                 throw new UseHistoryException("no se encontro valor de: WebEnv=");
             }
             webEnv = elem.getValue();
+            List<String> ids = known != null
+                    ? ESearchImpl.getUnknownIds(respRoot, count, Article.Source.PUBMED, known)
+                    : null;
             
             doc = null;
             elem = null;
@@ -922,165 +1413,138 @@ public class ESearchImpl {
                 throw new UseHistoryException("Entrez no devolvio queryKey ni WebEnv");
             }
             
-            if (count > 0) {
+            if (count > 0 && ids == null) {
 //                System.out.println("Articulos en busqueda PubMed: " + count);
-                spec = CMD_EFetch.replaceFirst(Token_DbNAME, Db_PUBMED);
-                spec = spec.replaceFirst(Token_QryKEY, qryKey);
-                spec = spec.replaceFirst(Token_WebENV, webEnv);
-                spec = spec.replaceFirst(Token_RetStart, "0");
-                spec = spec.replaceFirst(Token_RetMax, Integer.toString(count));
-                doc = this.getExternalData(spec);
-                
-                if (doc != null) {
-                    List<Element> abstractLst;
-                    String pmid, value;
-
-                    respRoot = doc.getRootElement();
-                    if (respRoot == null) {
-                        throw new NoDataException("no se encontraron elementos PubmedArticle para el gen " + geneName);
-                    }
-
-                    int sinAbstract = 0;
-                    int rankCero = 0;
-                    List<Element> pubmedArtList = respRoot.getChildren("PubmedArticle");
-                    for (Element pubmedArt : pubmedArtList) {
-                        int rank = 0;
-                        int globalRank = 0;
-                        String articleTite = null;
-                        String author = null;
-                        String pubYear = null;
-                        String pubMonth = null;
-                        Element articleNode = pubmedArt.getChild("MedlineCitation").getChild("Article");
-
-                        if (articleNode.getChild("Abstract") == null) {
-                            sinAbstract++;
-                            continue;
-                        }
-                        Element art = new Element("article");
-
-                        abstractLst = articleNode.getChild("Abstract").getChildren("AbstractText");
-                        String tmpPrognosis = "0";
-                        String tmpTreatment = "0";
-                        String tmpPrediction = "0";
-                        Element abs = new Element("abstract");
-
-                        for (Element e : abstractLst) {
-                            elem = new Element("label");
-                            elem.setText(e.getAttributeValue("Label") == null ? "Unlabeled" : e.getAttributeValue("Label"));
-                            abs.addContent(elem);
-
-                            elem = new Element("text");
-                            value = e.getValue();
-                            elem.setText(value);
-                            abs.addContent(elem);
+                this.fetchPages(Db_PUBMED, qryKey, webEnv, count,
+                        in -> this.parsePubMedPage(in, geneName, molecularAlt),
+                        articles::addAll);
+            } else if (ids != null && !ids.isEmpty()) {
+                this.fetchPages(Db_PUBMED, ids,
+                        in -> this.parsePubMedPage(in, geneName, molecularAlt),
+                        articles::addAll);
+            }// if count > 0
+        } // if esearch
+        return articles;
+    }
 
-                            Matcher m = prognosisPtrn.matcher(value);
-                            if(m.matches()) {
-                                tmpPrognosis = "1";
-                            }
-                            Matcher m1 = treatmentPtrn.matcher(value);
-                            if(m1.matches()) {
-                                tmpTreatment = "1";
-                            }
-                            Matcher m2 = predictPtrn.matcher(value);
-                             if(m2.matches()) {
-                                tmpPrediction = "1";
-                            }
-                            rank = Utils.getRanking(value, geneName, molecularAlt);
-                            elem = new Element("rank");
-                            elem.setText(Integer.toString(rank));
-                            abs.addContent(elem);
-                            globalRank = globalRank < rank ? rank : globalRank;
-                        }
-                        if (globalRank == 0) {
-                            rankCero++;
-                            continue;  //No nos interesan estos articulos
-                        }
-                        elem = new Element("prognosis");
-                        elem.setText(tmpPrognosis);
-                        abs.addContent(elem);
-                        elem = new Element("treatment");
-                        elem.setText(tmpTreatment);
-                        abs.addContent(elem);
-                        elem = new Element("prediction");
-                        elem.setText(tmpPrediction);
-                        abs.addContent(elem);
-                        art.addContent(abs);
+    /**
+     * Lee de forma secuencial una pagina de resultados de efetch sobre la base de datos PubMed y
+     * genera un articulo por cada {@literal PubmedArticle} cuyo abstract tenga una relevancia
+     * mayor a cero. Los articulos se procesan uno a uno conforme se leen del flujo.
+     * @param in flujo con la pagina de resultados de efetch, con estructura {@literal PubmedArticleSet}
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt La alteracion molecular relacionada con el gen
+     * @return la lista de articulos generados
+     * @throws IOException si el contenido de la pagina no es un documento XML valido
+     */
+    private List<Article> parsePubMedPage(InputStream in, final String geneName, final String molecularAlt)
+            throws IOException {
+        
+        long start = System.nanoTime();
+        final List<Article> page = new ArrayList<>(EFETCH_PAGE_SIZE);
+        try {
+            int sinAbstract = PubMedStreamParser.parse(in, record -> {
+                Article art = this.toPubMedArticle(record, geneName, molecularAlt);
+                if (art != null) {
+                    page.add(art);
+                }
+            });
+//            System.out.println("*** Sin abstract: " + sinAbstract);
+            METRICS.add(Counter.SIN_ABSTRACT, sinAbstract);
+        } catch (XMLStreamException xse) {
+            METRICS.record(Stage.PARSE, start, true);
+            throw new IOException("Pagina de PubMed no valida", xse);
+        }
+        METRICS.record(Stage.PARSE, start);
+        return page;
+    }
 
-                        elem = new Element("title");
-                        articleTite = articleNode.getChildText("ArticleTitle");
-                        elem.setText(articleTite);
-                        art.addContent(elem);
-                        pmid = pubmedArt.getChild("MedlineCitation").getChildText("PMID");
-                        elem = new Element("pmid");
-                        elem.setText(pmid);
-                        art.addContent(elem);
-                        elem = new Element("url");
-                        elem.setText(Url_NBCI + Db_PUBMED + "/" + pmid);
-                        art.addContent(elem);
+    /**
+     * Genera el articulo que corresponde a un {@literal PubmedArticle}, calculando la relevancia
+     * de cada seccion de su abstract. El articulo se conserva si alguna seccion tiene relevancia,
+     * pero, como en la clasificacion original de PubMed, se representa con una sola seccion: la
+     * etiqueta, el texto y la relevancia de la primera seccion, y las menciones de pronostico,
+     * tratamiento y prediccion encontradas en cualquiera de ellas.
+     * @param record los datos del articulo leidos de la respuesta de efetch
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt La alteracion molecular relacionada con el gen
+     * @return el articulo, o {@literal null} si ninguna seccion del abstract
+     *     tiene una relevancia mayor a cero
+     */
+    private Article toPubMedArticle(PubMedStreamParser.Record record, final String geneName,
+            final String molecularAlt) {
+        
+        long start = System.nanoTime();
+        int rank = 0;
+        int firstRank = 0;
+        int globalRank = 0;
+        long terms;
+        boolean tmpPrognosis = false;
+        boolean tmpTreatment = false;
+        boolean tmpPrediction = false;
 
-                        StringBuilder r = new StringBuilder(256);
-                        if (articleNode.getChild("AuthorList") != null) {
-                            nodes = articleNode.getChild("AuthorList").getChildren("Author");
-                            elem = nodes.get(0);
+        for (String[] section : record.abstracts) {
+            terms = Utils.scanTerms(section[1], molecularAlt);
+            tmpPrognosis |= (terms & Utils.TERM_PROGNOSIS) != 0;
+            tmpTreatment |= (terms & Utils.TERM_TREATMENT) != 0;
+            tmpPrediction |= (terms & Utils.TERM_PREDICTION) != 0;
+            rank = Utils.getRanking(terms);
+            if (section == record.abstracts.get(0)) {
+                firstRank = rank;
+            }
+            globalRank = globalRank < rank ? rank : globalRank;
+        }
+        METRICS.record(Stage.RANK, start);
+        if (globalRank == 0) {
+            METRICS.add(Counter.RANK_CERO, 1);
+            return null;  //No nos interesan estos articulos
+        }
+        String[] first = record.abstracts.get(0);
+        List<AbstractSection> sections = new ArrayList<>(1);
+        sections.add(new AbstractSection(first[0] == null ? "Unlabeled" : first[0], first[1], firstRank,
+                tmpPrognosis, tmpTreatment, tmpPrediction));
 
-                            author = elem.getChildText("LastName") + ", " + elem.getChildText("Initials");
-                            elem = new Element("author");
-                            elem.setText(author);
-                            art.addContent(elem);
+        String author = null;
+        StringBuilder r = new StringBuilder(256);
+        if (!record.authors.isEmpty()) {
+            String[] firstAuthor = record.authors.get(0);
+            author = firstAuthor[0] + ", " + firstAuthor[1];
+            for (String[] a : record.authors) {
+                r.append(a[0]).append(", ").append(a[1]).append("; ");
+            }
+        }
+        //Referencia al articulo
+        String pubMonth = record.month;
+        r.append("(").append(record.year).append("). ");
+        r.append(record.title);
+        r.append(" ");
+        r.append(record.journalTitle); //titulo de revista
+        r.append(". ISSN:").append(record.issn);
+        r.append(". vol.").append(record.volume);
+        r.append(". issue ").append(record.issue).append(". ");
+        r.append(pubMonth == null
+                ? ""
+                : " " + pubMonth);
+        r.append(record.day == null
+                ? ""
+                : " " + record.day);
+        r.append(".");
 
-                            for (Element e : nodes) {
-                                r.append(e.getChildText("LastName")).append(", ").append(e.getChildText("Initials")).append("; ");
-                            }
-                        }
-                        //Referencia al articulo
-                        elem = articleNode.getChild("Journal").getChild("JournalIssue");
-                        pubYear = elem.getChild("PubDate").getChildText("Year");
-                        pubMonth = elem.getChild("PubDate").getChildText("Month");
-                        r.append("(").append(pubYear).append("). ");
-                        r.append(articleTite);
-                        r.append(" ");
-                        r.append(elem.getParentElement().getChildText("Title")); //titulo de revista
-                        r.append(". ISSN:").append(elem.getParentElement().getChildText("ISSN"));
-                        r.append(". vol.").append(elem.getChildText("Volume"));
-                        r.append(". issue ").append(elem.getChildText("Issue")).append(". ");
-                        r.append(pubMonth == null
-                                ? ""
-                                : " " + pubMonth);
-                        r.append(elem.getChild("PubDate").getChildText("Day") == null
-                                ? ""
-                                : " " + elem.getChild("PubDate").getChildText("Day"));
-                        r.append(".");
-                        elem = new Element("reference");
-                        elem.setText(r.toString());
-                        art.addContent(elem);
-                        elem = null;
-                        elem = new Element("publicationYear");
-                        elem.setText(pubYear);
-                        art.addContent(elem);
-                        elem = null;
-                        elem = new Element("publicationMonth");
-                        if (pubMonth != null) {
-                            for (int i = 0; i < Utils.Months.length; i++) {
-                                String monthName = Utils.Months[i];
-                                if (monthName.equals(pubMonth)) {
-                                    pubMonth = Integer.toString(i + 1);
-                                    break;
-                                }
-                            }
-                        }
-                        elem.setText(pubMonth != null ? pubMonth : "");
-                        art.addContent(elem);
-                        root.addContent(art);
-                        pubYear = null;
-                        pubMonth = null;
-                    }
-//                    System.out.println("*** Sin abstract: " + sinAbstract);
-//                    System.out.println("Con rank igual a cero: " + rankCero);
-                } // if esummary
-            }// if count > 0
-        } // if esearch
-        return root;
+        int month = 0;
+        if (pubMonth != null) {
+            for (int i = 0; i < Utils.Months.length; i++) {
+                if (Utils.Months[i].equals(pubMonth)) {
+                    month = i + 1;
+                    break;
+                }
+            }
+            if (month == 0) {
+                month = Article.parseInt(pubMonth);
+            }
+        }
+        int pmid = Article.parseInt(record.pmid);
+        return new Article(Article.Source.PUBMED, pmid, 0, record.title, Url_NBCI + Db_PUBMED + "/" + record.pmid,
+                author, r.toString(), Article.parseInt(record.year), month, sections);
     }
 
     /**
@@ -1117,13 +1581,63 @@ public class ESearchImpl {
             int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth)
             throws NoDataException, UseHistoryException, ProtocolException, IOException {
         
-        Element root = new Element("ArticleList");
+        return ESearchImpl.toArticleList(getPMCArticles(dbName, geneName, molecularAlt, ellapsedYears,
+                ellapsedDays, initMonth, finalMonth, null));
+    }
+
+    /**
+     * Obtiene de la base de datos PubMed Central los articulos relacionados con un gen y una alteracion
+     * molecular, cuyo abstract tiene una relevancia mayor a cero. Los parametros tienen el mismo
+     * significado que en {@link #getPMCDom}.
+     * @param dbName nombre de la base de datos de consulta.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt La alteracion molecular relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @param known indica los articulos que no deben descargarse, o {@literal null} para descargarlos todos
+     * @return la lista de articulos, en el orden de la busqueda
+     * @throws org.nanopharmacy.eutility.impl.NoDataException En caso de no encontrar 
+     *     informacion con los criterios especificados
+     * @throws org.nanopharmacy.eutility.impl.UseHistoryException Si el parametro WebEnv 
+     *     de la petici&oacute;n no es reconocido por Entrez
+     * @throws java.io.IOException En caso de que haya problemas con la lectura de la 
+     *     respuesta del servidor
+     */
+    private List<Article> getPMCArticles(final String dbName, final String geneName, final String molecularAlt,
+            int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known) throws NoDataException, UseHistoryException, IOException {
+        
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Article> articles = this.searchPMCArticles(dbName, geneName, molecularAlt, ellapsedYears,
+                    ellapsedDays, initMonth, finalMonth, known);
+            failed = false;
+            return articles;
+        } finally {
+            METRICS.record(Stage.PMC, start, failed);
+        }
+    }
+    
+    /**
+     * Realiza la busqueda y descarga de {@link #getPMCArticles(String, String, String, int, int, int, int, KnownArticles)}.
+     */
+    private List<Article> searchPMCArticles(final String dbName, final String geneName, final String molecularAlt,
+            int ellapsedYears, final int ellapsedDays, final int initMonth, final int finalMonth,
+            final KnownArticles known) throws NoDataException, UseHistoryException, IOException {
+        
+        final List<Article> articles = new ArrayList<>();
         Document doc;
         String spec;
         spec = getEllapsedTimeQuery(CMD_ESearchP, ellapsedYears, ellapsedDays, initMonth, finalMonth);
         spec = spec.replaceFirst(TOKEN_ALTMOL, getQueryValue(molecularAlt));
         spec = spec.replaceFirst(Token_DbNAME, dbName);
         spec = spec.replaceFirst(Token_GENE, geneName);
+        if (known != null) {
+            spec += "&retmax=" + RET_MAX;
+        }
 //        System.out.println("\nPMC URL:\n" + spec);
         
         doc = this.getExternalData(spec);
@@ -1155,263 +1669,520 @@ public class ESearchImpl {
             }
             webEnv = elem.getValue();
             elem = null;
+            List<String> ids = known != null
+                    ? ESearchImpl.getUnknownIds(respRoot, count, Article.Source.PMC, known)
+                    : null;
             
             if (qryKey == null || webEnv == null) {
                 throw new UseHistoryException("Entrez no devolvio queryKey ni WebEnv");
             }
             
-            if (count > 0) {
+            if (count > 0 && ids == null) {
 //                System.out.println("\nArticulos en busqueda PMC: " + count);
-                spec = CMD_EFetch.replaceFirst(Token_DbNAME, Db_PMC);
-                spec = spec.replaceFirst(Token_QryKEY, qryKey);
-                spec = spec.replaceFirst(Token_WebENV, webEnv);
-                spec = spec.replaceFirst(Token_RetStart, "0");
-                spec = spec.replaceFirst(Token_RetMax, Integer.toString(count));
-                doc = this.getExternalData(spec); //Obtiene el detalle de los articulos
-                
-                if (doc != null) {
-                    String author, value;
-
-                    try {
-                        elem = doc.getRootElement();
-                        if (elem == null) {
-                            throw new NoDataException("no se encontraron elementos DocumentSummary para el gen " + geneName);
-                        }
-                        
-                        List<Element> pubmedArtList = elem.getChildren("article");
-                        int articulosEnXML = 0;
-                        int rankCero = 0;
-                        for (Element pubmedArt : pubmedArtList) {
-                            try {
-                                int rank = 0;
-                                String pmid = null;
-                                String pmc = null;
-                                String day = null;
-                                String month = null;
-                                String year = null;
-                                articulosEnXML++;
-                                Element articleMetaNode = pubmedArt.getChild("front").getChild("article-meta");
-                                int globalRank = 0;
-                                Element art = new Element("article");
-
-                                List<Element> abstractSecNodes = articleMetaNode.getChild("abstract") != null &&
-                                                                    articleMetaNode.getChild("abstract").getChildren("sec") != null
-                                                                ? articleMetaNode.getChild("abstract").getChildren("sec") : null;
-                                if (abstractSecNodes == null || abstractSecNodes.isEmpty()) {
-                                    if (articleMetaNode.getChild("abstract") == null) {
-                                        continue;
-                                    } else {
-                                        for (Element abstractPart : (List<Element>) articleMetaNode.getChild("abstract").getChildren("p")) {
-                                            Element abs = new Element("abstract");
-                                            elem = new Element("label");
-                                            elem.setText("Unlabeled");
-                                            abs.addContent(elem);
-                                            elem = new Element("text");
-                                            value = abstractPart.getText();
-                                            elem.setText(value);
-                                            abs.addContent(elem);
-                                            elem = new Element("prognosis");
-                                            elem.setText(value.contains("prognosis") ? "1" : "0");
-                                            abs.addContent(elem);
-                                            elem = new Element("treatment");
-                                            elem.setText(value.contains("treatment") ? "1" : "0");
-                                            abs.addContent(elem);
-                                            elem = new Element("prediction");
-                                            elem.setText(value.contains("predict") ? "1" : "0");
-                                            abs.addContent(elem);
-                                            rank = Utils.getRanking(value, geneName, molecularAlt);
-                                            elem = new Element("rank");
-                                            elem.setText(Integer.toString(rank));
-                                            abs.addContent(elem);
-                                            art.addContent(abs);
-                                            globalRank = globalRank < rank ? rank : globalRank;
-                                        }
-                                    }
-                                } else {
-                                    boolean atLeastOneAbstract = false;
-                                    for (Element e : abstractSecNodes) {
-                                        Element abs = new Element("abstract");
-
-                                        elem = new Element("label");
-                                        elem.setText(e.getChildText("title"));
-                                        abs.addContent(elem);
-
-                                        elem = new Element("text");
-                                        value = e.getChildText("p");
-                                        if (value != null) {
-                                            elem.setText(value);
-                                            abs.addContent(elem);
-
-                                            elem = new Element("prognosis");
-                                            elem.setText(value.contains("prognosis") ? "1" : "0");
-                                            abs.addContent(elem);
-                                            elem = new Element("treatment");
-                                            elem.setText(value.contains("treatment") ? "1" : "0");
-                                            abs.addContent(elem);
-                                            elem = new Element("prediction");
-                                            elem.setText(value.contains("predict") ? "1" : "0");
-                                            abs.addContent(elem);
+                this.fetchPages(Db_PMC, qryKey, webEnv, count,
+                        in -> this.parsePMCPage(in, geneName, molecularAlt),
+                        articles::addAll);
+            } else if (ids != null && !ids.isEmpty()) {
+                this.fetchPages(Db_PMC, ids,
+                        in -> this.parsePMCPage(in, geneName, molecularAlt),
+                        articles::addAll);
+            } //if count > 0
+        } // if esearch
+        return articles;
+    }
 
-                                            rank = Utils.getRanking(value, geneName, molecularAlt);
-                                            elem = new Element("rank");
-                                            elem.setText(Integer.toString(rank));
-                                            abs.addContent(elem);
-                                            globalRank = globalRank < rank ? rank : globalRank;
-                                            art.addContent(abs);
-                                            atLeastOneAbstract = true;
-                                        }
-                                    }
-                                    if (!atLeastOneAbstract) {//No tiene texto en abstract
-                                        continue;
-                                    }
-                                }
-                                if (globalRank == 0) {
-                                    rankCero++;
-                                    continue;  //No nos interesan estos articulos
-                                }
-                                elem = new Element("title");
-                                elem.setText(articleMetaNode.getChild("title-group").getChild("article-title").getValue());
-                                art.addContent(elem);
-                                elem = new Element("pmid");
-                                List<Element> articleIdNodes = articleMetaNode.getChildren("article-id");
-                                for (Element idNode : articleIdNodes) {
-                                    if (idNode.getAttributeValue("pub-id-type").equalsIgnoreCase("pmid")) {
-                                        pmid = idNode.getText();
-                                    } else if (idNode.getAttributeValue("pub-id-type").equalsIgnoreCase("pmc")) {
-                                        pmc = idNode.getText();
-                                    }
-                                }
-                                elem.setText(pmid != null ? pmid : "");
-                                art.addContent(elem);
-                                elem = new Element("pmc");
-                                elem.setText(pmc != null ? pmc : "");
-                                art.addContent(elem);
-                                elem = new Element("url");
-                                elem.setText("http://www.ncbi.nlm.nih.gov/pmc/articles/PMC" + pmc);
-                                art.addContent(elem);
+    /**
+     * Lee de forma secuencial una pagina de resultados de efetch sobre la base de datos PubMed Central
+     * y genera un articulo por cada {@literal article} cuyo abstract tenga una relevancia mayor a cero.
+     * Solo se lee {@literal front/article-meta} de cada articulo; el texto completo se descarta.
+     * @param in flujo con la pagina de resultados de efetch, con estructura {@literal pmc-articleset}
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt La alteracion molecular relacionada con el gen
+     * @return la lista de articulos generados
+     * @throws IOException si el contenido de la pagina no es un documento XML valido
+     */
+    private List<Article> parsePMCPage(InputStream in, final String geneName, final String molecularAlt)
+            throws IOException {
+        
+        long start = System.nanoTime();
+        final List<Article> page = new ArrayList<>(EFETCH_PAGE_SIZE);
+        try {
+            int sinAbstract = JatsFrontStreamParser.parse(in, record -> {
+                try {
+                    Article art = this.toPMCArticle(record, geneName, molecularAlt);
+                    if (art != null) {
+                        page.add(art);
+                    }
+                } catch (Exception e) {
+                    Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, e);
+                }
+            });
+//            System.out.println("*** Sin abstract PMC: " + sinAbstract);
+            METRICS.add(Counter.SIN_ABSTRACT, sinAbstract);
+        } catch (XMLStreamException xse) {
+            METRICS.record(Stage.PARSE, start, true);
+            throw new IOException("Pagina de PMC no valida", xse);
+        }
+        METRICS.record(Stage.PARSE, start);
+        return page;
+    }
 
-                                StringBuilder r = new StringBuilder(256);
-                                List<Element> authorsNodes = articleMetaNode.getChild("contrib-group") != null
-                                        ? articleMetaNode.getChild("contrib-group").getChildren("contrib") : null;
-                                if (authorsNodes != null) {
-                                    elem = authorsNodes.get(0);
-                                    if (elem.getChild("name") != null) {
-                                        author = elem.getChild("name").getChildText("surname") +
-                                                ", " + elem.getChild("name").getChildText("given-names");
-                                        elem = new Element("author");
-                                        elem.setText(author);
-                                        art.addContent(elem);
-                                    }
+    /**
+     * Genera el articulo que corresponde a un {@literal article} de PubMed Central,
+     * calculando la relevancia de cada seccion de su abstract.
+     * @param record los datos de {@literal article-meta} leidos de la respuesta de efetch
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt La alteracion molecular relacionada con el gen
+     * @return el articulo, o {@literal null} si el abstract no tiene texto
+     *     o ninguna de sus secciones tiene una relevancia mayor a cero
+     */
+    private Article toPMCArticle(JatsFrontStreamParser.Record record, final String geneName,
+            final String molecularAlt) {
+        
+        long start = System.nanoTime();
+        long terms;
+        int rank = 0;
+        int globalRank = 0;
+        List<String[]> parts;
 
-                                    for (Element e : authorsNodes) {
-                                        if (e.getChild("name") == null) {
-                                            continue;
-                                        }
-                                        r.append(e.getChild("name").getChildText("surname")).append(", ").
-                                                append(e.getChild("name").getChildText("given-names")).append("; ");
-                                    }
-                                }
-                                List<Element> datesNodes = articleMetaNode.getChildren("pub-date");
+        if (record.secCount == 0) {
+            parts = new ArrayList<>(record.paragraphs.size());
+            for (String paragraph : record.paragraphs) {
+                parts.add(new String[] {"Unlabeled", paragraph});
+            }
+        } else if (record.sections.isEmpty()) {
+            return null;  //No tiene texto en abstract
+        } else {
+            parts = record.sections;
+        }
+        List<AbstractSection> sections = new ArrayList<>(parts.size());
+        for (String[] part : parts) {
+            terms = Utils.scanTerms(part[1], molecularAlt);
+            rank = Utils.getRanking(terms);
+            sections.add(new AbstractSection(part[0], part[1], rank, (terms & Utils.TERM_PROGNOSIS) != 0,
+                    (terms & Utils.TERM_TREATMENT) != 0, (terms & Utils.TERM_PREDICTION) != 0));
+            globalRank = globalRank < rank ? rank : globalRank;
+        }
+        METRICS.record(Stage.RANK, start);
+        if (globalRank == 0) {
+            METRICS.add(Counter.RANK_CERO, 1);
+        }
+        if (globalRank == 0 || record.title == null) {
+            return null;  //No nos interesan estos articulos
+        }
 
-                                for (Element dateNode : datesNodes) {
-                                    if (dateNode.getAttributeValue("pub-type").equalsIgnoreCase("epub")) {
-                                        day = dateNode.getChildText("day");
-                                        month = dateNode.getChildText("month");
-                                        year = dateNode.getChildText("year");
-                                        break;
-                                    } else if (dateNode.getAttributeValue("pub-type").equalsIgnoreCase("ppub")) {
-                                        day = dateNode.getChildText("day");
-                                        month = dateNode.getChildText("month");
-                                        year = dateNode.getChildText("year");
-                                        break;
-                                    } else if (year != null && dateNode.getAttributeValue("pub-type").startsWith("pmc")) {
-                                        day = dateNode.getChildText("day");
-                                        month = dateNode.getChildText("month");
-                                        year = dateNode.getChildText("year");
-                                    }
-                                }
-                                if (year != null) {
-                                    r.append("(").append(year).append("). ");
-                                }
-                                
-                                //titulo y revista de la referencia
-                                r.append(articleMetaNode.getChild("title-group").getChild("article-title").getValue());
+        String author = null;
+        StringBuilder r = new StringBuilder(256);
+        if (!record.contribs.isEmpty()) {
+            String[] first = record.contribs.get(0);
+            if (first != null) {
+                author = first[0] + ", " + first[1];
+            }
+            for (String[] contrib : record.contribs) {
+                if (contrib == null) {
+                    continue;
+                }
+                r.append(contrib[0]).append(", ").append(contrib[1]).append("; ");
+            }
+        }
+        if (record.year != null) {
+            r.append("(").append(record.year).append("). ");
+        }
+        
+        //titulo y revista de la referencia
+        r.append(record.title);
+        if (record.journalTitle != null) {
+            r.append(". ");
+            r.append(record.journalTitle);
+        }
+        if (record.epubIssn != null || record.ppubIssn != null) {
+            r.append(". ISSN:");
+            r.append(record.epubIssn != null ? record.epubIssn : record.ppubIssn);
+        }
+        if (record.volume != null) {
+            r.append(". vol.");
+            r.append(record.volume);
+        }
+        if (record.issue != null) {
+            r.append(". issue ");
+            r.append(record.issue).append(". ");
+        }
+        int month = Article.parseInt(record.month);
+        if (record.month != null) {
+            try {
+                r.append(". ");
+                r.append(Utils.Months[Integer.parseInt(record.month)-1]);
+                if (record.day != null) {
+                    r.append(" ");
+                    r.append(record.day);
+                    r.append(".");
+                }
+            } catch (Exception e) {
+                Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, e);
+            }
+        }
+        return new Article(Article.Source.PMC, Article.parseInt(record.pmid), Article.parseInt(record.pmc),
+                record.title, "http://www.ncbi.nlm.nih.gov/pmc/articles/PMC" + record.pmc, author, r.toString(),
+                Article.parseInt(record.year), month, sections);
+    }
 
-                                Element magazine = articleMetaNode.getChild("journal-title-group") != null
-                                        ? articleMetaNode.getChild("journal-title-group").getChild("journal-title") : null;
-                                if (magazine != null) {
-                                    r.append(". ");
-                                    r.append(magazine.getValue());
-                                }
-                                String epubISSN = null;
-                                String ppubISSN = null;
-                                List<Element> issnNodes = articleMetaNode.getChildren("issn");
-                                for (Element issnNode : issnNodes) {
-                                    if (issnNode.getAttributeValue("pub-type").equalsIgnoreCase("epub")) {
-                                        epubISSN = issnNode.getText();
-                                        break;
-                                    } else if (issnNode.getAttributeValue("pub-type").equalsIgnoreCase("ppub")) {
-                                        ppubISSN = issnNode.getText();
-                                    }
-                                }
-                                if (epubISSN != null || ppubISSN != null) {
-                                    r.append(". ISSN:");
-                                    r.append(epubISSN != null ? epubISSN : ppubISSN);
-                                }
+    /**
+     * Obtiene, de la respuesta de esearch, los identificadores de los registros que no se conocen
+     * localmente.
+     * @param respRoot elemento {@literal eSearchResult} de la respuesta de esearch
+     * @param count numero total de registros de la busqueda
+     * @param source base de datos a la que pertenecen los identificadores
+     * @param known indica los articulos que ya se conocen
+     * @return los identificadores no conocidos, en el orden de la busqueda, o {@literal null} si la
+     *     respuesta no incluye los identificadores de todos los registros de la busqueda
+     */
+    private static List<String> getUnknownIds(Element respRoot, int count, Article.Source source,
+            KnownArticles known) {
+        
+        Element idList = respRoot.getChild(ESearchImpl.Elem_IdLIST);
+        if (idList == null) {
+            return count == 0 ? new ArrayList<>() : null;
+        }
+        List<?> children = idList.getChildren(ESearchImpl.Elem_ID);
+        if (children.size() < count) {
+            return null;
+        }
+        List<String> ids = new ArrayList<>(children.size());
+        for (Object child : children) {
+            String id = ((Element) child).getTextTrim();
+            if (!known.isKnown(source, Article.parseInt(id))) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
 
-                                elem = articleMetaNode.getChild("volume");
-                                if (elem != null) {
-                                    r.append(". vol.");
-                                    r.append(elem.getValue());
-                                }
+    /**
+     * Descarga, en paginas de {@link #EFETCH_PAGE_SIZE} registros, el resultado de una busqueda
+     * almacenada en el historial de Entrez. Las paginas se procesan como en
+     * {@link #downloadPages(String, List, EntrezTransport.ResponseHandler, PageConsumer)}.
+     * @param <T> tipo del resultado del procesamiento de cada pagina
+     * @param dbName nombre de la base de datos de consulta
+     * @param qryKey valor del parametro {@literal query_key} devuelto por esearch
+     * @param webEnv valor del parametro {@literal WebEnv} devuelto por esearch
+     * @param count numero total de registros de la busqueda
+     * @param parser procesa el contenido de cada pagina, en el hilo de descarga
+     * @param consumer recibe el resultado de cada pagina, en orden
+     * @throws org.nanopharmacy.eutility.impl.NoDataException si {@code consumer} no puede procesar una pagina
+     * @throws java.io.IOException si una pagina no pudo descargarse tras agotar los reintentos
+     */
+    private <T> void fetchPages(final String dbName, final String qryKey, final String webEnv, final int count,
+            final EntrezTransport.ResponseHandler<T> parser, final PageConsumer<T> consumer)
+            throws NoDataException, IOException {
+        
+        String spec = CMD_EFetch.replaceFirst(Token_DbNAME, dbName);
+        spec = spec.replaceFirst(Token_QryKEY, qryKey);
+        spec = spec.replaceFirst(Token_WebENV, webEnv);
+        spec = spec.replaceFirst(Token_RetMax, Integer.toString(EFETCH_PAGE_SIZE));
+        List<String> pageSpecs = new ArrayList<>(count / EFETCH_PAGE_SIZE + 1);
+        for (int retStart = 0; retStart < count; retStart += EFETCH_PAGE_SIZE) {
+            pageSpecs.add(spec.replaceFirst(Token_RetStart, Integer.toString(retStart)));
+        }
+        this.downloadPages(dbName, pageSpecs, parser, consumer);
+    }
 
-                                elem = articleMetaNode.getChild("issue");
-                                if (elem != null) {
-                                    r.append(". issue ");
-                                    r.append(articleMetaNode.getChild("issue").getValue()).append(". ");
-                                }
+    /**
+     * Descarga, en paginas de hasta {@link #EFETCH_PAGE_SIZE} registros, los registros con los
+     * identificadores especificados. Las paginas se procesan como en
+     * {@link #downloadPages(String, List, EntrezTransport.ResponseHandler, PageConsumer)}.
+     * @param <T> tipo del resultado del procesamiento de cada pagina
+     * @param dbName nombre de la base de datos de consulta
+     * @param ids identificadores de los registros a descargar
+     * @param parser procesa el contenido de cada pagina, en el hilo de descarga
+     * @param consumer recibe el resultado de cada pagina, en orden
+     * @throws org.nanopharmacy.eutility.impl.NoDataException si {@code consumer} no puede procesar una pagina
+     * @throws java.io.IOException si una pagina no pudo descargarse tras agotar los reintentos
+     */
+    private <T> void fetchPages(final String dbName, final List<String> ids,
+            final EntrezTransport.ResponseHandler<T> parser, final PageConsumer<T> consumer)
+            throws NoDataException, IOException {
+        
+        String spec = CMD_EFetchIds.replaceFirst(Token_DbNAME, dbName);
+        List<String> pageSpecs = new ArrayList<>(ids.size() / EFETCH_PAGE_SIZE + 1);
+        for (int start = 0; start < ids.size(); start += EFETCH_PAGE_SIZE) {
+            List<String> page = ids.subList(start, Math.min(start + EFETCH_PAGE_SIZE, ids.size()));
+            pageSpecs.add(spec.replaceFirst(Token_IDS, String.join(",", page)));
+        }
+        this.downloadPages(dbName, pageSpecs, parser, consumer);
+    }
 
-                                if (month != null) {
-                                    try {
-                                        r.append(". ");
-                                        r.append(Utils.Months[Integer.parseInt(month)-1]);
-                                        if (day != null) {
-                                            r.append(" ");
-                                            r.append(day);
-                                            r.append(".");
-                                        }
-                                    } catch (Exception e) {
-                                        Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, e);
-                                    }
-                                }
-                                elem = new Element("reference");
-                                elem.setText(r.toString());
-                                art.addContent(elem);
-                                elem = null;
-                                elem = new Element("publicationYear");
-                                elem.setText(year);
-                                art.addContent(elem);
-                                elem = null;
-                                elem = new Element("publicationMonth");
-                                elem.setText(month != null ? month : "");
-                                art.addContent(elem);
-                                elem = null;
-                                root.addContent(art);
-                            } catch (Exception e) {
-                                Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, e);
-                            }
-                        } // for pubmedArt
-//                        System.out.println("Articulos en XML PMC: " + articulosEnXML);
-//                        System.out.println("Excluidos con rank cero: " + rankCero);
-                    } catch (Exception jde) {
-                            Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, jde);
-                        System.out.println("Ha ocurrido un error mientras se obtiene informacion de PMC: " + jde);
-                        throw new NoDataException("Ha ocurrido un error mientras se obtiene informacion de PMC");
+    /**
+     * Descarga las paginas de efetch especificadas. Se descargan hasta
+     * {@link EntrezExecutors#EFETCH_THREADS} paginas simultaneamente y cada pagina se entrega a
+     * {@code consumer} en el orden de {@code pageSpecs}, en el hilo que invoca este metodo. Una pagina
+     * que no se puede descargar o interpretar se vuelve a solicitar hasta {@link #EFETCH_RETRIES} veces
+     * sin afectar a las demas; si aun asi falla, se cancelan las demas descargas y se lanza la excepcion,
+     * para no entregar un resultado incompleto.
+     * @param <T> tipo del resultado del procesamiento de cada pagina
+     * @param dbName nombre de la base de datos de consulta
+     * @param pageSpecs rutas de las peticiones de cada pagina
+     * @param parser procesa el contenido de cada pagina, en el hilo de descarga
+     * @param consumer recibe el resultado de cada pagina, en orden
+     * @throws org.nanopharmacy.eutility.impl.NoDataException si {@code consumer} no puede procesar una pagina
+     * @throws java.io.IOException si una pagina no pudo descargarse tras agotar los reintentos
+     */
+    private <T> void downloadPages(final String dbName, final List<String> pageSpecs,
+            final EntrezTransport.ResponseHandler<T> parser, final PageConsumer<T> consumer)
+            throws NoDataException, IOException {
+        
+        ExecutorService executor = EntrezExecutors.efetch();
+        Deque<Future<T>> pending = new ArrayDeque<>(EntrezExecutors.EFETCH_THREADS);
+        int next = 0;
+        try {
+            while (next < pageSpecs.size() || !pending.isEmpty()) {
+                while (next < pageSpecs.size() && pending.size() < EntrezExecutors.EFETCH_THREADS) {
+                    final String pageSpec = pageSpecs.get(next++);
+                    pending.add(executor.submit(() -> this.fetchPage(pageSpec, parser)));
+                }
+                T page;
+                try {
+                    page = pending.poll().get();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Descarga de paginas de " + dbName + " interrumpida");
+                } catch (ExecutionException ee) {
+                    if (ee.getCause() instanceof IOException) {
+                        throw (IOException) ee.getCause();
                     }
-                } // if efetch
-            } //if count > 0
-        } // if esearch
-        return root;
+                    throw new IOException("Error al descargar una pagina de " + dbName, ee.getCause());
+                }
+                consumer.accept(page);
+            }
+        } finally {
+            for (Future<T> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Descarga y procesa una pagina de efetch, reintentando la peticion en caso de error.
+     * @param <T> tipo del resultado del procesamiento de la pagina
+     * @param spec ruta de la peticion de la pagina
+     * @param parser procesa el contenido de la pagina
+     * @return el resultado del procesamiento de la pagina
+     * @throws IOException si la pagina no pudo descargarse o interpretarse tras agotar los reintentos;
+     *     el mensaje incluye la ruta de la peticion, con {@literal retstart} y {@literal WebEnv}
+     */
+    private <T> T fetchPage(String spec, EntrezTransport.ResponseHandler<T> parser) throws IOException {
+        
+        IOException lastError = null;
+        for (int attempt = 1; attempt <= EFETCH_RETRIES; attempt++) {
+            try {
+                T page = this.request(spec, EFETCH_READ_TIMEOUT, parser);
+                if (page != null) {
+                    return page;
+                }
+                lastError = new IOException("Pagina sin contenido");
+            } catch (InterruptedIOException iioe) {
+                throw iioe;
+            } catch (IOException ioe) {
+                lastError = ioe;
+                Logger.getLogger(ESearchImpl.class.getName()).log(Level.WARNING,
+                        "Intento " + attempt + " fallido para: " + spec, ioe);
+            }
+            if (attempt < EFETCH_RETRIES) {
+                try {
+                    Thread.sleep(attempt * 2000L);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Reintento interrumpido para: " + spec);
+                }
+            }
+        }
+        throw new IOException("No se pudo obtener la pagina tras " + EFETCH_RETRIES + " intentos: " + spec,
+                lastError);
+    }
+    
+    /**
+     * Version asincrona de {@link #getGeneInfo(String)}, ejecutada con {@link EntrezAsync}.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @return la informacion basica del gen; termina con {@link java.util.concurrent.TimeoutException}
+     *     si la consulta excede {@literal nanopharmacy.async.timeout} milisegundos (2 minutos por omision)
+     */
+    public CompletableFuture<JSONObject> getGeneInfoAsync(final String geneName) {
+        return EntrezAsync.submit(() -> this.getGeneInfo(geneName), ASYNC_TIMEOUT);
+    }
+    
+    /**
+     * Version asincrona de {@link #getDiseasesInfo(String)}, ejecutada con {@link EntrezAsync}.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @return la lista de enfermedades relacionadas con el gen; termina con
+     *     {@link java.util.concurrent.TimeoutException} si la consulta excede
+     *     {@literal nanopharmacy.async.timeout} milisegundos
+     */
+    public CompletableFuture<JSONArray> getDiseasesInfoAsync(final String geneName) {
+        return EntrezAsync.submit(() -> this.getDiseasesInfo(geneName), ASYNC_TIMEOUT);
+    }
+    
+    /**
+     * Version asincrona de {@link #getTestingLabInfo(String)}, ejecutada con {@link EntrezAsync}.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @return la lista de pruebas de laboratorio relacionadas con el gen; termina con
+     *     {@link java.util.concurrent.TimeoutException} si la consulta excede
+     *     {@literal nanopharmacy.async.timeout} milisegundos
+     */
+    public CompletableFuture<JSONArray> getTestingLabInfoAsync(final String geneName) {
+        return EntrezAsync.submit(() -> this.getTestingLabInfo(geneName), ASYNC_TIMEOUT);
+    }
+    
+    /**
+     * Version asincrona de {@link #hasGeneBD(String)}, ejecutada con {@link EntrezAsync}. Si el
+     * simbolo se encuentra en {@link HgncDictionary}, el resultado se entrega sin ocupar un hilo.
+     * @param geneName Simbolo del gen a validar
+     * @return {@literal true} en caso de existir el gen; termina con
+     *     {@link java.util.concurrent.TimeoutException} si la consulta excede
+     *     {@literal nanopharmacy.async.timeout} milisegundos
+     */
+    public CompletableFuture<Boolean> hasGeneBDAsync(final String geneName) {
+        if (geneName != null && HgncDictionary.getDefault().contains(geneName)) {
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+        return EntrezAsync.submit(() -> this.hasGeneBD(geneName), ASYNC_TIMEOUT);
+    }
+    
+    /**
+     * Version asincrona de {@link #getPublicationsInfo(String, String, int, int, int, int)},
+     * ejecutada con {@link EntrezAsync}.
+     * @param geneName simbolo del gen a buscar en los articulos, por ejemplo: {@literal SF3B1}
+     * @param molecularAlt simbolo de la alteracion molecular relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @return las publicaciones de PubMed y PMC; termina con {@link java.util.concurrent.TimeoutException}
+     *     si la consulta excede {@literal nanopharmacy.publications.timeout} milisegundos
+     */
+    public CompletableFuture<JSONObject> getPublicationsInfoAsync(final String geneName,
+            final String molecularAlt, final int ellapsedYears, final int ellapsedDays, final int initMonth,
+            final int finalMonth) {
+        return this.getPublicationsInfoAsync(geneName, molecularAlt, ellapsedYears, ellapsedDays, initMonth,
+                finalMonth, null);
+    }
+    
+    /**
+     * Version asincrona de {@link #getPublicationsInfo(String, String, int, int, int, int, KnownArticles)},
+     * ejecutada con {@link EntrezAsync}.
+     * @param geneName simbolo del gen a buscar en los articulos, por ejemplo: {@literal SF3B1}
+     * @param molecularAlt simbolo de la alteracion molecular relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @param known indica los articulos que ya se conocen y no deben descargarse; puede ser {@literal null}
+     * @return las publicaciones no conocidas de PubMed y PMC; termina con
+     *     {@link java.util.concurrent.TimeoutException} si la consulta excede
+     *     {@literal nanopharmacy.publications.timeout} milisegundos
+     */
+    public CompletableFuture<JSONObject> getPublicationsInfoAsync(final String geneName,
+            final String molecularAlt, final int ellapsedYears, final int ellapsedDays, final int initMonth,
+            final int finalMonth, final KnownArticles known) {
+        return EntrezAsync.submit(() -> this.getPublicationsInfo(geneName, molecularAlt, ellapsedYears,
+                ellapsedDays, initMonth, finalMonth, known), PUBLICATIONS_TIMEOUT);
+    }
+    
+    /**
+     * Version asincrona de {@link #getPublications(String, String, int, int, int, int, KnownArticles)},
+     * ejecutada con {@link EntrezAsync}.
+     * @param geneName simbolo del gen, por ejemplo: {@literal SF3B1}.
+     * @param molecularAlt simbolo de la alteraci&oacute;n gen&eacute;tica relacionada con el gen
+     * @param ellapsedYears El numero de años hacia atras para realizar la busqueda
+     * @param ellapsedDays numero de dias atras a partir de la fecha actual para realizar una busqueda
+     * @param initMonth numero de meses atras, que indica el inicio del periodo de busqueda
+     * @param finalMonth numero de meses atras, que indica el fin del periodo de busqueda
+     * @param known indica los articulos que ya se conocen y no deben descargarse; puede ser {@literal null}
+     * @return los articulos de PubMed seguidos de los de PubMed Central; termina con
+     *     {@link java.util.concurrent.TimeoutException} si la consulta excede
+     *     {@literal nanopharmacy.publications.timeout} milisegundos
+     */
+    public CompletableFuture<List<Article>> getPublicationsAsync(final String geneName,
+            final String molecularAlt, final int ellapsedYears, final int ellapsedDays, final int initMonth,
+            final int finalMonth, final KnownArticles known) {
+        return EntrezAsync.submit(() -> this.getPublications(geneName, molecularAlt, ellapsedYears,
+                ellapsedDays, initMonth, finalMonth, known), PUBLICATIONS_TIMEOUT);
+    }
+    
+    /**
+     * Realiza una peticion a Entrez a traves de {@link #transport}, respetando la tasa de peticiones
+     * de {@link #rateLimiter} y agregando a la ruta los parametros de identificacion configurados.
+     * Las peticiones que el transporte atiende desde un almacenamiento local no esperan turno.
+     * Todas las peticiones de esta clase a Entrez deben realizarse mediante este metodo.
+     * @param <T> tipo del valor generado a partir de la respuesta
+     * @param path ruta, relativa a {@link #baseUrl}, a la que se desea hacer la peticion, incluyendo
+     *        los parametros necesarios
+     * @param readTimeout tiempo maximo de espera, en milisegundos, para la lectura de la respuesta
+     * @param handler procesa el cuerpo de la respuesta
+     * @return el valor devuelto por {@code handler}
+     * @throws IOException en caso de problemas con la conexion o con la lectura de la respuesta
+     */
+    private <T> T request(String path, int readTimeout, EntrezTransport.ResponseHandler<T> handler)
+            throws IOException {
+        
+        String url = this.rateLimiter.sign(this.baseUrl + path);
+        if (!this.transport.isCached(url)) {
+            this.rateLimiter.acquire();
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = this.transport.execute(url, readTimeout, handler);
+            failed = false;
+            return result;
+        } finally {
+            METRICS.recordEndpoint(ESearchImpl.getEndpoint(path), start, failed);
+        }
+    }
+    
+    /**
+     * Obtiene el servicio y la base de datos de una peticion a Entrez, para agrupar sus tiempos.
+     * @param path ruta de la peticion, relativa a {@link #baseUrl}
+     * @return el servicio y la base de datos, por ejemplo {@literal efetch.pubmed}
+     */
+    private static String getEndpoint(String path) {
+        
+        int end = path.indexOf(".fcgi");
+        String service = end < 0 ? "other" : path.substring(0, end);
+        int db = path.indexOf("db=");
+        if (db < 0) {
+            return service;
+        }
+        int dbEnd = path.indexOf('&', db);
+        return service + "." + path.substring(db + 3, dbEnd < 0 ? path.length() : dbEnd);
+    }
+    
+    /**
+     * Interpreta un flujo como documento XML, sin propagar los errores de formato.
+     * @param in flujo con el contenido XML
+     * @return el documento correspondiente, o {@literal null} si el contenido no es XML valido
+     * @throws IOException en caso de problemas con la lectura del flujo
+     */
+    private static Document parseXML(InputStream in) throws IOException {
+        try {
+            return getXML(in);
+        } catch (JDOMException jde) {
+            Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, jde);
+            return null;
+        }
+    }
+    
+    /**
+     * Recibe, en orden, el resultado del procesamiento de cada pagina descargada por
+     * {@link ESearchImpl#downloadPages}.
+     * @param <T> tipo del resultado del procesamiento de cada pagina
+     */
+    private interface PageConsumer<T> {
+        
+        /**
+         * Recibe el resultado del procesamiento de una pagina.
+         * @param page el resultado del procesamiento de la pagina
+         * @throws org.nanopharmacy.eutility.impl.NoDataException si la pagina no puede procesarse
+         */
+        void accept(T page) throws NoDataException;
     }
 
     /**
@@ -1431,7 +2202,9 @@ public class ESearchImpl {
     }
     
     /**
-     * Valida la existencia de un gen en la BD.
+     * Valida la existencia de un gen en la BD. El simbolo se busca primero en
+     * {@link HgncDictionary#getDefault()} y despues entre los simbolos que Entrez confirmo como
+     * inexistentes; solo si no se encuentra en ninguno se consulta Entrez.
      * @param geneName Simbolo del gen a validar
      * @return {@literal true} en caso de existir y {@literal false} en el caso contrario
      * @throws org.nanopharmacy.eutility.impl.NoDataException En caso de no encontrar 
@@ -1448,29 +2221,19 @@ public class ESearchImpl {
      public boolean hasGeneBD(final String geneName) throws NoDataException, UseHistoryException,
              MalformedURLException, ProtocolException, IOException {
          
+        if (HgncDictionary.getDefault().contains(geneName)) {
+            return true;
+        }
+        String key = this.baseUrl + "|" + geneName.trim().toUpperCase(Locale.ROOT);
+        if (INVALID_GENES.get(key) != null) {
+            return false;
+        }
         boolean isValid = false;
         Document doc;
-        URL cmd;
         String spec;
-        HttpURLConnection conex;
         spec = CMD_ESearchGene.replaceFirst(Token_DbNAME, Db_GENE);
         spec = spec.replaceFirst(Token_GENE, geneName);
-        cmd = new URL(spec);
-        conex = (HttpURLConnection) cmd.openConnection();
-        conex.setConnectTimeout(30000);
-        conex.setReadTimeout(60000);
-        conex.setRequestMethod("GET");
-        conex.setDoOutput(true);
-        conex.connect();
-        try {
-            InputStream in = conex.getInputStream();
-            doc = getXML(in);
-        } catch (JDOMException jde) {
-            doc = null;
-            Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, null, jde);
-        } finally {
-            conex.disconnect();
-        }
+        doc = this.getExternalData(spec, 60000);
 
         if (doc != null) {
             Element elem;
@@ -1481,6 +2244,8 @@ public class ESearchImpl {
                 qryKey = elem.getValue();
                 if (Integer.parseInt(qryKey) > 0) {
                     isValid = true;
+                } else {
+                    INVALID_GENES.put(key, qryKey);
                 }
             }
         } 
@@ -1520,33 +2285,27 @@ public class ESearchImpl {
      * @throws IOException en caso de problemas con la lectura de la respuesta
      */
     private Document getExternalData(String path) throws IOException {
+        return this.getExternalData(path, 1500000);
+    }
+    
+    /**
+     * Realiza peticiones HTTP a la ruta especificada, por el metodo GET, a traves de {@link #transport},
+     * esperando obtener en respuesta un documento representado por un objeto {@link org.jdom.Document}
+     * @param path ruta a la que se desea hacer la peticion, incluyendo los parametros necesarios
+     * @param readTimeout tiempo maximo de espera, en milisegundos, para la lectura de la respuesta
+     * @return un {@link org.jdom.Document} que contiene la informacion solicitada por la peticion
+     * o {@literal null} en caso de {@link org.jdom.JDOMException} o {@link java.net.MalformedURLException}
+     * @throws IOException en caso de problemas con la lectura de la respuesta
+     */
+    private Document getExternalData(String path, int readTimeout) throws IOException {
         
         Document doc;
-        URL cmd;
-        HttpURLConnection conex = null;
 //        System.out.println("\nURL:\n" + path);
-        cmd = new URL(path);
         try {
-            conex = (HttpURLConnection) cmd.openConnection();
-            conex.setConnectTimeout(30000);
-            conex.setReadTimeout(1500000);
-            conex.setRequestMethod("GET");
-            conex.setDoOutput(true);
-            conex.connect();
-            InputStream in = conex.getInputStream();
-            doc = getXML(in);
-            in.close();
-        } catch (JDOMException jde) {
-            doc = null;
+            doc = this.request(path, readTimeout, ESearchImpl::parseXML);
         } catch (MalformedURLException mue) {
             Logger.getLogger(ESearchImpl.class.getName()).log(Level.SEVERE, "Request to: " + path, mue);
             doc = null;
-        } finally {
-            if (conex != null) {
-                conex.disconnect();
-            }
-            conex = null;
-            cmd = null;
         }
         return doc;
     }
@@ -0,0 +1,186 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta en segundo plano las consultas a Entrez de los metodos {@code *Async} de {@link ESearchImpl},
+ * para que el hilo que atiende una peticion HTTP de la aplicacion no quede bloqueado durante la
+ * consulta.
+ * <p>
+ * Las consultas se ejecutan en un grupo de {@literal nanopharmacy.async.threads} hilos (4 por omision)
+ * con una cola de hasta {@literal nanopharmacy.async.queue} consultas en espera (100 por omision); si
+ * la cola esta llena, el {@link CompletableFuture} devuelto termina de inmediato con una
+ * {@link RejectedExecutionException}, de modo que la aplicacion puede responder que el servicio esta
+ * saturado en lugar de acumular trabajo.
+ * </p>
+ * <p>
+ * Cancelar el {@code CompletableFuture} de una consulta con {@code cancel(true)} o agotar su plazo
+ * interrumpe el hilo que la ejecuta. La consulta se detiene en la siguiente espera: el turno del
+ * limite de peticiones, el de la conexion con el servidor o el resultado de otra consulta
+ * concurrente, las cuales tambien se cancelan; una lectura HTTP en curso termina, a lo sumo, al
+ * agotarse su tiempo de lectura.
+ * </p>
+ */
+public final class EntrezAsync {
+
+    /** Numero de hilos para las consultas en segundo plano */
+    static final int THREADS = Integer.getInteger("nanopharmacy.async.threads", 4);
+
+    /** Numero maximo de consultas en espera de un hilo */
+    static final int QUEUE = Integer.getInteger("nanopharmacy.async.queue", 100);
+
+    /** Grupo de hilos para las consultas en segundo plano */
+    private static final ThreadPoolExecutor EXECUTOR = newExecutor();
+
+    /** Programa el vencimiento del plazo de las consultas */
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+
+    private EntrezAsync() {
+    }
+
+    /**
+     * Ejecuta una consulta en segundo plano.
+     * @param <T> tipo del resultado de la consulta
+     * @param task la consulta
+     * @param timeout plazo de la consulta, en milisegundos; 0 o menos indica que no tiene plazo
+     * @return el resultado de la consulta; termina con la excepcion lanzada por {@code task}, con una
+     *     {@link TimeoutException} si se agota el plazo, o con una {@link RejectedExecutionException}
+     *     si hay demasiadas consultas en espera
+     */
+    static <T> CompletableFuture<T> submit(Callable<T> task, long timeout) {
+
+        TaskFuture<T> future = new TaskFuture<>(task);
+        try {
+            EXECUTOR.execute(future);
+        } catch (RejectedExecutionException ree) {
+            future.completeExceptionally(ree);
+            return future;
+        }
+        return timeout > 0 ? EntrezAsync.orTimeout(future, timeout, TimeUnit.MILLISECONDS) : future;
+    }
+
+    /**
+     * Establece un plazo para que termine un {@code CompletableFuture}. Al agotarse el plazo, el
+     * {@code CompletableFuture} termina con una {@link TimeoutException} y, si fue devuelto por un
+     * metodo {@code *Async} de {@link ESearchImpl}, se interrumpe la consulta.
+     * @param <T> tipo del resultado
+     * @param future el {@code CompletableFuture} a limitar
+     * @param timeout el plazo
+     * @param unit unidad de {@code timeout}
+     * @return el mismo {@code future}
+     */
+    public static <T> CompletableFuture<T> orTimeout(final CompletableFuture<T> future, long timeout, TimeUnit unit) {
+
+        if (future.isDone()) {
+            return future;
+        }
+        final ScheduledFuture<?> expiry = TIMER.schedule(() -> {
+            if (future.completeExceptionally(new TimeoutException("Se agoto el plazo de la consulta a Entrez"))
+                    && future instanceof TaskFuture) {
+                ((TaskFuture<?>) future).interruptRunner();
+            }
+        }, timeout, unit);
+        future.whenComplete((result, error) -> expiry.cancel(false));
+        return future;
+    }
+
+    /** @return el numero de consultas en ejecucion */
+    public static int getActiveCount() {
+        return EXECUTOR.getActiveCount();
+    }
+
+    /** @return el numero de consultas en espera de un hilo */
+    public static int getQueuedCount() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    private static ThreadPoolExecutor newExecutor() {
+
+        final AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, QUEUE)), r -> {
+                    Thread thread = new Thread(r, "entrez-async-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "entrez-async-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * {@code CompletableFuture} de una consulta que interrumpe el hilo que la ejecuta al cancelarse.
+     * @param <T> tipo del resultado de la consulta
+     */
+    private static final class TaskFuture<T> extends CompletableFuture<T> implements Runnable {
+
+        /** La consulta */
+        private final Callable<T> task;
+
+        /** Hilo que ejecuta la consulta, {@literal null} si no ha iniciado o ya termino */
+        private Thread runner;
+
+        TaskFuture(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+
+            synchronized (this) {
+                if (this.isDone()) {
+                    return;
+                }
+                this.runner = Thread.currentThread();
+            }
+            try {
+                this.complete(this.task.call());
+            } catch (Throwable t) {
+                this.completeExceptionally(t);
+            } finally {
+                synchronized (this) {
+                    this.runner = null;
+                }
+                //descarta una interrupcion dirigida a esta consulta, para que no afecte a la siguiente
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                this.interruptRunner();
+            }
+            return cancelled;
+        }
+
+        /**
+         * Interrumpe el hilo que ejecuta la consulta, si esta en ejecucion.
+         */
+        synchronized void interruptRunner() {
+            if (this.runner != null) {
+                this.runner.interrupt();
+            }
+        }
+    }
+}
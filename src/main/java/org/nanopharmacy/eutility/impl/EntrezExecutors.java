@@ -0,0 +1,117 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Administra los grupos de hilos utilizados para realizar peticiones concurrentes a Entrez.
+ * Cada tipo de tarea cuenta con su propio grupo, de modo que una tarea que espera el resultado
+ * de otras nunca ocupa los hilos que estas necesitan para ejecutarse.
+ * Los hilos son de tipo {@literal daemon} y se liberan tras un minuto de inactividad.
+ */
+final class EntrezExecutors {
+
+    /** Numero de hilos para la descarga de paginas de efetch */
+    static final int EFETCH_THREADS = Integer.getInteger("nanopharmacy.efetch.parallel", 3);
+
+    /** Grupo de hilos para la descarga de paginas de efetch */
+    private static final ExecutorService EFETCH = newPool("entrez-efetch", EFETCH_THREADS);
+
+    /** Numero de periodos de busqueda de publicaciones que se consultan simultaneamente */
+    static final int WINDOW_THREADS = Integer.getInteger("nanopharmacy.windows.parallel", 2);
+
+    /** Grupo de hilos para la consulta de periodos de busqueda de publicaciones */
+    private static final ExecutorService WINDOWS = newPool("entrez-window", WINDOW_THREADS);
+
+    /**
+     * Numero de consultas a PubMed y a PubMed Central que se realizan simultaneamente: dos por cada
+     * periodo de busqueda, mas dos para una consulta que no proviene de un periodo
+     */
+    static final int BRANCH_THREADS = Integer.getInteger("nanopharmacy.branch.parallel", 2 * (WINDOW_THREADS + 1));
+
+    /** Grupo de hilos para las consultas paralelas a PubMed y a PubMed Central */
+    private static final ExecutorService BRANCH = newPool("entrez-branch", BRANCH_THREADS);
+
+    /** Grupo de hilos para renovar en segundo plano los resultados de {@link EntrezResultCache} */
+    private static final ExecutorService REFRESH = newPool("entrez-refresh", 1);
+
+    private EntrezExecutors() {
+    }
+
+    /**
+     * Devuelve el grupo de hilos en que se descargan y procesan las paginas de efetch.
+     * @return el {@code ExecutorService} para las paginas de efetch
+     */
+    static ExecutorService efetch() {
+        return EFETCH;
+    }
+
+    /**
+     * Devuelve el grupo de hilos en que se consultan los periodos de busqueda de publicaciones. Cada
+     * periodo descarga sus paginas en el grupo de {@link #efetch()}.
+     * @return el {@code ExecutorService} para los periodos de busqueda
+     */
+    static ExecutorService windows() {
+        return WINDOWS;
+    }
+
+    /**
+     * Devuelve el grupo de hilos en que se consultan en paralelo PubMed y PubMed Central, mientras el
+     * hilo que solicita las publicaciones espera ambos resultados con un plazo. Cada consulta descarga
+     * sus paginas en el grupo de {@link #efetch()}.
+     * @return el {@code ExecutorService} para las consultas a PubMed y a PubMed Central
+     */
+    static ExecutorService branch() {
+        return BRANCH;
+    }
+
+    /**
+     * Devuelve el grupo de hilos en que se renuevan los resultados almacenados en
+     * {@link EntrezResultCache} antes de su vencimiento.
+     * @return el {@code ExecutorService} para las renovaciones
+     */
+    static ExecutorService refresh() {
+        return REFRESH;
+    }
+
+    /**
+     * Crea un grupo con un numero fijo de hilos.
+     * @param name prefijo del nombre de los hilos
+     * @param threads numero maximo de hilos
+     * @return el grupo de hilos creado
+     */
+    static ThreadPoolExecutor newPool(final String name, int threads) {
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Genera hilos de tipo {@literal daemon} con un nombre que identifica el grupo al que pertenecen.
+     */
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        /** Prefijo del nombre de los hilos */
+        private final String name;
+
+        /** Consecutivo de los hilos creados */
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.name + "-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
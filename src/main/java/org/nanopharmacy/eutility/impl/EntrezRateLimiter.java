@@ -0,0 +1,205 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limita el numero de peticiones por segundo que el proceso realiza a Entrez, mediante un
+ * algoritmo de cubeta de fichas (token bucket) compartido por todas las instancias de {@link ESearchImpl}.
+ * <p>
+ * La NCBI permite 3 peticiones por segundo, o 10 si las peticiones incluyen el parametro
+ * {@literal api_key}. La configuracion se toma de las siguientes propiedades de sistema:
+ * </p>
+ * <ul>
+ * <li>{@literal nanopharmacy.entrez.apiKey}: llave de acceso a E-utilities.</li>
+ * <li>{@literal nanopharmacy.entrez.tool}: nombre de la aplicacion que realiza las peticiones.</li>
+ * <li>{@literal nanopharmacy.entrez.email}: correo electronico de contacto del responsable de la aplicacion.</li>
+ * <li>{@literal nanopharmacy.entrez.rate}: peticiones por segundo permitidas; por omision 3, o 10 con {@literal api_key}.</li>
+ * </ul>
+ */
+public class EntrezRateLimiter {
+
+    /** Instancia compartida por todo el proceso */
+    private static final EntrezRateLimiter DEFAULT = new EntrezRateLimiter(
+            Double.parseDouble(System.getProperty("nanopharmacy.entrez.rate",
+                    System.getProperty("nanopharmacy.entrez.apiKey") != null ? "10" : "3")),
+            System.getProperty("nanopharmacy.entrez.apiKey"),
+            System.getProperty("nanopharmacy.entrez.tool", "NanoPharmacy"),
+            System.getProperty("nanopharmacy.entrez.email"));
+
+    /** Tiempo, en nanosegundos, en que se genera una ficha */
+    private final double nanosPerPermit;
+
+    /**
+     * Numero maximo de fichas acumulables. Es una sola ficha: si se acumularan las de un segundo, tras
+     * un periodo de inactividad podria enviarse una rafaga que, sumada a las peticiones a la tasa
+     * normal, duplicara el limite por segundo de la NCBI.
+     */
+    private static final double MAX_PERMITS = 1.0;
+
+    /** Fichas disponibles; un valor negativo indica fichas ya reservadas por peticiones en espera */
+    private double permits;
+
+    /** Momento, en nanosegundos, de la ultima actualizacion de {@link #permits} */
+    private long lastRefill;
+
+    /** Parametros de identificacion que se agregan a cada peticion */
+    private final String identity;
+
+    /** Numero de peticiones que han obtenido turno */
+    private final AtomicLong acquired = new AtomicLong();
+
+    /** Numero de peticiones que tuvieron que esperar turno */
+    private final AtomicLong delayed = new AtomicLong();
+
+    /** Tiempo total, en nanosegundos, de espera de las peticiones */
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    /** Tiempo maximo, en nanosegundos, que alguna peticion ha esperado turno */
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /** Numero de peticiones actualmente en espera */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Crea un limitador con la tasa y los parametros de identificacion especificados.
+     * @param permitsPerSecond numero de peticiones por segundo permitidas
+     * @param apiKey llave de acceso a E-utilities, puede ser {@literal null}
+     * @param tool nombre de la aplicacion que realiza las peticiones, puede ser {@literal null}
+     * @param email correo de contacto del responsable de la aplicacion, puede ser {@literal null}
+     */
+    public EntrezRateLimiter(double permitsPerSecond, String apiKey, String tool, String email) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond debe ser mayor a cero");
+        }
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.permits = MAX_PERMITS;
+        this.lastRefill = System.nanoTime();
+        StringBuilder params = new StringBuilder(128);
+        EntrezRateLimiter.appendParam(params, "tool", tool);
+        EntrezRateLimiter.appendParam(params, "email", email);
+        EntrezRateLimiter.appendParam(params, "api_key", apiKey);
+        this.identity = params.toString();
+    }
+
+    /**
+     * Devuelve el limitador compartido por todo el proceso.
+     * @return la instancia de {@code EntrezRateLimiter} configurada con las propiedades de sistema
+     */
+    public static EntrezRateLimiter getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Agrega a la ruta de una peticion los parametros de identificacion configurados
+     * ({@literal tool}, {@literal email} y {@literal api_key}).
+     * @param path ruta de la peticion, con al menos un parametro
+     * @return la ruta con los parametros de identificacion agregados
+     */
+    public String sign(String path) {
+        return this.identity.isEmpty() ? path : path + this.identity;
+    }
+
+    /**
+     * Espera hasta que la tasa de peticiones permita realizar una peticion mas. Las peticiones quedan
+     * separadas al menos por el intervalo que corresponde a la tasa configurada.
+     * @throws InterruptedIOException si el hilo es interrumpido durante la espera
+     */
+    public void acquire() throws InterruptedIOException {
+
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            this.permits = Math.min(MAX_PERMITS, this.permits + (now - this.lastRefill) / this.nanosPerPermit);
+            this.lastRefill = now;
+            this.permits -= 1;
+            wait = this.permits < 0 ? (long) (-this.permits * this.nanosPerPermit) : 0L;
+        }
+        this.acquired.incrementAndGet();
+        if (wait > 0) {
+            this.delayed.incrementAndGet();
+            this.waitNanos.addAndGet(wait);
+            long max = this.maxWaitNanos.get();
+            while (wait > max && !this.maxWaitNanos.compareAndSet(max, wait)) {
+                max = this.maxWaitNanos.get();
+            }
+            this.waiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException ie) {
+                //devuelve la ficha reservada, la peticion no se realizara
+                synchronized (this) {
+                    this.permits = Math.min(MAX_PERMITS, this.permits + 1);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrumpido en espera de turno para Entrez");
+            } finally {
+                this.waiting.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Agrega un parametro a la cadena de consulta si su valor no es vacio.
+     * @param params cadena de consulta en construccion
+     * @param name nombre del parametro
+     * @param value valor del parametro
+     */
+    private static void appendParam(StringBuilder params, String name, String value) {
+
+        if (value != null && !value.trim().isEmpty()) {
+            try {
+                params.append('&').append(name).append('=').append(URLEncoder.encode(value.trim(), "UTF-8"));
+            } catch (UnsupportedEncodingException uee) {
+                throw new IllegalStateException(uee);
+            }
+        }
+    }
+
+    /** @return el numero de peticiones por segundo permitidas */
+    public double getRate() {
+        return TimeUnit.SECONDS.toNanos(1) / this.nanosPerPermit;
+    }
+
+    /** @return el numero de peticiones que han obtenido turno */
+    public long getAcquired() {
+        return this.acquired.get();
+    }
+
+    /** @return el numero de peticiones que tuvieron que esperar turno */
+    public long getDelayed() {
+        return this.delayed.get();
+    }
+
+    /** @return el numero de peticiones actualmente en espera de turno */
+    public int getWaiting() {
+        return this.waiting.get();
+    }
+
+    /** @return el tiempo total, en milisegundos, que las peticiones han esperado turno */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.waitNanos.get());
+    }
+
+    /** @return el tiempo maximo, en milisegundos, que alguna peticion ha esperado turno */
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxWaitNanos.get());
+    }
+
+    /** @return el tiempo promedio, en milisegundos, de espera por peticion */
+    public double getAverageWaitMillis() {
+        long count = this.acquired.get();
+        return count == 0 ? 0.0 : (double) this.waitNanos.get() / count / 1000000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "EntrezRateLimiter{rate=" + getRate() + ", acquired=" + getAcquired() +
+                ", delayed=" + getDelayed() + ", waiting=" + getWaiting() +
+                ", totalWaitMillis=" + getTotalWaitMillis() + ", maxWaitMillis=" + getMaxWaitMillis() + "}";
+    }
+}
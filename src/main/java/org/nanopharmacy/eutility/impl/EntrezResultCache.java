@@ -0,0 +1,91 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.nanopharmacy.utils.TinyLfuCache;
+
+/**
+ * Cache en memoria, compartido por todas las instancias de {@link ESearchImpl}, de la informacion
+ * de genes, de enfermedades (MedGen) y de pruebas de laboratorio (GTR) por simbolo de gen. Esta
+ * informacion cambia con poca frecuencia y cada consulta a Entrez requiere dos peticiones.
+ * <p>
+ * Los resultados se almacenan como texto JSON, de modo que cada consulta entrega una copia que el
+ * llamador puede modificar. No se almacenan los resultados con error ni las listas vacias, ya que
+ * estas tambien se generan cuando la respuesta de Entrez no es un documento valido. La
+ * configuracion se toma de las siguientes propiedades del sistema:
+ * </p>
+ * <ul>
+ * <li>{@literal nanopharmacy.entrez.results.size}: numero maximo de resultados, 1000 por omision.</li>
+ * <li>{@literal nanopharmacy.entrez.results.ttl}: vigencia, en minutos, de un resultado; 7 dias por omision.</li>
+ * <li>{@literal nanopharmacy.entrez.results.refresh}: minutos tras los cuales un resultado consultado
+ *     se renueva en segundo plano; 1 dia por omision.</li>
+ * <li>{@literal nanopharmacy.entrez.results.snapshot}: archivo en que se respaldan los resultados al
+ *     terminar la aplicacion y del que se recuperan al iniciar; si no se define, no se respaldan.</li>
+ * </ul>
+ */
+public final class EntrezResultCache {
+
+    /** Tipo de resultado de {@link ESearchImpl#getGeneInfo(String)} */
+    static final String GENE = "gene";
+
+    /** Tipo de resultado de {@link ESearchImpl#getDiseasesInfo(String)} */
+    static final String DISEASES = "diseases";
+
+    /** Tipo de resultado de {@link ESearchImpl#getTestingLabInfo(String)} */
+    static final String TESTING_LABS = "testingLabs";
+
+    /** Archivo de respaldo de los resultados, puede ser {@literal null} */
+    private static final String SNAPSHOT = System.getProperty("nanopharmacy.entrez.results.snapshot");
+
+    /** Resultados almacenados */
+    private static final TinyLfuCache CACHE = new TinyLfuCache(
+            Integer.getInteger("nanopharmacy.entrez.results.size", 1000),
+            TimeUnit.MINUTES.toMillis(Long.getLong("nanopharmacy.entrez.results.ttl", TimeUnit.DAYS.toMinutes(7))),
+            TimeUnit.MINUTES.toMillis(Long.getLong("nanopharmacy.entrez.results.refresh", TimeUnit.DAYS.toMinutes(1))),
+            EntrezExecutors.refresh());
+
+    static {
+        if (SNAPSHOT != null && !SNAPSHOT.trim().isEmpty()) {
+            final File file = new File(SNAPSHOT.trim());
+            try {
+                CACHE.load(file);
+            } catch (IOException ioe) {
+                Logger.getLogger(EntrezResultCache.class.getName()).log(Level.SEVERE, null, ioe);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    CACHE.save(file);
+                } catch (IOException ioe) {
+                    Logger.getLogger(EntrezResultCache.class.getName()).log(Level.SEVERE, null, ioe);
+                }
+            }, "entrez-results-snapshot"));
+        }
+    }
+
+    private EntrezResultCache() {
+    }
+
+    /**
+     * Devuelve el cache compartido, por ejemplo, para consultar sus estadisticas o para respaldarlo.
+     * @return el cache de resultados
+     */
+    public static TinyLfuCache getDefault() {
+        return CACHE;
+    }
+
+    /**
+     * Genera la llave de un resultado. Los simbolos de genes no distinguen mayusculas de minusculas
+     * en las busquedas de Entrez.
+     * @param baseUrl URL base de los servicios consultados
+     * @param type tipo de resultado
+     * @param geneName simbolo del gen
+     * @return la llave del resultado
+     */
+    static String key(String baseUrl, String type, String geneName) {
+        return baseUrl + "|" + type + "|" + geneName.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,52 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Define el medio por el que {@link ESearchImpl} realiza sus peticiones HTTP al sistema Entrez.
+ * Las implementaciones deben ser seguras para su uso concurrente, ya que una misma instancia
+ * es compartida por todas las instancias de {@code ESearchImpl}.
+ * <p>
+ * La respuesta se entrega a un {@link ResponseHandler} mientras la conexion esta abierta; al
+ * terminar, la implementacion es responsable de liberar la conexion para que pueda ser reutilizada.
+ * </p>
+ */
+public interface EntrezTransport {
+
+    /**
+     * Realiza una peticion GET a la ruta especificada y entrega el cuerpo de la respuesta a {@code handler}.
+     * @param <T> tipo del valor generado por {@code handler}
+     * @param path ruta a la que se desea hacer la peticion, incluyendo los parametros necesarios
+     * @param readTimeout tiempo maximo de espera, en milisegundos, para la lectura de la respuesta
+     * @param handler objeto que procesa el cuerpo de la respuesta
+     * @return el valor devuelto por {@code handler}
+     * @throws IOException en caso de problemas con la conexion o con la lectura de la respuesta
+     */
+    <T> T execute(String path, int readTimeout, ResponseHandler<T> handler) throws IOException;
+
+    /**
+     * Indica si la respuesta a una peticion puede obtenerse sin realizarla a Entrez, en cuyo caso
+     * la peticion no esta sujeta al limite de peticiones por segundo.
+     * @param path ruta de la peticion, incluyendo sus parametros
+     * @return {@literal true} si la respuesta se obtendra de un almacenamiento local
+     */
+    default boolean isCached(String path) {
+        return false;
+    }
+
+    /**
+     * Procesa el cuerpo de una respuesta HTTP.
+     * @param <T> tipo del valor generado a partir de la respuesta
+     */
+    interface ResponseHandler<T> {
+
+        /**
+         * Procesa el flujo de la respuesta. El flujo no debe cerrarse, de ello se encarga el transporte.
+         * @param in flujo con el cuerpo de la respuesta
+         * @return el valor generado a partir de la respuesta
+         * @throws IOException en caso de problemas con la lectura de la respuesta
+         */
+        T handle(InputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,402 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Diccionario local de simbolos de genes humanos y sus alias, para validar un simbolo sin consultar
+ * Entrez. Se construye a partir de un archivo con el formato de {@literal hgnc_complete_set.txt} de
+ * HGNC: texto separado por tabuladores con una primera linea de encabezados, de la que se usan las
+ * columnas {@literal symbol}, {@literal alias_symbol} y {@literal prev_symbol} (con los valores
+ * multiples separados por {@literal |}) de los registros cuyo {@literal status} es {@literal Approved}.
+ * Si el archivo no tiene una columna {@literal symbol}, cada valor separado por tabuladores o por
+ * {@literal |} se toma como un simbolo. Las lineas que inician con {@literal #} se ignoran.
+ * <p>
+ * El archivo se mapea en memoria y no se copian sus cadenas: la tabla de dispersion solo guarda la
+ * posicion y la longitud de cada simbolo dentro del archivo, en un arreglo de {@code long}. La
+ * comparacion no distingue mayusculas de minusculas, como las busquedas de Entrez.
+ * </p>
+ * <p>
+ * El diccionario compartido se carga del archivo indicado en la propiedad del sistema
+ * {@literal nanopharmacy.hgnc.file} o, si no se define, del recurso {@literal hgnc_symbols.txt} de
+ * este paquete, que contiene un simbolo por linea. Si ninguno existe, el diccionario esta vacio y
+ * todas las validaciones se realizan en Entrez.
+ * </p>
+ */
+public final class HgncDictionary {
+
+    /** Propiedad del sistema con la ruta del archivo de simbolos */
+    public static final String FILE_PROPERTY = "nanopharmacy.hgnc.file";
+
+    /** Recurso, relativo a este paquete, con el archivo de simbolos utilizado por omision */
+    private static final String RESOURCE = "hgnc_symbols.txt";
+
+    /** Diccionario compartido, cargado con {@link #getDefault()} */
+    private static volatile HgncDictionary defaultDictionary;
+
+    /** Contenido del archivo */
+    private final ByteBuffer data;
+
+    /** Posicion (32 bits altos) y longitud (16 bits bajos) de cada simbolo; 0 indica una celda vacia */
+    private final long[] table;
+
+    /** Numero de simbolos distintos */
+    private final int size;
+
+    /**
+     * Construye el diccionario de los simbolos contenidos en {@code data}.
+     */
+    private HgncDictionary(ByteBuffer data) {
+
+        this.data = data;
+        long[] entries = HgncDictionary.parse(data);
+        int capacity = Integer.highestOneBit(Math.max(16, entries.length * 2 - 1) << 1);
+        this.table = new long[capacity];
+        int count = 0;
+        for (long entry : entries) {
+            int start = (int) (entry >>> 32);
+            int length = (int) (entry & 0xFFFF);
+            int slot = this.find(start, length);
+            if (this.table[slot] == 0) {
+                this.table[slot] = entry;
+                count++;
+            }
+        }
+        this.size = count;
+    }
+
+    /**
+     * Devuelve el diccionario compartido, cargandolo la primera vez.
+     * @return el diccionario compartido; vacio si no se encontro el archivo de simbolos
+     */
+    public static HgncDictionary getDefault() {
+
+        HgncDictionary dictionary = defaultDictionary;
+        if (dictionary == null) {
+            synchronized (HgncDictionary.class) {
+                dictionary = defaultDictionary;
+                if (dictionary == null) {
+                    dictionary = HgncDictionary.loadDefault();
+                    defaultDictionary = dictionary;
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Carga el diccionario compartido del archivo configurado o del recurso de este paquete.
+     */
+    private static HgncDictionary loadDefault() {
+
+        String path = System.getProperty(FILE_PROPERTY);
+        try {
+            if (path != null && !path.trim().isEmpty()) {
+                return HgncDictionary.load(Paths.get(path.trim()));
+            }
+            try (InputStream in = HgncDictionary.class.getResourceAsStream(RESOURCE)) {
+                if (in != null) {
+                    return HgncDictionary.load(in);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Logger.getLogger(HgncDictionary.class.getName()).log(Level.SEVERE, null, e);
+        }
+        return new HgncDictionary(ByteBuffer.allocate(0));
+    }
+
+    /**
+     * Carga un diccionario de un archivo, mapeandolo en memoria.
+     * @param file el archivo de simbolos
+     * @return el diccionario con los simbolos del archivo
+     * @throws IOException en caso de problemas con la lectura del archivo, o si excede 2 GB
+     */
+    public static HgncDictionary load(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("El archivo de simbolos excede 2 GB: " + file);
+            }
+            return new HgncDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Carga un diccionario del contenido de un flujo, leyendolo a memoria.
+     * @param in flujo con el contenido del archivo de simbolos; no se cierra
+     * @return el diccionario con los simbolos del flujo
+     * @throws IOException en caso de problemas con la lectura del flujo
+     */
+    public static HgncDictionary load(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > -1) {
+            out.write(buffer, 0, read);
+        }
+        return new HgncDictionary(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Indica si un simbolo es un simbolo aprobado, un alias o un simbolo previo de un gen.
+     * @param symbol el simbolo a buscar
+     * @return {@literal true} si el simbolo se encuentra en el diccionario
+     */
+    public boolean contains(String symbol) {
+
+        if (symbol == null || this.size == 0) {
+            return false;
+        }
+        String key = symbol.trim();
+        if (key.isEmpty() || key.length() > 0xFFFF) {
+            return false;
+        }
+        int slot = HgncDictionary.hash(key) & (this.table.length - 1);
+        long entry;
+        while ((entry = this.table[slot]) != 0) {
+            if (this.matches(entry, key)) {
+                return true;
+            }
+            slot = (slot + 1) & (this.table.length - 1);
+        }
+        return false;
+    }
+
+    /** @return el numero de simbolos distintos del diccionario */
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public String toString() {
+        return "HgncDictionary{size=" + this.size + "}";
+    }
+
+    /**
+     * Busca la celda de un simbolo del archivo, o la celda vacia en que debe insertarse.
+     */
+    private int find(int start, int length) {
+
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + HgncDictionary.upper(this.data.get(i));
+        }
+        int slot = HgncDictionary.spread(h) & (this.table.length - 1);
+        long entry;
+        while ((entry = this.table[slot]) != 0) {
+            int other = (int) (entry >>> 32);
+            if ((entry & 0xFFFF) == length && this.regionEquals(other, start, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & (this.table.length - 1);
+        }
+        return slot;
+    }
+
+    /**
+     * Compara, sin distinguir mayusculas de minusculas, dos regiones del archivo.
+     */
+    private boolean regionEquals(int a, int b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (HgncDictionary.upper(this.data.get(a + i)) != HgncDictionary.upper(this.data.get(b + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compara, sin distinguir mayusculas de minusculas, un simbolo del archivo con una cadena.
+     */
+    private boolean matches(long entry, String key) {
+
+        int start = (int) (entry >>> 32);
+        int length = (int) (entry & 0xFFFF);
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c > 0x7F || HgncDictionary.upper(this.data.get(start + i)) != HgncDictionary.upper((byte) c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calcula la dispersion de una cadena, con el mismo resultado que {@link #find(int, int)} para
+     * los mismos caracteres ASCII.
+     */
+    private static int hash(String key) {
+        int h = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            h = 31 * h + (c > 0x7F ? c : HgncDictionary.upper((byte) c));
+        }
+        return HgncDictionary.spread(h);
+    }
+
+    private static int upper(byte b) {
+        return b >= 'a' && b <= 'z' ? b - 32 : b & 0xFF;
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Obtiene la posicion y la longitud de cada simbolo del archivo.
+     * @param data contenido del archivo
+     * @return un arreglo con la posicion (32 bits altos) y la longitud (16 bits bajos) de cada
+     *     simbolo, incluyendo repetidos
+     */
+    private static long[] parse(ByteBuffer data) {
+
+        long[] entries = new long[1024];
+        int count = 0;
+        int limit = data.limit();
+        int pos = 0;
+        int[] columns = null;   // symbol, alias_symbol, prev_symbol, status
+        boolean header = true;
+        while (pos < limit) {
+            int end = pos;
+            while (end < limit && data.get(end) != '\n') {
+                end++;
+            }
+            int lineEnd = end > pos && data.get(end - 1) == '\r' ? end - 1 : end;
+            if (lineEnd > pos && data.get(pos) == '#') {
+                pos = end + 1;
+                continue;
+            }
+            if (header) {
+                header = false;
+                columns = HgncDictionary.readHeader(data, pos, lineEnd);
+                if (columns != null) {
+                    pos = end + 1;
+                    continue;
+                }
+            }
+            int column = 0;
+            int fieldStart = pos;
+            boolean approved = columns == null || columns[3] < 0;
+            long[] symbols = new long[16];
+            int symbolCount = 0;
+            for (int i = pos; i <= lineEnd; i++) {
+                if (i < lineEnd && data.get(i) != '\t') {
+                    continue;
+                }
+                if (columns == null || column == columns[0] || column == columns[1] || column == columns[2]) {
+                    for (long symbol : HgncDictionary.split(data, fieldStart, i)) {
+                        if (symbolCount == symbols.length) {
+                            symbols = Arrays.copyOf(symbols, symbolCount * 2);
+                        }
+                        symbols[symbolCount++] = symbol;
+                    }
+                } else if (column == columns[3]) {
+                    approved = HgncDictionary.regionIs(data, fieldStart, i, "Approved");
+                }
+                column++;
+                fieldStart = i + 1;
+            }
+            if (approved) {
+                if (count + symbolCount > entries.length) {
+                    entries = Arrays.copyOf(entries, Math.max(entries.length * 2, count + symbolCount));
+                }
+                System.arraycopy(symbols, 0, entries, count, symbolCount);
+                count += symbolCount;
+            }
+            pos = end + 1;
+        }
+        return Arrays.copyOf(entries, count);
+    }
+
+    /**
+     * Obtiene la posicion de las columnas {@literal symbol}, {@literal alias_symbol},
+     * {@literal prev_symbol} y {@literal status} de la linea de encabezados.
+     * @return las posiciones, -1 para las columnas ausentes, o {@literal null} si la linea no tiene
+     *     una columna {@literal symbol}
+     */
+    private static int[] readHeader(ByteBuffer data, int start, int end) {
+
+        int[] columns = {-1, -1, -1, -1};
+        String[] names = {"symbol", "alias_symbol", "prev_symbol", "status"};
+        int column = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && data.get(i) != '\t') {
+                continue;
+            }
+            for (int n = 0; n < names.length; n++) {
+                if (HgncDictionary.regionIs(data, fieldStart, i, names[n])) {
+                    columns[n] = column;
+                }
+            }
+            column++;
+            fieldStart = i + 1;
+        }
+        return columns[0] < 0 ? null : columns;
+    }
+
+    /**
+     * Separa los valores de un campo por {@literal |}, omitiendo comillas y espacios.
+     * @return la posicion y la longitud de cada valor no vacio
+     */
+    private static long[] split(ByteBuffer data, int start, int end) {
+
+        long[] values = new long[4];
+        int count = 0;
+        int valueStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && data.get(i) != '|') {
+                continue;
+            }
+            int s = valueStart, e = i;
+            while (s < e && (data.get(s) == '"' || data.get(s) == ' ')) {
+                s++;
+            }
+            while (e > s && (data.get(e - 1) == '"' || data.get(e - 1) == ' ')) {
+                e--;
+            }
+            if (e > s && e - s <= 0xFFFF) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = ((long) s << 32) | (e - s);
+            }
+            valueStart = i + 1;
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Indica si una region del archivo contiene exactamente un texto ASCII, omitiendo comillas.
+     */
+    private static boolean regionIs(ByteBuffer data, int start, int end, String text) {
+
+        if (end - start >= 2 && data.get(start) == '"' && data.get(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (data.get(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,294 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementacion de {@link EntrezTransport} sobre {@link HttpURLConnection} que conserva las
+ * conexiones abiertas (keep-alive) entre peticiones.
+ * <p>
+ * A diferencia de llamar a {@link HttpURLConnection#disconnect()} tras cada peticion, esta clase
+ * consume por completo y cierra el flujo de la respuesta, con lo que el socket regresa al cache de
+ * conexiones persistentes de la JVM y la siguiente peticion al mismo servidor evita el
+ * establecimiento de la conexion TCP. El numero de peticiones simultaneas por servidor esta acotado
+ * y se lleva registro del uso de cada servidor.
+ * </p>
+ * <p>
+ * El numero de peticiones simultaneas por servidor lo limita esta clase
+ * ({@literal nanopharmacy.http.maxPerHost}, 5 por omision). Las conexiones persistentes se
+ * controlan con las propiedades de sistema de la JVM, que esta clase no modifica porque afectan a
+ * todas las aplicaciones del contenedor: {@literal http.keepAlive} (activo por omision) y
+ * {@literal http.maxConnections}, el numero de conexiones inactivas que se conservan por servidor
+ * (5 por omision). Si se aumenta {@literal nanopharmacy.http.maxPerHost}, conviene que el operador
+ * aumente tambien {@literal http.maxConnections} al iniciar la JVM.
+ * </p>
+ */
+public class HttpTransport implements EntrezTransport {
+
+    /** Numero maximo de peticiones simultaneas por servidor, utilizado por la instancia compartida */
+    private static final int DEFAULT_MAX_PER_HOST = Integer.getInteger("nanopharmacy.http.maxPerHost", 5);
+
+    /** Tiempo maximo de espera, en milisegundos, para el establecimiento de una conexion */
+    private static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+
+    /** Numero maximo de bytes que se consumen de una respuesta no leida por completo antes de descartar la conexion */
+    private static final long MAX_DRAIN = 64 * 1024;
+
+    /** Instancia compartida por todas las instancias de {@link ESearchImpl} que no especifican un transporte */
+    private static final HttpTransport DEFAULT = new HttpTransport(DEFAULT_MAX_PER_HOST, DEFAULT_CONNECT_TIMEOUT);
+
+    /** Numero maximo de peticiones simultaneas por servidor */
+    private final int maxPerHost;
+
+    /** Tiempo maximo de espera, en milisegundos, para el establecimiento de una conexion */
+    private final int connectTimeout;
+
+    /** Estado y estadisticas de uso de cada servidor, indexados por {@literal host:puerto} */
+    private final ConcurrentHashMap<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Crea un transporte con los limites especificados.
+     * @param maxPerHost numero maximo de peticiones simultaneas por servidor
+     * @param connectTimeout tiempo maximo de espera, en milisegundos, para establecer una conexion
+     */
+    public HttpTransport(int maxPerHost, int connectTimeout) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("maxPerHost debe ser mayor a cero");
+        }
+        this.maxPerHost = maxPerHost;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Devuelve la instancia compartida del transporte.
+     * @return la instancia de {@code HttpTransport} utilizada por omision
+     */
+    public static HttpTransport getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public <T> T execute(String path, int readTimeout, ResponseHandler<T> handler) throws IOException {
+
+        URL cmd = new URL(path);
+        HostStats host = getHost(cmd);
+        host.acquire();
+        HttpURLConnection conex = null;
+        boolean reusable = false;
+        try {
+            conex = (HttpURLConnection) cmd.openConnection();
+            conex.setConnectTimeout(this.connectTimeout);
+            conex.setReadTimeout(readTimeout);
+            conex.setRequestMethod("GET");
+            conex.setRequestProperty("Connection", "keep-alive");
+            int status = conex.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                reusable = HttpTransport.drain(conex.getErrorStream());
+                throw new IOException("Respuesta HTTP " + status + " para: " + path);
+            }
+            InputStream in = conex.getInputStream();
+            T res = handler.handle(in);
+            reusable = HttpTransport.drain(in);
+            return res;
+        } catch (IOException ioe) {
+            host.errors.incrementAndGet();
+            throw ioe;
+        } finally {
+            if (reusable) {
+                host.released.incrementAndGet();
+            } else {
+                host.discarded.incrementAndGet();
+                if (conex != null) {
+                    conex.disconnect();
+                }
+            }
+            host.release();
+        }
+    }
+
+    /**
+     * Consume lo que resta del flujo de una respuesta y lo cierra, de modo que la conexion pueda
+     * regresar al cache de conexiones persistentes.
+     * @param in flujo de la respuesta, puede ser {@literal null}
+     * @return {@literal true} si el flujo se consumio por completo y la conexion puede reutilizarse
+     */
+    private static boolean drain(InputStream in) {
+
+        if (in == null) {
+            return false;
+        }
+        boolean complete = false;
+        try {
+            byte[] buffer = new byte[4096];
+            long total = 0;
+            int read;
+            while (total <= MAX_DRAIN && (read = in.read(buffer)) > -1) {
+                total += read;
+            }
+            complete = total <= MAX_DRAIN;
+        } catch (IOException ioe) {
+            complete = false;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ioe) {
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Obtiene el registro del servidor al que se dirige una peticion, creandolo si no existe.
+     * @param url direccion de la peticion
+     * @return el registro correspondiente al servidor de {@code url}
+     */
+    private HostStats getHost(URL url) {
+
+        String key = url.getHost() + ":" + (url.getPort() > -1 ? url.getPort() : url.getDefaultPort());
+        HostStats host = this.hosts.get(key);
+        if (host == null) {
+            host = new HostStats(key, this.maxPerHost);
+            HostStats previous = this.hosts.putIfAbsent(key, host);
+            if (previous != null) {
+                host = previous;
+            }
+        }
+        return host;
+    }
+
+    /**
+     * Devuelve las estadisticas de uso de cada servidor contactado a traves de este transporte.
+     * @return un mapa no modificable con las estadisticas, indexadas por {@literal host:puerto}
+     */
+    public Map<String, HostStats> getHostStats() {
+        return Collections.unmodifiableMap(new HashMap<>(this.hosts));
+    }
+
+    /**
+     * Devuelve el numero maximo de peticiones simultaneas por servidor.
+     * @return el limite de peticiones simultaneas por servidor
+     */
+    public int getMaxPerHost() {
+        return this.maxPerHost;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpTransport" + this.hosts.values();
+    }
+
+    /**
+     * Controla el acceso a un servidor y acumula las estadisticas de las peticiones realizadas a el.
+     */
+    public static final class HostStats {
+
+        /** Identificador del servidor, en la forma {@literal host:puerto} */
+        private final String name;
+
+        /** Limita el numero de peticiones simultaneas al servidor */
+        private final Semaphore permits;
+
+        /** Numero maximo de peticiones simultaneas al servidor */
+        private final int maxPermits;
+
+        /** Numero de peticiones realizadas */
+        private final AtomicLong requests = new AtomicLong();
+
+        /** Numero de peticiones que terminaron con error */
+        private final AtomicLong errors = new AtomicLong();
+
+        /** Numero de conexiones devueltas al cache de conexiones persistentes */
+        private final AtomicLong released = new AtomicLong();
+
+        /** Numero de conexiones cerradas sin posibilidad de reutilizarse */
+        private final AtomicLong discarded = new AtomicLong();
+
+        /** Tiempo total, en nanosegundos, que las peticiones esperaron turno para el servidor */
+        private final AtomicLong waitNanos = new AtomicLong();
+
+        HostStats(String name, int maxPermits) {
+            this.name = name;
+            this.maxPermits = maxPermits;
+            this.permits = new Semaphore(maxPermits, true);
+        }
+
+        /**
+         * Espera hasta que el numero de peticiones en curso al servidor sea menor al limite.
+         * @throws InterruptedIOException si el hilo es interrumpido durante la espera
+         */
+        void acquire() throws InterruptedIOException {
+
+            long start = System.nanoTime();
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrumpido en espera de conexion con " + this.name);
+            }
+            this.waitNanos.addAndGet(System.nanoTime() - start);
+            this.requests.incrementAndGet();
+        }
+
+        void release() {
+            this.permits.release();
+        }
+
+        /** @return el identificador del servidor, en la forma {@literal host:puerto} */
+        public String getName() {
+            return this.name;
+        }
+
+        /** @return el numero de peticiones en curso */
+        public int getInFlight() {
+            return this.maxPermits - this.permits.availablePermits();
+        }
+
+        /** @return el numero de peticiones en espera de turno */
+        public int getQueued() {
+            return this.permits.getQueueLength();
+        }
+
+        /** @return el numero de peticiones realizadas */
+        public long getRequests() {
+            return this.requests.get();
+        }
+
+        /** @return el numero de peticiones que terminaron con error */
+        public long getErrors() {
+            return this.errors.get();
+        }
+
+        /** @return el numero de conexiones devueltas al cache de conexiones persistentes */
+        public long getReleased() {
+            return this.released.get();
+        }
+
+        /** @return el numero de conexiones cerradas sin posibilidad de reutilizarse */
+        public long getDiscarded() {
+            return this.discarded.get();
+        }
+
+        /** @return el tiempo total, en milisegundos, que las peticiones esperaron turno */
+        public long getWaitMillis() {
+            return this.waitNanos.get() / 1000000L;
+        }
+
+        @Override
+        public String toString() {
+            return this.name + "{requests=" + getRequests() + ", errors=" + getErrors() +
+                    ", inFlight=" + getInFlight() + ", queued=" + getQueued() +
+                    ", released=" + getReleased() + ", discarded=" + getDiscarded() +
+                    ", waitMillis=" + getWaitMillis() + "}";
+        }
+    }
+}
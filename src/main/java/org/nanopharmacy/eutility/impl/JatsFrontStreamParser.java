@@ -0,0 +1,443 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Interpreta de forma secuencial (StAX) la respuesta de efetch sobre la base de datos PubMed Central,
+ * con estructura JATS, entregando un articulo a la vez.
+ * <p>
+ * De cada {@literal article} solo se lee {@literal front/article-meta}: identificadores, titulo,
+ * autores, fechas de publicacion, ISSN, volumen, numero y secciones del abstract. El texto completo
+ * del articulo ({@literal body}, {@literal back} y {@literal sub-article}) se descarta conforme se
+ * lee, sin construir nodos, y los articulos sin {@literal abstract} no se entregan.
+ * </p>
+ */
+final class JatsFrontStreamParser {
+
+    private JatsFrontStreamParser() {
+    }
+
+    /**
+     * Lee una respuesta de efetch y entrega a {@code handler} cada articulo que contiene abstract.
+     * La instancia de {@link Record} entregada se reutiliza para el siguiente articulo.
+     * @param in flujo con la respuesta de efetch, con estructura {@literal pmc-articleset}
+     * @param handler recibe cada articulo que contiene abstract
+     * @return el numero de articulos descartados por no contener abstract
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    static int parse(InputStream in, Handler handler) throws XMLStreamException {
+
+        int withoutAbstract = 0;
+        Record record = new Record();
+        XMLStreamReader reader = PubMedStreamParser.createReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if ("article".equals(reader.getLocalName())) {
+                        record.reset();
+                        readChildren(reader, record, Section.ARTICLE);
+                        if (record.hasMeta && record.hasAbstract) {
+                            handler.article(record);
+                        } else {
+                            withoutAbstract++;
+                        }
+                    } else if (!"pmc-articleset".equals(reader.getLocalName())) {
+                        PubMedStreamParser.skip(reader);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return withoutAbstract;
+    }
+
+    /**
+     * Procesa los elementos hijos del elemento actual, hasta encontrar su etiqueta de cierre.
+     * Solo se considera el primer elemento de cada tipo que el formato define como unico
+     * ({@literal front}, {@literal article-meta}, {@literal title-group}, {@literal abstract}, etc.).
+     * @param reader lector posicionado en la etiqueta de apertura del elemento
+     * @param record articulo en construccion
+     * @param section seccion del articulo que corresponde al elemento actual
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static void readChildren(XMLStreamReader reader, Record record, Section section)
+            throws XMLStreamException {
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = reader.getLocalName();
+            switch (section) {
+                case ARTICLE:
+                    if ("front".equals(name) && !record.hasMeta) {
+                        readChildren(reader, record, Section.FRONT);
+                    } else {
+                        PubMedStreamParser.skip(reader);
+                    }
+                    break;
+                case FRONT:
+                    if ("article-meta".equals(name) && !record.hasMeta) {
+                        record.hasMeta = true;
+                        readChildren(reader, record, Section.META);
+                    } else {
+                        PubMedStreamParser.skip(reader);
+                    }
+                    break;
+                case META:
+                    readMeta(reader, record, name);
+                    break;
+                case TITLE_GROUP:
+                    if ("article-title".equals(name) && record.title == null) {
+                        record.title = PubMedStreamParser.readText(reader);
+                    } else {
+                        PubMedStreamParser.skip(reader);
+                    }
+                    break;
+                case JOURNAL_TITLE_GROUP:
+                    if ("journal-title".equals(name) && record.journalTitle == null) {
+                        record.journalTitle = PubMedStreamParser.readText(reader);
+                    } else {
+                        PubMedStreamParser.skip(reader);
+                    }
+                    break;
+                case CONTRIB_GROUP:
+                    if ("contrib".equals(name)) {
+                        record.contribs.add(readContrib(reader));
+                    } else {
+                        PubMedStreamParser.skip(reader);
+                    }
+                    break;
+                case ABSTRACT:
+                    if ("sec".equals(name)) {
+                        record.secCount++;
+                        readSec(reader, record);
+                    } else if ("p".equals(name)) {
+                        record.paragraphs.add(PubMedStreamParser.readText(reader));
+                    } else {
+                        PubMedStreamParser.skip(reader);
+                    }
+                    break;
+                default:
+                    PubMedStreamParser.skip(reader);
+            }
+        }
+    }
+
+    /**
+     * Procesa un elemento hijo de {@literal article-meta}.
+     * @param reader lector posicionado en la etiqueta de apertura del elemento
+     * @param record articulo en construccion
+     * @param name nombre del elemento
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static void readMeta(XMLStreamReader reader, Record record, String name) throws XMLStreamException {
+
+        switch (name) {
+            case "article-id":
+                String idType = reader.getAttributeValue(null, "pub-id-type");
+                String id = PubMedStreamParser.readText(reader);
+                if ("pmid".equalsIgnoreCase(idType)) {
+                    record.pmid = id;
+                } else if ("pmc".equalsIgnoreCase(idType)) {
+                    record.pmc = id;
+                }
+                break;
+            case "title-group":
+                if (record.title == null) {
+                    readChildren(reader, record, Section.TITLE_GROUP);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+                break;
+            case "contrib-group":
+                if (!record.hasContribGroup) {
+                    record.hasContribGroup = true;
+                    readChildren(reader, record, Section.CONTRIB_GROUP);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+                break;
+            case "journal-title-group":
+                if (!record.hasJournalTitleGroup) {
+                    record.hasJournalTitleGroup = true;
+                    readChildren(reader, record, Section.JOURNAL_TITLE_GROUP);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+                break;
+            case "pub-date":
+                readPubDate(reader, record);
+                break;
+            case "issn":
+                String issnType = reader.getAttributeValue(null, "pub-type");
+                String issn = PubMedStreamParser.readText(reader);
+                if (record.epubIssn == null) {
+                    if ("epub".equalsIgnoreCase(issnType)) {
+                        record.epubIssn = issn;
+                    } else if ("ppub".equalsIgnoreCase(issnType)) {
+                        record.ppubIssn = issn;
+                    }
+                }
+                break;
+            case "volume":
+                if (record.volume == null) {
+                    record.volume = PubMedStreamParser.readText(reader);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+                break;
+            case "issue":
+                if (record.issue == null) {
+                    record.issue = PubMedStreamParser.readText(reader);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+                break;
+            case "abstract":
+                if (!record.hasAbstract) {
+                    record.hasAbstract = true;
+                    readChildren(reader, record, Section.ABSTRACT);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+                break;
+            default:
+                PubMedStreamParser.skip(reader);
+        }
+    }
+
+    /**
+     * Lee el titulo y el primer parrafo de una seccion del abstract. Las secciones sin parrafo no se
+     * agregan al articulo.
+     * @param reader lector posicionado en la etiqueta de apertura de {@literal sec}
+     * @param record articulo en construccion
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static void readSec(XMLStreamReader reader, Record record) throws XMLStreamException {
+
+        String title = null;
+        String text = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("title".equals(reader.getLocalName()) && title == null) {
+                    title = PubMedStreamParser.readText(reader);
+                } else if ("p".equals(reader.getLocalName()) && text == null) {
+                    text = PubMedStreamParser.readText(reader);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+            }
+        }
+        if (text != null) {
+            record.sections.add(new String[] {title, text});
+        }
+    }
+
+    /**
+     * Lee el apellido y los nombres de un colaborador.
+     * @param reader lector posicionado en la etiqueta de apertura de {@literal contrib}
+     * @return el apellido y los nombres del colaborador, o {@literal null} si no contiene el elemento {@literal name}
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static String[] readContrib(XMLStreamReader reader) throws XMLStreamException {
+
+        String[] contrib = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("name".equals(reader.getLocalName()) && contrib == null) {
+                    contrib = new String[2];
+                    readNameParts(reader, contrib, "surname", "given-names");
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+            }
+        }
+        return contrib;
+    }
+
+    /**
+     * Lee una fecha de publicacion y la conserva si su tipo tiene prioridad sobre la ya registrada:
+     * la primera fecha {@literal epub} o {@literal ppub} es definitiva, y las de tipo {@literal pmc*}
+     * solo reemplazan a una fecha previa.
+     * @param reader lector posicionado en la etiqueta de apertura de {@literal pub-date}
+     * @param record articulo en construccion
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static void readPubDate(XMLStreamReader reader, Record record) throws XMLStreamException {
+
+        String type = reader.getAttributeValue(null, "pub-type");
+        boolean definitive = "epub".equalsIgnoreCase(type) || "ppub".equalsIgnoreCase(type);
+        boolean replaces = record.year != null && type != null && type.startsWith("pmc");
+        if (record.dateFixed || !(definitive || replaces)) {
+            PubMedStreamParser.skip(reader);
+            return;
+        }
+        String[] date = new String[3];
+        readNameParts(reader, date, "day", "month", "year");
+        record.day = date[0];
+        record.month = date[1];
+        record.year = date[2];
+        record.dateFixed = definitive;
+    }
+
+    /**
+     * Lee el texto del primer elemento hijo con cada uno de los nombres indicados.
+     * @param reader lector posicionado en la etiqueta de apertura del elemento padre
+     * @param values arreglo en que se almacena el texto de cada elemento, en el orden de {@code names}
+     * @param names nombres de los elementos hijos que se leen
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static void readNameParts(XMLStreamReader reader, String[] values, String... names)
+            throws XMLStreamException {
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                int index = -1;
+                for (int i = 0; i < names.length && index < 0; i++) {
+                    if (names[i].equals(reader.getLocalName()) && values[i] == null) {
+                        index = i;
+                    }
+                }
+                if (index > -1) {
+                    values[index] = PubMedStreamParser.readText(reader);
+                } else {
+                    PubMedStreamParser.skip(reader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Secciones de un {@literal article} cuyos elementos hijos se procesan.
+     */
+    private enum Section {
+        ARTICLE, FRONT, META, TITLE_GROUP, JOURNAL_TITLE_GROUP, CONTRIB_GROUP, ABSTRACT
+    }
+
+    /**
+     * Recibe cada articulo leido de la respuesta de efetch.
+     */
+    interface Handler {
+
+        /**
+         * Procesa un articulo. La instancia recibida se reutiliza, por lo que no debe conservarse.
+         * @param record los datos del articulo
+         */
+        void article(Record record);
+    }
+
+    /**
+     * Datos de {@literal article-meta} utilizados para clasificar y referenciar el articulo.
+     */
+    static final class Record {
+
+        /** Identificador del articulo en PubMed */
+        String pmid;
+
+        /** Identificador del articulo en PubMed Central */
+        String pmc;
+
+        /** Titulo del articulo */
+        String title;
+
+        /** Titulo de la revista */
+        String journalTitle;
+
+        /** ISSN de la edicion electronica de la revista */
+        String epubIssn;
+
+        /** ISSN de la edicion impresa de la revista */
+        String ppubIssn;
+
+        /** Volumen de la revista */
+        String volume;
+
+        /** Numero de la revista */
+        String issue;
+
+        /** Año de publicacion */
+        String year;
+
+        /** Mes de publicacion, en forma numerica */
+        String month;
+
+        /** Dia de publicacion */
+        String day;
+
+        /** Indica si la fecha de publicacion ya no puede ser reemplazada por otra */
+        boolean dateFixed;
+
+        /** Indica si el articulo contiene el elemento {@literal article-meta} */
+        boolean hasMeta;
+
+        /** Indica si el articulo contiene el elemento {@literal abstract} */
+        boolean hasAbstract;
+
+        /** Indica si ya se leyo el elemento {@literal contrib-group} */
+        boolean hasContribGroup;
+
+        /** Indica si ya se leyo el elemento {@literal journal-title-group} */
+        boolean hasJournalTitleGroup;
+
+        /** Numero de elementos {@literal sec} en el abstract, con o sin parrafo */
+        int secCount;
+
+        /** Apellido y nombres de cada colaborador; {@literal null} si el colaborador no tiene {@literal name} */
+        final List<String[]> contribs = new ArrayList<>();
+
+        /** Titulo y primer parrafo de cada seccion del abstract que contiene parrafo */
+        final List<String[]> sections = new ArrayList<>();
+
+        /** Parrafos del abstract que no pertenecen a una seccion */
+        final List<String> paragraphs = new ArrayList<>();
+
+        /**
+         * Elimina los datos del articulo anterior.
+         */
+        void reset() {
+            this.pmid = null;
+            this.pmc = null;
+            this.title = null;
+            this.journalTitle = null;
+            this.epubIssn = null;
+            this.ppubIssn = null;
+            this.volume = null;
+            this.issue = null;
+            this.year = null;
+            this.month = null;
+            this.day = null;
+            this.dateFixed = false;
+            this.hasMeta = false;
+            this.hasAbstract = false;
+            this.hasContribGroup = false;
+            this.hasJournalTitleGroup = false;
+            this.secCount = 0;
+            this.contribs.clear();
+            this.sections.clear();
+            this.paragraphs.clear();
+        }
+    }
+}
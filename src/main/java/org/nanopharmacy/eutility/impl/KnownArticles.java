@@ -0,0 +1,22 @@
+package org.nanopharmacy.eutility.impl;
+
+/**
+ * Indica que articulos de PubMed y PubMed Central ya se conocen localmente, de modo que no es
+ * necesario descargar ni procesar su registro completo. Se utiliza con
+ * {@link ESearchImpl#getPublicationsInfo(String, String, int, int, int, int, KnownArticles)} para
+ * solicitar a efetch unicamente los articulos nuevos.
+ * <p>
+ * Las implementaciones deben poder consultarse desde varios hilos.
+ * </p>
+ */
+public interface KnownArticles {
+
+    /**
+     * Indica si un articulo ya se conoce localmente.
+     * @param source la base de datos a la que pertenece el identificador
+     * @param id el identificador del articulo: su PMID en PubMed o, en PubMed Central, su
+     *     identificador numerico sin el prefijo {@literal PMC}
+     * @return {@literal true} si el articulo ya se conoce y no debe descargarse
+     */
+    boolean isKnown(Article.Source source, int id);
+}
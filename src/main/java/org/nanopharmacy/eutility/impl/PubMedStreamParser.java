@@ -0,0 +1,337 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.nanopharmacy.utils.Utils;
+
+/**
+ * Interpreta de forma secuencial (StAX) la respuesta de efetch sobre la base de datos PubMed,
+ * entregando un articulo a la vez sin construir el documento completo en memoria.
+ * <p>
+ * Solo se conservan los datos utilizados para clasificar y referenciar los articulos: el PMID, el
+ * titulo, los autores, los datos de la revista y las secciones del abstract. El resto de cada
+ * {@literal PubmedArticle} (por ejemplo {@literal MeshHeadingList} o {@literal PubmedData}) se
+ * descarta conforme se lee, y los articulos sin {@literal Abstract} no se entregan.
+ * </p>
+ */
+final class PubMedStreamParser {
+
+    private PubMedStreamParser() {
+    }
+
+    /**
+     * Lee una respuesta de efetch y entrega a {@code handler} cada articulo que contiene abstract.
+     * La instancia de {@link Record} entregada se reutiliza para el siguiente articulo.
+     * @param in flujo con la respuesta de efetch, con estructura {@literal PubmedArticleSet}
+     * @param handler recibe cada articulo que contiene abstract
+     * @return el numero de articulos descartados por no contener abstract
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    static int parse(InputStream in, Handler handler) throws XMLStreamException {
+
+        int withoutAbstract = 0;
+        Record record = new Record();
+        XMLStreamReader reader = PubMedStreamParser.createReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if ("PubmedArticle".equals(reader.getLocalName())) {
+                        record.reset();
+                        readChildren(reader, record, Section.ARTICLE);
+                        if (record.hasAbstract) {
+                            handler.article(record);
+                        } else {
+                            withoutAbstract++;
+                        }
+                    } else if (!"PubmedArticleSet".equals(reader.getLocalName())) {
+                        skip(reader);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return withoutAbstract;
+    }
+
+    /**
+     * Crea un lector StAX sobre una respuesta de efetch.
+     * @param in flujo con la respuesta de efetch
+     * @return el lector posicionado al inicio del documento
+     * @throws XMLStreamException si no es posible leer el inicio del documento
+     */
+    static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+        return Utils.XML.getStreamReader(in);
+    }
+
+    /**
+     * Procesa los elementos hijos del elemento actual, hasta encontrar su etiqueta de cierre.
+     * @param reader lector posicionado en la etiqueta de apertura del elemento
+     * @param record articulo en construccion
+     * @param section seccion del articulo que corresponde al elemento actual
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static void readChildren(XMLStreamReader reader, Record record, Section section)
+            throws XMLStreamException {
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = reader.getLocalName();
+            switch (section) {
+                case ARTICLE:
+                    if ("MedlineCitation".equals(name)) {
+                        readChildren(reader, record, Section.CITATION);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case CITATION:
+                    if ("PMID".equals(name)) {
+                        record.pmid = readText(reader);
+                    } else if ("Article".equals(name)) {
+                        readChildren(reader, record, Section.CITATION_ARTICLE);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case CITATION_ARTICLE:
+                    if ("ArticleTitle".equals(name)) {
+                        record.title = readText(reader);
+                    } else if ("Journal".equals(name)) {
+                        readChildren(reader, record, Section.JOURNAL);
+                    } else if ("Abstract".equals(name)) {
+                        record.hasAbstract = true;
+                        readChildren(reader, record, Section.ABSTRACT);
+                    } else if ("AuthorList".equals(name)) {
+                        readChildren(reader, record, Section.AUTHOR_LIST);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case JOURNAL:
+                    if ("Title".equals(name)) {
+                        record.journalTitle = readText(reader);
+                    } else if ("ISSN".equals(name)) {
+                        record.issn = readText(reader);
+                    } else if ("JournalIssue".equals(name)) {
+                        readChildren(reader, record, Section.JOURNAL_ISSUE);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case JOURNAL_ISSUE:
+                    if ("Volume".equals(name)) {
+                        record.volume = readText(reader);
+                    } else if ("Issue".equals(name)) {
+                        record.issue = readText(reader);
+                    } else if ("PubDate".equals(name)) {
+                        readChildren(reader, record, Section.PUB_DATE);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case PUB_DATE:
+                    if ("Year".equals(name)) {
+                        record.year = readText(reader);
+                    } else if ("Month".equals(name)) {
+                        record.month = readText(reader);
+                    } else if ("Day".equals(name)) {
+                        record.day = readText(reader);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case ABSTRACT:
+                    if ("AbstractText".equals(name)) {
+                        String label = reader.getAttributeValue(null, "Label");
+                        record.abstracts.add(new String[] {label, readText(reader)});
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case AUTHOR_LIST:
+                    if ("Author".equals(name)) {
+                        String[] author = new String[2];
+                        record.authors.add(author);
+                        readAuthor(reader, author);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                default:
+                    skip(reader);
+            }
+        }
+    }
+
+    /**
+     * Lee el apellido y las iniciales de un autor.
+     * @param reader lector posicionado en la etiqueta de apertura de {@literal Author}
+     * @param author arreglo en que se almacenan el apellido y las iniciales
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    private static void readAuthor(XMLStreamReader reader, String[] author) throws XMLStreamException {
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("LastName".equals(reader.getLocalName())) {
+                    author[0] = readText(reader);
+                } else if ("Initials".equals(reader.getLocalName())) {
+                    author[1] = readText(reader);
+                } else {
+                    skip(reader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene el texto contenido en el elemento actual, incluyendo el de sus descendientes.
+     * @param reader lector posicionado en la etiqueta de apertura del elemento
+     * @return el texto del elemento
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    static String readText(XMLStreamReader reader) throws XMLStreamException {
+
+        StringBuilder text = null;
+        String single = null;
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    if (single == null) {
+                        single = reader.getText();
+                    } else {
+                        if (text == null) {
+                            text = new StringBuilder(single.length() * 2);
+                            text.append(single);
+                        }
+                        text.append(reader.getText());
+                    }
+                    break;
+                default:
+            }
+        }
+        return text != null ? text.toString() : (single != null ? single : "");
+    }
+
+    /**
+     * Descarta el elemento actual y todos sus descendientes.
+     * @param reader lector posicionado en la etiqueta de apertura del elemento
+     * @throws XMLStreamException si la respuesta no es un documento XML valido
+     */
+    static void skip(XMLStreamReader reader) throws XMLStreamException {
+
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Secciones de un {@literal PubmedArticle} cuyos elementos hijos se procesan.
+     */
+    private enum Section {
+        ARTICLE, CITATION, CITATION_ARTICLE, JOURNAL, JOURNAL_ISSUE, PUB_DATE, ABSTRACT, AUTHOR_LIST
+    }
+
+    /**
+     * Recibe cada articulo leido de la respuesta de efetch.
+     */
+    interface Handler {
+
+        /**
+         * Procesa un articulo. La instancia recibida se reutiliza, por lo que no debe conservarse.
+         * @param record los datos del articulo
+         */
+        void article(Record record);
+    }
+
+    /**
+     * Datos de un {@literal PubmedArticle} utilizados para clasificar y referenciar el articulo.
+     */
+    static final class Record {
+
+        /** Identificador del articulo en PubMed */
+        String pmid;
+
+        /** Titulo del articulo */
+        String title;
+
+        /** Titulo de la revista */
+        String journalTitle;
+
+        /** ISSN de la revista */
+        String issn;
+
+        /** Volumen de la revista */
+        String volume;
+
+        /** Numero de la revista */
+        String issue;
+
+        /** Año de publicacion */
+        String year;
+
+        /** Mes de publicacion, tal como aparece en la respuesta */
+        String month;
+
+        /** Dia de publicacion */
+        String day;
+
+        /** Indica si el articulo contiene el elemento {@literal Abstract} */
+        boolean hasAbstract;
+
+        /** Apellido e iniciales de cada autor */
+        final List<String[]> authors = new ArrayList<>();
+
+        /** Etiqueta ({@literal null} si no tiene) y texto de cada seccion del abstract */
+        final List<String[]> abstracts = new ArrayList<>();
+
+        /**
+         * Elimina los datos del articulo anterior.
+         */
+        void reset() {
+            this.pmid = null;
+            this.title = null;
+            this.journalTitle = null;
+            this.issn = null;
+            this.volume = null;
+            this.issue = null;
+            this.year = null;
+            this.month = null;
+            this.day = null;
+            this.hasAbstract = false;
+            this.authors.clear();
+            this.abstracts.clear();
+        }
+    }
+}
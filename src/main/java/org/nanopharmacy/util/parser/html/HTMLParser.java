@@ -23,6 +23,8 @@
 package org.nanopharmacy.util.parser.html;
 
 import java.io.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.nanopharmacy.utils.Utils;
 //import org.semanticwb.SWBUtils;
 
@@ -68,6 +70,9 @@ public class HTMLParser implements HTMLParserConstants {
     /** The pipe out. */
     PipedWriter pipeOut;
 
+    /** Destino del texto cuando el documento se analiza en el hilo que lo solicita. */
+    Appendable target = null;
+
     /**
      * Instantiates a new hTML parser.
      * 
@@ -88,7 +93,7 @@ public class HTMLParser implements HTMLParserConstants {
      */
     public String getTitle() throws IOException, InterruptedException
     {
-        if (pipeIn == null)
+        if (pipeIn == null && target == null)
         {
             getReader();                                // spawn parsing thread
         }
@@ -115,7 +120,7 @@ public class HTMLParser implements HTMLParserConstants {
      */
     public String getSummary() throws IOException, InterruptedException
     {
-        if (pipeIn == null)
+        if (pipeIn == null && target == null)
         {
             getReader();                                // spawn parsing thread
         }
@@ -160,6 +165,44 @@ public class HTMLParser implements HTMLParserConstants {
         return ret;
     }
 
+    /**
+     * Analiza el documento completo en el hilo actual y agrega su texto al destino indicado, sin
+     * crear un hilo de an&aacute;lisis ni un {@code PipedReader}. Produce el mismo texto que
+     * {@link #getText()}. Cada instancia solo puede analizarse una vez, ya sea con este m&eacute;todo
+     * o con {@link #getReader()}. Si el documento no puede analizarse por completo, se registra una
+     * advertencia y el destino conserva el texto extra&iacute;do hasta ese punto.
+     * 
+     * @param out el destino del texto extra&iacute;do
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void getText(Appendable out) throws IOException
+    {
+        if (pipeIn != null || target != null)
+        {
+            throw new IllegalStateException("El documento ya fue analizado");
+        }
+        target = out;
+        try
+        {
+            HTMLDocument();
+        } catch (ParseException e)
+        {
+            Logger.getLogger(HTMLParser.class.getName()).log(Level.WARNING,
+                    "Analisis interrumpido, el texto queda incompleto", e);
+        } catch (TokenMgrError e)
+        {
+            Logger.getLogger(HTMLParser.class.getName()).log(Level.WARNING,
+                    "Analisis interrumpido, el texto queda incompleto", e);
+        } finally
+        {
+            if (summary.length() > SUMMARY_LENGTH)
+            {
+                summary.setLength(SUMMARY_LENGTH);
+            }
+            titleComplete = true;
+        }
+    }
+
     /**
      * Gets the reader.
      * 
@@ -168,6 +211,10 @@ public class HTMLParser implements HTMLParserConstants {
      */
     public Reader getReader() throws IOException
     {
+        if (target != null)
+        {
+            throw new IllegalStateException("El documento ya fue analizado");
+        }
         if (pipeIn == null)
         {
             pipeIn = new PipedReader();
@@ -190,7 +237,7 @@ public class HTMLParser implements HTMLParserConstants {
         if (summary.length() < SUMMARY_LENGTH)
         {
             summary.append(text);
-            if (summary.length() >= SUMMARY_LENGTH)
+            if (summary.length() >= SUMMARY_LENGTH && target == null)
             {
                 synchronized (this)
                 {
@@ -218,7 +265,10 @@ public class HTMLParser implements HTMLParserConstants {
         } else
         {
             addToSummary(text);
-            if (!titleComplete && !title.equals(""))
+            if (!titleComplete && target != null)
+            {
+                titleComplete = true;
+            } else if (!titleComplete && !title.equals(""))
             {  // finished title
                 synchronized (this)
                 {
@@ -229,7 +279,13 @@ public class HTMLParser implements HTMLParserConstants {
         }
 
         length += text.length();
-        pipeOut.write(text);
+        if (target != null)
+        {
+            target.append(text);
+        } else
+        {
+            pipeOut.write(text);
+        }
 
         afterSpace = false;
     }
@@ -257,7 +313,13 @@ public class HTMLParser implements HTMLParserConstants {
 
             String space = afterTag ? eol : " ";
             length += space.length();
-            pipeOut.write(space);
+            if (target != null)
+            {
+                target.append(space);
+            } else
+            {
+                pipeOut.write(space);
+            }
             afterSpace = true;
         }
     }
@@ -0,0 +1,545 @@
+package org.nanopharmacy.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.semanticwb.datamanager.DataMgr;
+import org.semanticwb.datamanager.DataObject;
+import org.semanticwb.datamanager.SWBDataSource;
+
+/**
+ * Indice en memoria del identificador ({@literal _id}) de los registros de {@literal Article}, por su
+ * {@literal pmid} y por su {@literal pmcid}. Las llaves se almacenan en arreglos de {@code int} con
+ * direccionamiento abierto, sin objetos por llave, de modo que comprobar si un articulo ya existe no
+ * requiere consultar la BD.
+ * <p>
+ * El indice se conserva en un archivo: una cabecera seguida de un registro por articulo con su
+ * {@literal pmid}, su {@literal pmcid} y su {@literal _id}. Los articulos que se agregan con
+ * {@link #put(int, int, String)} se escriben al final del archivo, por lo que no es necesario
+ * reescribirlo. Como los articulos no se eliminan de la BD, una entrada del indice siempre es
+ * valida; la ausencia de un identificador, en cambio, debe confirmarse en la BD si el indice pudo
+ * no estar completo.
+ * </p>
+ * <p>
+ * El archivo se especifica con la propiedad del sistema {@literal nanopharmacy.articleIndex.file};
+ * por omision es {@literal WEB-INF/articleIndex.bin} dentro de la aplicacion. Un archivo que no
+ * puede leerse se aparta con la extension {@literal .bad} y el indice se reconstruye desde la BD.
+ * </p>
+ * <p>
+ * Esta clase es segura para su uso concurrente.
+ * </p>
+ */
+public final class ArticleIndex {
+
+    /** Identificador del formato del archivo del indice */
+    private static final int MAGIC = 0x4E504149;
+
+    /** Version del formato del archivo del indice */
+    private static final int VERSION = 1;
+
+    /** Numero de registros de {@literal Article} por consulta al reconstruir el indice */
+    private static final int PAGE_SIZE = 5000;
+
+    /** {@literal _id} de los articulos por {@literal pmid} */
+    private final IntTable byPmid = new IntTable();
+
+    /** {@literal _id} de los articulos por {@literal pmcid} */
+    private final IntTable byPmc = new IntTable();
+
+    /** Protege las tablas y el archivo del indice */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Archivo en que se conserva el indice; {@literal null} si solo reside en memoria */
+    private final File file;
+
+    /** Flujo abierto para agregar registros al archivo; {@literal null} hasta la primera escritura */
+    private DataOutputStream journal;
+
+    /**
+     * Crea un indice vacio.
+     * @param file archivo en que se conserva el indice, o {@literal null} si solo reside en memoria
+     */
+    public ArticleIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Obtiene el indice de la aplicacion. La primera invocacion crea el indice e inicia, en un hilo
+     * aparte, su carga desde el archivo del indice o, si el archivo no existe o no puede leerse, su
+     * reconstruccion a partir del {@code SWBDataSource} {@literal Article}. Mientras tanto el indice
+     * puede no contener articulos que ya estan en la BD, por lo que la ausencia de un identificador
+     * debe confirmarse en la BD.
+     * @return el indice de la aplicacion
+     */
+    public static ArticleIndex getDefault() {
+        return DefaultIndex.INDEX;
+    }
+
+    /**
+     * Contiene el indice por omision de la aplicacion, que se crea y comienza a cargarse al
+     * inicializar esta clase, con la primera invocacion de {@link #getDefault()}.
+     */
+    private static final class DefaultIndex {
+
+        /** Indice de la aplicacion */
+        private static final ArticleIndex INDEX = new ArticleIndex(ArticleIndex.defaultFile());
+
+        static {
+            Thread thread = new Thread(() -> {
+                try {
+                    if (!INDEX.loadOrDiscard()) {
+                        INDEX.rebuild(NanoSources.get(NanoSources.Source.ARTICLE));
+                    }
+                } catch (IOException ioe) {
+                    Logger.getLogger(ArticleIndex.class.getName()).log(Level.SEVERE, null, ioe);
+                }
+            }, "article-index-loader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Determina el archivo del indice de la aplicacion.
+     * @return el archivo configurado, o {@literal null} si no hay uno configurado ni se conoce la
+     *     ruta de la aplicacion
+     */
+    private static File defaultFile() {
+
+        String path = System.getProperty("nanopharmacy.articleIndex.file");
+        if (path != null) {
+            return new File(path);
+        }
+        String appPath = DataMgr.getApplicationPath();
+        return appPath != null ? new File(appPath, "WEB-INF/articleIndex.bin") : null;
+    }
+
+    /**
+     * Busca un articulo, primero por su {@literal pmcid} y despues por su {@literal pmid}.
+     * @param pmid identificador del articulo en PubMed, 0 si no se conoce
+     * @param pmc identificador del articulo en PubMed Central, 0 si no se conoce
+     * @return el {@literal _id} del articulo, o {@literal null} si no esta en el indice
+     */
+    public String find(int pmid, int pmc) {
+
+        this.lock.readLock().lock();
+        try {
+            String id = pmc != 0 ? this.byPmc.get(pmc) : null;
+            if (id == null && pmid != 0) {
+                id = this.byPmid.get(pmid);
+            }
+            return id;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega un articulo al indice y al archivo del indice. Si alguno de sus identificadores ya
+     * estaba registrado, se conserva el {@literal _id} existente para ese identificador.
+     * @param pmid identificador del articulo en PubMed, 0 si no se conoce
+     * @param pmc identificador del articulo en PubMed Central, 0 si no se conoce
+     * @param id {@literal _id} del registro de {@literal Article}
+     */
+    public void put(int pmid, int pmc, String id) {
+
+        if (id == null || (pmid == 0 && pmc == 0)) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            boolean added = this.add(pmid, pmc, id);
+            if (added && this.file != null) {
+                try {
+                    if (this.journal == null) {
+                        this.journal = this.openJournal();
+                    }
+                    ArticleIndex.writeEntry(this.journal, pmid, pmc, id);
+                } catch (IOException ioe) {
+                    Logger.getLogger(ArticleIndex.class.getName()).log(Level.SEVERE, null, ioe);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega un articulo a las tablas en memoria, sin escribirlo en el archivo.
+     * @param pmid identificador del articulo en PubMed, 0 si no se conoce
+     * @param pmc identificador del articulo en PubMed Central, 0 si no se conoce
+     * @param id {@literal _id} del registro de {@literal Article}
+     * @return {@literal true} si alguno de los identificadores no estaba registrado
+     */
+    private boolean add(int pmid, int pmc, String id) {
+
+        boolean added = false;
+        if (pmid != 0) {
+            added |= this.byPmid.putIfAbsent(pmid, id);
+        }
+        if (pmc != 0) {
+            added |= this.byPmc.putIfAbsent(pmc, id);
+        }
+        return added;
+    }
+
+    /**
+     * Escribe en el archivo los registros pendientes.
+     */
+    public void flush() {
+
+        this.lock.writeLock().lock();
+        try {
+            if (this.journal != null) {
+                this.journal.flush();
+            }
+        } catch (IOException ioe) {
+            Logger.getLogger(ArticleIndex.class.getName()).log(Level.SEVERE, null, ioe);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Carga el indice desde su archivo. Un registro incompleto al final del archivo, por ejemplo
+     * tras una interrupcion durante la escritura, se descarta y se elimina del archivo, para que los
+     * registros que se agreguen despues comiencen donde termina el ultimo registro completo.
+     * @return {@literal true} si el archivo existe y se cargo, {@literal false} en otro caso
+     * @throws IOException si el archivo no puede leerse o no tiene el formato esperado
+     */
+    public boolean load() throws IOException {
+
+        if (this.file == null || !this.file.isFile()) {
+            return false;
+        }
+        this.lock.writeLock().lock();
+        try {
+            // los registros agregados antes de la carga deben estar completos en el archivo
+            this.closeJournal();
+            long complete;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file), 1 << 16))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Formato de indice de articulos no reconocido: " + this.file);
+                }
+                complete = 8;
+                while (true) {
+                    int pmid, pmc;
+                    String id;
+                    try {
+                        pmid = in.readInt();
+                        pmc = in.readInt();
+                        id = in.readUTF();
+                    } catch (EOFException eof) {
+                        break;
+                    }
+                    this.add(pmid, pmc, id);
+                    complete += 8 + ArticleIndex.utfLength(id);
+                }
+            }
+            if (complete < this.file.length()) {
+                try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+                    raf.setLength(complete);
+                }
+            }
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Carga el indice desde su archivo como {@link #load()}, pero si el archivo no puede leerse lo
+     * aparta con la extension {@literal .bad} y vacia las tablas, para que el indice pueda
+     * reconstruirse y los registros que se agreguen despues no se escriban tras un contenido
+     * ilegible.
+     * @return {@literal true} si el archivo existe y se cargo, {@literal false} si no existe o se
+     *     aparto porque no pudo leerse
+     */
+    boolean loadOrDiscard() {
+
+        try {
+            return this.load();
+        } catch (IOException ioe) {
+            Logger.getLogger(ArticleIndex.class.getName()).log(Level.SEVERE, null, ioe);
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.closeJournal();
+            this.byPmid.clear();
+            this.byPmc.clear();
+            File bad = new File(this.file.getPath() + ".bad");
+            if (bad.exists()) {
+                bad.delete();
+            }
+            if (this.file.exists() && !this.file.renameTo(bad) && !this.file.delete()) {
+                Logger.getLogger(ArticleIndex.class.getName()).log(Level.SEVERE,
+                        "No se pudo apartar el indice de articulos ilegible: {0}", this.file);
+            }
+            return false;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula el numero de bytes que ocupa una cadena escrita con {@link DataOutputStream#writeUTF(String)}.
+     * @param value la cadena
+     * @return el numero de bytes, incluyendo los 2 bytes de su longitud
+     */
+    private static int utfLength(String value) {
+
+        int length = 2;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+        }
+        return length;
+    }
+
+    /**
+     * Reconstruye el indice con todos los registros de {@literal Article} y reescribe su archivo.
+     * Las tablas se bloquean solo mientras se agrega cada pagina de registros, por lo que el indice
+     * puede consultarse y recibir articulos durante la reconstruccion; como los articulos no se
+     * eliminan de la BD, las entradas existentes se conservan.
+     * @param ds {@code SWBDataSource} que define los articulos en la BD de la aplicacion
+     * @throws IOException si ocurre un problema al consultar la BD o al escribir el archivo
+     */
+    public void rebuild(SWBDataSource ds) throws IOException {
+
+        for (int start = 0; ; start += PAGE_SIZE) {
+            DataObject query = new DataObject();
+            query.put("startRow", start);
+            query.put("endRow", start + PAGE_SIZE);
+            query.put("data", new DataObject());
+            DataObject page = ds.fetch(query);
+            int rows = 0;
+            Iterator<DataObject> it = Utils.ENG.getDataList(page);
+            this.lock.writeLock().lock();
+            try {
+                while (it.hasNext()) {
+                    DataObject article = it.next();
+                    this.add(article.getInt("pmid"), article.getInt("pmcid"), article.getString("_id"));
+                    rows++;
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            if (rows < PAGE_SIZE) {
+                break;
+            }
+        }
+        if (this.file != null) {
+            this.lock.writeLock().lock();
+            try {
+                this.closeJournal();
+                this.writeSnapshot();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Reescribe el archivo del indice con el contenido de las tablas en memoria. Se escribe primero
+     * en un archivo temporal que despues sustituye al anterior.
+     * @throws IOException si ocurre un problema al escribir el archivo
+     */
+    private void writeSnapshot() throws IOException {
+
+        File tmp = new File(this.file.getPath() + ".tmp");
+        File dir = tmp.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio " + dir);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            // cada identificador se escribe en un registro propio, con 0 en el otro identificador
+            for (int i = 0; i < this.byPmc.keys.length; i++) {
+                if (this.byPmc.keys[i] != 0) {
+                    ArticleIndex.writeEntry(out, 0, this.byPmc.keys[i], this.byPmc.values[i]);
+                }
+            }
+            for (int i = 0; i < this.byPmid.keys.length; i++) {
+                if (this.byPmid.keys[i] != 0) {
+                    ArticleIndex.writeEntry(out, this.byPmid.keys[i], 0, this.byPmid.values[i]);
+                }
+            }
+        }
+        if (this.file.exists() && !this.file.delete()) {
+            throw new IOException("No se pudo reemplazar " + this.file);
+        }
+        if (!tmp.renameTo(this.file)) {
+            throw new IOException("No se pudo reemplazar " + this.file);
+        }
+    }
+
+    /**
+     * Abre el archivo del indice para agregar registros, creandolo con su cabecera si no existe.
+     * @return el flujo de escritura al final del archivo
+     * @throws IOException si el archivo no puede abrirse
+     */
+    private DataOutputStream openJournal() throws IOException {
+
+        boolean exists = this.file.isFile() && this.file.length() > 0;
+        if (!exists) {
+            File dir = this.file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                dir.mkdirs();
+            }
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, exists)));
+        if (!exists) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+        return out;
+    }
+
+    /**
+     * Cierra el flujo de escritura del archivo del indice, si esta abierto.
+     */
+    private void closeJournal() {
+
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException ioe) {
+                Logger.getLogger(ArticleIndex.class.getName()).log(Level.SEVERE, null, ioe);
+            }
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Escribe el registro de un articulo.
+     * @param out flujo en que se escribe el registro
+     * @param pmid identificador del articulo en PubMed, 0 si no se conoce
+     * @param pmc identificador del articulo en PubMed Central, 0 si no se conoce
+     * @param id {@literal _id} del registro de {@literal Article}
+     * @throws IOException si ocurre un problema al escribir
+     */
+    private static void writeEntry(DataOutputStream out, int pmid, int pmc, String id) throws IOException {
+        out.writeInt(pmid);
+        out.writeInt(pmc);
+        out.writeUTF(id);
+    }
+
+    /** @return el numero de identificadores ({@literal pmid} y {@literal pmcid}) en el indice */
+    public int size() {
+
+        this.lock.readLock().lock();
+        try {
+            return this.byPmid.size + this.byPmc.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tabla de dispersion de llaves {@code int} positivas a cadenas, con direccionamiento abierto y
+     * sondeo lineal. La llave 0 marca las posiciones vacias. No es segura para su uso concurrente.
+     */
+    private static final class IntTable {
+
+        /** Llaves de la tabla; 0 indica posicion vacia */
+        private int[] keys = new int[1024];
+
+        /** Valor asociado a la llave de la misma posicion */
+        private String[] values = new String[1024];
+
+        /** Numero de llaves en la tabla */
+        private int size;
+
+        /**
+         * Calcula la posicion inicial de una llave en la tabla.
+         * @param key la llave
+         * @return la posicion inicial de sondeo
+         */
+        private int slot(int key) {
+            int h = key * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (this.keys.length - 1);
+        }
+
+        /**
+         * Obtiene el valor asociado a una llave.
+         * @param key la llave, distinta de 0
+         * @return el valor asociado, o {@literal null} si la llave no esta en la tabla
+         */
+        String get(int key) {
+
+            int mask = this.keys.length - 1;
+            for (int pos = this.slot(key); this.keys[pos] != 0; pos = (pos + 1) & mask) {
+                if (this.keys[pos] == key) {
+                    return this.values[pos];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Asocia un valor a una llave, si la llave no esta en la tabla.
+         * @param key la llave, distinta de 0
+         * @param value el valor
+         * @return {@literal true} si la llave no estaba en la tabla
+         */
+        boolean putIfAbsent(int key, String value) {
+
+            int mask = this.keys.length - 1;
+            int pos = this.slot(key);
+            for (; this.keys[pos] != 0; pos = (pos + 1) & mask) {
+                if (this.keys[pos] == key) {
+                    return false;
+                }
+            }
+            this.keys[pos] = key;
+            this.values[pos] = value;
+            if (++this.size > this.keys.length >> 1) {
+                this.rehash();
+            }
+            return true;
+        }
+
+        /**
+         * Duplica la capacidad de la tabla y reubica las llaves.
+         */
+        private void rehash() {
+
+            int[] oldKeys = this.keys;
+            String[] oldValues = this.values;
+            this.keys = new int[oldKeys.length << 1];
+            this.values = new String[oldKeys.length << 1];
+            int mask = this.keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int pos = this.slot(oldKeys[i]);
+                    while (this.keys[pos] != 0) {
+                        pos = (pos + 1) & mask;
+                    }
+                    this.keys[pos] = oldKeys[i];
+                    this.values[pos] = oldValues[i];
+                }
+            }
+        }
+
+        /**
+         * Elimina todas las llaves y restablece la capacidad inicial.
+         */
+        void clear() {
+            this.keys = new int[1024];
+            this.values = new String[1024];
+            this.size = 0;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package org.nanopharmacy.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Busca simultaneamente un conjunto de palabras clave en un texto, recorriendolo una sola vez,
+ * mediante un automata de Aho-Corasick. La comparacion no distingue mayusculas de minusculas y
+ * se realiza caracter por caracter, sin generar una copia del texto en minusculas.
+ * <p>
+ * Opcionalmente, solo se aceptan las apariciones delimitadas como palabras completas: precedidas
+ * por el inicio del texto o por un caracter que no es de palabra, y seguidas por el fin del texto o
+ * por un caracter que no es de palabra, sin abarcar el texto completo. Es la misma condicion que la
+ * expresion regular {@literal ^frase\W|\Wfrase\W|\Wfrase$}.
+ * </p>
+ * <p>
+ * Las instancias son inmutables y pueden usarse concurrentemente.
+ * </p>
+ */
+public final class KeywordScanner {
+
+    /** Numero maximo de palabras clave que admite {@link #scanMask(CharSequence)} */
+    public static final int MAX_KEYWORDS = 64;
+
+    /** Indice, en el alfabeto del automata, de los caracteres que no aparecen en ninguna palabra clave */
+    private static final int OTHER = 0;
+
+    /** Numero de palabras clave */
+    private final int size;
+
+    /** Indica si solo se aceptan apariciones delimitadas como palabras completas */
+    private final boolean wholeWords;
+
+    /** Caracteres distintos de las palabras clave, ordenados, ya convertidos a minusculas */
+    private final char[] alphabet;
+
+    /** Indice en {@link #alphabet}, mas uno, de cada caracter ASCII; 0 si no aparece en las palabras clave */
+    private final int[] asciiIndex = new int[128];
+
+    /** Tamaño del alfabeto del automata, incluyendo {@link #OTHER} */
+    private final int width;
+
+    /** Funcion de transicion: el estado siguiente es {@code delta[estado * width + indice del caracter]} */
+    private final int[] delta;
+
+    /** Palabras clave que terminan exactamente en cada estado; {@literal null} si ninguna */
+    private final int[][] terminals;
+
+    /** Estado terminal mas cercano en la cadena de enlaces de falla de cada estado; 0 si no hay */
+    private final int[] dictLink;
+
+    /** Longitud de la cadena reconocida en cada estado */
+    private final int[] depth;
+
+    /** Palabras clave reconocidas en cada estado, como mascara de bits; solo si hay hasta 64 palabras */
+    private final long[] output;
+
+    /** Indices de las palabras clave vacias */
+    private final int[] empties;
+
+    /** Mascara con todas las palabras clave, si hay hasta 64 */
+    private final long allMask;
+
+    /**
+     * Construye el automata para buscar las palabras clave como subcadenas. El bit {@code i} de las
+     * mascaras devueltas por {@link #scanMask(CharSequence)} corresponde a {@code keywords[i]}.
+     * @param keywords palabras clave a buscar
+     */
+    public KeywordScanner(String... keywords) {
+        this(Arrays.asList(keywords), false);
+    }
+
+    /**
+     * Construye el automata para las palabras clave especificadas. El indice {@code i} de los
+     * resultados de busqueda corresponde al elemento {@code i} de {@code keywords}.
+     * @param keywords palabras clave a buscar; una palabra {@literal null} se trata como vacia
+     * @param wholeWords si es {@literal true}, solo se aceptan las apariciones delimitadas como
+     *     palabras completas
+     */
+    public KeywordScanner(List<String> keywords, boolean wholeWords) {
+
+        this.size = keywords.size();
+        this.wholeWords = wholeWords;
+        // alfabeto del automata
+        StringBuilder chars = new StringBuilder(64);
+        List<Integer> emptyList = new ArrayList<>();
+        for (int k = 0; k < this.size; k++) {
+            String keyword = keywords.get(k);
+            if (keyword == null || keyword.isEmpty()) {
+                emptyList.add(k);
+                continue;
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                if (chars.indexOf(String.valueOf(c)) < 0) {
+                    chars.append(c);
+                }
+            }
+        }
+        this.empties = new int[emptyList.size()];
+        for (int i = 0; i < this.empties.length; i++) {
+            this.empties[i] = emptyList.get(i);
+        }
+        this.alphabet = chars.toString().toCharArray();
+        Arrays.sort(this.alphabet);
+        for (int i = 0; i < this.alphabet.length; i++) {
+            if (this.alphabet[i] < 128) {
+                this.asciiIndex[this.alphabet[i]] = i + 1;
+            }
+        }
+        this.width = this.alphabet.length + 1;
+        this.allMask = this.size >= MAX_KEYWORDS ? -1L : (1L << this.size) - 1;
+
+        // arbol de prefijos
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> ends = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        trie.add(new int[this.width]);
+        ends.add(null);
+        lengths.add(0);
+        for (int k = 0; k < this.size; k++) {
+            String keyword = keywords.get(k);
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int symbol = this.indexOf(Character.toLowerCase(keyword.charAt(i)));
+                int next = trie.get(state)[symbol];
+                if (next == 0) {
+                    next = trie.size();
+                    trie.add(new int[this.width]);
+                    ends.add(null);
+                    lengths.add(i + 1);
+                    trie.get(state)[symbol] = next;
+                }
+                state = next;
+            }
+            int[] previous = ends.get(state);
+            int[] current = previous == null ? new int[1] : Arrays.copyOf(previous, previous.length + 1);
+            current[current.length - 1] = k;
+            ends.set(state, current);
+        }
+
+        // enlaces de falla, recorriendo el arbol por niveles, y funcion de transicion completa
+        int states = trie.size();
+        this.delta = new int[states * this.width];
+        this.terminals = ends.toArray(new int[states][]);
+        this.dictLink = new int[states];
+        this.depth = new int[states];
+        this.output = this.size <= MAX_KEYWORDS ? new long[states] : null;
+        int[] fail = new int[states];
+        for (int state = 0; state < states; state++) {
+            this.depth[state] = lengths.get(state);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 1; symbol < this.width; symbol++) {
+            int next = trie.get(0)[symbol];
+            this.delta[symbol] = next;
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int link = fail[state];
+            this.dictLink[state] = this.terminals[link] != null ? link : this.dictLink[link];
+            if (this.output != null) {
+                this.output[state] = this.output[link];
+                if (this.terminals[state] != null) {
+                    for (int k : this.terminals[state]) {
+                        this.output[state] |= 1L << k;
+                    }
+                }
+            }
+            for (int symbol = 1; symbol < this.width; symbol++) {
+                int next = trie.get(state)[symbol];
+                if (next != 0) {
+                    fail[next] = this.delta[link * this.width + symbol];
+                    this.delta[state * this.width + symbol] = next;
+                    queue.add(next);
+                } else {
+                    this.delta[state * this.width + symbol] = this.delta[link * this.width + symbol];
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene el indice en el alfabeto del automata de un caracter ya convertido a minusculas.
+     * @param c el caracter
+     * @return el indice del caracter, o {@link #OTHER} si no aparece en las palabras clave
+     */
+    private int indexOf(char c) {
+
+        if (c < 128) {
+            return this.asciiIndex[c];
+        }
+        int pos = Arrays.binarySearch(this.alphabet, c);
+        return pos < 0 ? OTHER : pos + 1;
+    }
+
+    /**
+     * Obtiene el indice en el alfabeto del automata de un caracter del texto.
+     * @param c el caracter, en mayusculas o minusculas
+     * @return el indice del caracter, o {@link #OTHER} si no aparece en las palabras clave
+     */
+    private int symbolOf(char c) {
+
+        if (c < 128) {
+            return this.asciiIndex[c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c];
+        }
+        return this.indexOf(Character.toLowerCase(c));
+    }
+
+    /**
+     * Recorre el texto una vez e indica que palabras clave aparecen en el. Si el automata no
+     * requiere palabras completas, el recorrido termina en cuanto se han encontrado todas.
+     * @param text el texto en que se buscan las palabras clave, puede ser {@literal null}
+     * @return una mascara de bits en que el bit {@code i} esta encendido si la palabra clave
+     *     {@code i} aparece en el texto
+     * @throws IllegalStateException si el automata tiene mas de {@link #MAX_KEYWORDS} palabras clave
+     */
+    public long scanMask(CharSequence text) {
+
+        if (this.output == null) {
+            throw new IllegalStateException("scanMask admite como maximo " + MAX_KEYWORDS + " palabras clave");
+        }
+        if (this.wholeWords) {
+            BitSet found = this.scan(text);
+            return found.isEmpty() ? 0L : found.toLongArray()[0];
+        }
+        long found = 0L;
+        for (int k : this.empties) {
+            found |= 1L << k;
+        }
+        if (text == null) {
+            return found;
+        }
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length && found != this.allMask; i++) {
+            int symbol = this.symbolOf(text.charAt(i));
+            state = symbol == OTHER ? 0 : this.delta[state * this.width + symbol];
+            found |= this.output[state];
+        }
+        return found;
+    }
+
+    /**
+     * Recorre el texto una vez e indica que palabras clave aparecen en el, sin limite en el
+     * numero de palabras clave.
+     * @param text el texto en que se buscan las palabras clave, puede ser {@literal null}
+     * @return el conjunto de indices de las palabras clave que aparecen en el texto
+     */
+    public BitSet scan(CharSequence text) {
+
+        BitSet found = new BitSet(this.size);
+        int length = text == null ? -1 : text.length();
+        for (int k : this.empties) {
+            if (!this.wholeWords) {
+                found.set(k);
+            } else {
+                for (int p = 0; p <= length; p++) {
+                    if (this.isDelimited(text, p, p)) {
+                        found.set(k);
+                        break;
+                    }
+                }
+            }
+        }
+        if (text == null) {
+            return found;
+        }
+        int state = 0;
+        int remaining = this.size - found.cardinality();
+        for (int i = 0; i < length && remaining > 0; i++) {
+            int symbol = this.symbolOf(text.charAt(i));
+            state = symbol == OTHER ? 0 : this.delta[state * this.width + symbol];
+            int match = this.terminals[state] != null ? state : this.dictLink[state];
+            while (match != 0) {
+                int end = i + 1;
+                if (!this.wholeWords || this.isDelimited(text, end - this.depth[match], end)) {
+                    for (int k : this.terminals[match]) {
+                        if (!found.get(k)) {
+                            found.set(k);
+                            remaining--;
+                        }
+                    }
+                }
+                match = this.dictLink[match];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Indica si la aparicion de una palabra clave en {@code [start, end)} esta delimitada como
+     * palabra completa.
+     * @param text el texto en que aparece la palabra clave
+     * @param start posicion inicial de la aparicion
+     * @param end posicion siguiente al final de la aparicion
+     * @return {@literal true} si la aparicion esta precedida por el inicio del texto o un caracter
+     *     que no es de palabra y seguida por el fin del texto o un caracter que no es de palabra,
+     *     sin abarcar el texto completo
+     */
+    private boolean isDelimited(CharSequence text, int start, int end) {
+
+        int length = text.length();
+        if (start == 0 && end == length) {
+            return false;
+        }
+        return (start == 0 || !KeywordScanner.isWordChar(text.charAt(start - 1)))
+                && (end == length || !KeywordScanner.isWordChar(text.charAt(end)));
+    }
+
+    /**
+     * Indica si un caracter es de palabra, con el mismo criterio que {@literal \w} en
+     * {@link java.util.regex.Pattern}: letras y digitos ASCII y el guion bajo.
+     * @param c el caracter
+     * @return {@literal true} si el caracter es de palabra
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /** @return el numero de palabras clave del automata */
+    public int size() {
+        return this.size;
+    }
+}
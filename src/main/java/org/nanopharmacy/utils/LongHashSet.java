@@ -0,0 +1,149 @@
+package org.nanopharmacy.utils;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de valores {@code long} con direccionamiento abierto y sondeo lineal, sin objetos por
+ * elemento. El valor 0 se reserva para marcar las posiciones vacias, por lo que no puede almacenarse.
+ * <p>
+ * Esta clase no es segura para su uso concurrente.
+ * </p>
+ */
+public final class LongHashSet {
+
+    /** Factor de carga maximo antes de duplicar la tabla */
+    private static final float LOAD_FACTOR = 0.5F;
+
+    /** Posiciones de la tabla; 0 indica posicion vacia */
+    private long[] table;
+
+    /** Mascara para obtener una posicion a partir de un valor de dispersion */
+    private int mask;
+
+    /** Numero de elementos del conjunto */
+    private int size;
+
+    /** Numero de elementos a partir del cual se duplica la tabla */
+    private int threshold;
+
+    /**
+     * Crea un conjunto vacio con capacidad para el numero de elementos indicado sin redimensionarse.
+     * @param expectedSize numero de elementos esperado
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        this.allocate(capacity);
+    }
+
+    /**
+     * Crea un conjunto vacio con la capacidad inicial por omision.
+     */
+    public LongHashSet() {
+        this(8);
+    }
+
+    /**
+     * Reserva una tabla vacia de la capacidad indicada.
+     * @param capacity numero de posiciones, potencia de 2
+     */
+    private void allocate(int capacity) {
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Calcula la posicion inicial de un valor en la tabla.
+     * @param value el valor
+     * @return la posicion inicial de sondeo
+     */
+    private int slot(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & this.mask;
+    }
+
+    /**
+     * Agrega un valor al conjunto.
+     * @param value el valor a agregar, distinto de 0
+     * @return {@literal true} si el valor no estaba en el conjunto
+     */
+    public boolean add(long value) {
+
+        if (value == 0L) {
+            throw new IllegalArgumentException("El valor 0 no puede almacenarse");
+        }
+        int pos = this.slot(value);
+        long current;
+        while ((current = this.table[pos]) != 0L) {
+            if (current == value) {
+                return false;
+            }
+            pos = (pos + 1) & this.mask;
+        }
+        this.table[pos] = value;
+        if (++this.size > this.threshold) {
+            this.rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Indica si un valor esta en el conjunto.
+     * @param value el valor a buscar
+     * @return {@literal true} si el valor esta en el conjunto
+     */
+    public boolean contains(long value) {
+
+        if (value == 0L) {
+            return false;
+        }
+        int pos = this.slot(value);
+        long current;
+        while ((current = this.table[pos]) != 0L) {
+            if (current == value) {
+                return true;
+            }
+            pos = (pos + 1) & this.mask;
+        }
+        return false;
+    }
+
+    /**
+     * Duplica la capacidad de la tabla y reubica los elementos.
+     */
+    private void rehash() {
+
+        long[] old = this.table;
+        this.allocate(old.length << 1);
+        for (long value : old) {
+            if (value != 0L) {
+                int pos = this.slot(value);
+                while (this.table[pos] != 0L) {
+                    pos = (pos + 1) & this.mask;
+                }
+                this.table[pos] = value;
+            }
+        }
+    }
+
+    /**
+     * Elimina todos los elementos, conservando la capacidad de la tabla.
+     */
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+        this.size = 0;
+    }
+
+    /** @return el numero de elementos del conjunto */
+    public int size() {
+        return this.size;
+    }
+
+    /** @return {@literal true} si el conjunto no tiene elementos */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+}
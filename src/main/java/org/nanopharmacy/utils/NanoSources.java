@@ -0,0 +1,194 @@
+package org.nanopharmacy.utils;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.semanticwb.datamanager.DataMgr;
+import org.semanticwb.datamanager.SWBDataSource;
+import org.semanticwb.datamanager.SWBScriptEngine;
+
+/**
+ * Registro de los objetos {@code SWBScriptEngine} y {@code SWBDataSource} definidos en
+ * {@literal /public/NanoSources.js}. El motor de scripts se obtiene de {@link DataMgr} la primera vez
+ * que se solicita y se reutiliza en las invocaciones siguientes, junto con los {@code SWBDataSource}
+ * ya resueltos, en lugar de buscarlos en cada llamada.
+ * <p>
+ * Si el archivo {@literal NanoSources.js} se modifica, el registro se descarta y se vuelve a crear
+ * con la siguiente solicitud. La fecha de modificacion del archivo se revisa, como maximo, una vez
+ * cada {@link #CHECK_INTERVAL} milisegundos, configurable con la propiedad del sistema
+ * {@literal nanopharmacy.sources.checkInterval}.
+ * </p>
+ * <p>
+ * Esta clase es segura para su uso concurrente.
+ * </p>
+ */
+public final class NanoSources {
+
+    /** Ruta, relativa a la aplicacion, del script que define los {@code SWBDataSource} */
+    public static final String SCRIPT_PATH = "/public/NanoSources.js";
+
+    /** Milisegundos minimos entre dos revisiones de la fecha de modificacion del script */
+    public static final long CHECK_INTERVAL = Long.getLong("nanopharmacy.sources.checkInterval", 5000L);
+
+    /**
+     * {@code SWBDataSource} definidos en {@literal NanoSources.js} que utiliza la aplicacion.
+     */
+    public enum Source {
+        /** Articulos recuperados de PubMed y PubMed Central */
+        ARTICLE("Article"),
+        /** Esquemas de busqueda */
+        SEARCH("Search"),
+        /** Asociacion entre articulos y esquemas de busqueda */
+        ART_SEARCH("Art_Search"),
+        /** Frases del glosario */
+        GLOSSARY("Glossary"),
+        /** Frases analizadas por esquema de busqueda */
+        ANALIZE("Analize"),
+        /** Tipos de cancer */
+        CANCER_TYPE("CancerType"),
+        /** Asociacion entre genes y tipos de cancer */
+        GENE_CANCER("Gene_Cancer"),
+        /** Alteraciones moleculares */
+        ALTERATION_MOLECULAR("AlterationMolecular"),
+        /** Reportes */
+        REPORT("Report"),
+        /** Imagenes */
+        IMAGES("Images");
+
+        /** Nombre del {@code SWBDataSource} en {@literal NanoSources.js} */
+        private final String dataSourceName;
+
+        Source(String dataSourceName) {
+            this.dataSourceName = dataSourceName;
+        }
+
+        /** @return el nombre del {@code SWBDataSource} en {@literal NanoSources.js} */
+        public String getDataSourceName() {
+            return this.dataSourceName;
+        }
+    }
+
+    /**
+     * Motor de scripts y {@code SWBDataSource} resueltos a partir de una version del script.
+     */
+    private static final class Registry {
+
+        /** Motor de scripts de {@literal NanoSources.js} */
+        private final SWBScriptEngine engine;
+
+        /** Fecha de modificacion del script al crear el registro, 0 si no se conoce */
+        private final long lastModified;
+
+        /** {@code SWBDataSource} de cada {@link Source}, por ordinal; se resuelven bajo demanda */
+        private final AtomicReferenceArray<SWBDataSource> sources =
+                new AtomicReferenceArray<>(Source.values().length);
+
+        /** {@code SWBDataSource} solicitados por nombre */
+        private final ConcurrentHashMap<String, SWBDataSource> byName = new ConcurrentHashMap<>();
+
+        /** Momento, en milisegundos, de la ultima revision del script */
+        private volatile long checkedAt;
+
+        Registry(SWBScriptEngine engine, long lastModified, long checkedAt) {
+            this.engine = engine;
+            this.lastModified = lastModified;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /** Registro vigente; {@literal null} hasta la primera solicitud o despues de invalidarlo */
+    private static volatile Registry registry;
+
+    private NanoSources() {
+    }
+
+    /**
+     * Obtiene el registro vigente, creandolo si no existe o si el script cambio desde su creacion.
+     * @return el registro vigente
+     */
+    private static Registry registry() {
+
+        Registry current = NanoSources.registry;
+        long now = System.currentTimeMillis();
+        if (current != null) {
+            if (now - current.checkedAt < CHECK_INTERVAL) {
+                return current;
+            }
+            current.checkedAt = now;
+            if (NanoSources.scriptLastModified() == current.lastModified) {
+                return current;
+            }
+        }
+        synchronized (NanoSources.class) {
+            if (NanoSources.registry == current) {
+                long lastModified = NanoSources.scriptLastModified();
+                SWBScriptEngine engine = DataMgr.getUserScriptEngine(SCRIPT_PATH, null, false);
+                NanoSources.registry = new Registry(engine, lastModified, now);
+            }
+            return NanoSources.registry;
+        }
+    }
+
+    /**
+     * Obtiene la fecha de modificacion de {@literal NanoSources.js}.
+     * @return la fecha de modificacion del script, o 0 si no se puede determinar
+     */
+    private static long scriptLastModified() {
+
+        String appPath = DataMgr.getApplicationPath();
+        return appPath != null ? new File(appPath, SCRIPT_PATH).lastModified() : 0L;
+    }
+
+    /**
+     * Obtiene el motor de scripts de {@literal NanoSources.js}.
+     * @return el motor de scripts vigente
+     */
+    public static SWBScriptEngine getEngine() {
+        return NanoSources.registry().engine;
+    }
+
+    /**
+     * Obtiene un {@code SWBDataSource} de {@literal NanoSources.js}.
+     * @param source el {@code SWBDataSource} solicitado
+     * @return el {@code SWBDataSource} correspondiente del motor de scripts vigente
+     */
+    public static SWBDataSource get(Source source) {
+
+        Registry current = NanoSources.registry();
+        SWBDataSource ds = current.sources.get(source.ordinal());
+        if (ds == null) {
+            ds = current.engine.getDataSource(source.getDataSourceName());
+            current.sources.compareAndSet(source.ordinal(), null, ds);
+        }
+        return ds;
+    }
+
+    /**
+     * Obtiene un {@code SWBDataSource} de {@literal NanoSources.js} por su nombre.
+     * @param name nombre del {@code SWBDataSource}
+     * @return el {@code SWBDataSource} correspondiente del motor de scripts vigente, o {@literal null}
+     *     si el script no lo define
+     */
+    public static SWBDataSource get(String name) {
+
+        Registry current = NanoSources.registry();
+        SWBDataSource ds = current.byName.get(name);
+        if (ds == null) {
+            ds = current.engine.getDataSource(name);
+            if (ds != null) {
+                current.byName.putIfAbsent(name, ds);
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * Descarta el motor de scripts y los {@code SWBDataSource} resueltos, para que se obtengan de
+     * nuevo en la siguiente solicitud.
+     */
+    public static void invalidate() {
+        synchronized (NanoSources.class) {
+            NanoSources.registry = null;
+        }
+    }
+}
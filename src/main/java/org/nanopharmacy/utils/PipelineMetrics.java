@@ -0,0 +1,433 @@
+package org.nanopharmacy.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Tiempos y contadores de la obtencion de publicaciones: busqueda y descarga en Entrez,
+ * interpretacion de las respuestas, calculo de relevancia y almacenamiento en la BD. Permite
+ * identificar en que etapa se consume el tiempo de creacion de un esquema de busqueda.
+ * <p>
+ * Los tiempos se acumulan en histogramas con intervalos en potencias de 2 de microsegundos, de los
+ * que se estiman los percentiles. La instancia compartida se publica como MXBean con el nombre
+ * {@value #OBJECT_NAME}, por lo que puede consultarse con {@literal jconsole} o cualquier cliente JMX.
+ * </p>
+ * <p>
+ * Esta clase es segura para su uso concurrente; registrar una medicion no requiere bloqueos.
+ * </p>
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+
+    /** Nombre con que se registra la instancia compartida en el servidor de MBeans */
+    public static final String OBJECT_NAME = "org.nanopharmacy:type=PipelineMetrics";
+
+    /** Numero de intervalos de los histogramas; el ultimo acumula los tiempos de 2^38 us o mas */
+    private static final int BUCKETS = 40;
+
+    /**
+     * Etapas de la obtencion y almacenamiento de publicaciones.
+     */
+    public enum Stage {
+        /** {@code Utils.ENG.getPublication} completo */
+        PUBLICATION("publication"),
+        /** Busqueda y descarga de una ventana de tiempo en PubMed y PubMed Central */
+        WINDOW("window"),
+        /** Busqueda y descarga de articulos de PubMed, en {@code ESearchImpl.getPubMedArticles} */
+        PUBMED("pubmed"),
+        /** Busqueda y descarga de articulos de PubMed Central, en {@code ESearchImpl.getPMCArticles} */
+        PMC("pmc"),
+        /** Interpretacion de una pagina de efetch, incluyendo el calculo de relevancia */
+        PARSE("parse"),
+        /** Calculo de relevancia de un articulo */
+        RANK("rank"),
+        /** Almacenamiento de las publicaciones de una ventana, en {@code Utils.ENG.saveNewArticles} */
+        PERSIST("persist"),
+        /** Extraccion de texto y reemplazo de comillas de un articulo nuevo */
+        CLEANUP("cleanup"),
+        /** Escritura de un registro en un {@code SWBDataSource} */
+        WRITE("write");
+
+        /** Nombre de la etapa en JMX */
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        /** @return el nombre de la etapa en JMX */
+        public String getLabel() {
+            return this.label;
+        }
+    }
+
+    /**
+     * Contadores de articulos procesados.
+     */
+    public enum Counter {
+        /** Articulos descargados sin abstract */
+        SIN_ABSTRACT("sinAbstract"),
+        /** Articulos descartados por tener relevancia 0 */
+        RANK_CERO("rankCero"),
+        /** Articulos recuperados de PubMed y PubMed Central, incluyendo repetidos */
+        RECOVERED("recovered"),
+        /** Articulos no repetidos entre PubMed y PubMed Central */
+        ACCEPTED("accepted"),
+        /** Articulos nuevos almacenados en la BD */
+        SAVED("saved");
+
+        /** Nombre del contador en JMX */
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+
+        /** @return el nombre del contador en JMX */
+        public String getLabel() {
+            return this.label;
+        }
+    }
+
+    /** Instancia compartida, registrada en JMX */
+    private static final PipelineMetrics DEFAULT = new PipelineMetrics();
+
+    static {
+        PipelineMetrics.register(DEFAULT);
+    }
+
+    /** Tiempos de cada etapa */
+    private final EnumMap<Stage, Timer> stages = new EnumMap<>(Stage.class);
+
+    /** Tiempos de cada servicio y base de datos de Entrez */
+    private final ConcurrentHashMap<String, Timer> endpoints = new ConcurrentHashMap<>();
+
+    /** Valor de cada contador, por ordinal */
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    /**
+     * Crea un registro de metricas sin publicarlo en JMX.
+     */
+    public PipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            this.stages.put(stage, new Timer());
+        }
+    }
+
+    /**
+     * Devuelve la instancia compartida por todo el proceso.
+     * @return la instancia registrada en JMX
+     */
+    public static PipelineMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registra una instancia en el servidor de MBeans de la plataforma, reemplazando la registrada
+     * previamente con el mismo nombre, por ejemplo, por una version anterior de la aplicacion.
+     * @param metrics la instancia a registrar
+     */
+    private static void register(PipelineMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException | SecurityException e) {
+            Logger.getLogger(PipelineMetrics.class.getName()).log(Level.WARNING, null, e);
+        }
+    }
+
+    /**
+     * Registra la duracion de una etapa.
+     * @param stage la etapa
+     * @param startNanos valor de {@link System#nanoTime()} al iniciar la etapa
+     */
+    public void record(Stage stage, long startNanos) {
+        this.stages.get(stage).record(System.nanoTime() - startNanos, false);
+    }
+
+    /**
+     * Registra la duracion de una etapa, indicando si termino con error.
+     * @param stage la etapa
+     * @param startNanos valor de {@link System#nanoTime()} al iniciar la etapa
+     * @param failed indica si la etapa termino con error
+     */
+    public void record(Stage stage, long startNanos, boolean failed) {
+        this.stages.get(stage).record(System.nanoTime() - startNanos, failed);
+    }
+
+    /**
+     * Registra la duracion de una peticion a Entrez.
+     * @param endpoint servicio y base de datos de la peticion, por ejemplo {@literal efetch.pubmed}
+     * @param startNanos valor de {@link System#nanoTime()} al iniciar la peticion
+     * @param failed indica si la peticion termino con error
+     */
+    public void recordEndpoint(String endpoint, long startNanos, boolean failed) {
+        long elapsed = System.nanoTime() - startNanos;
+        Timer timer = this.endpoints.get(endpoint);
+        if (timer == null) {
+            timer = this.endpoints.computeIfAbsent(endpoint, k -> new Timer());
+        }
+        timer.record(elapsed, failed);
+    }
+
+    /**
+     * Incrementa un contador.
+     * @param counter el contador
+     * @param delta cantidad a sumar
+     */
+    public void add(Counter counter, long delta) {
+        if (delta != 0) {
+            this.counters.addAndGet(counter.ordinal(), delta);
+        }
+    }
+
+    /**
+     * Obtiene el valor de un contador.
+     * @param counter el contador
+     * @return el valor acumulado
+     */
+    public long get(Counter counter) {
+        return this.counters.get(counter.ordinal());
+    }
+
+    /**
+     * Obtiene las estadisticas de una etapa.
+     * @param stage la etapa
+     * @return las estadisticas acumuladas
+     */
+    public TimerStats getStage(Stage stage) {
+        return this.stages.get(stage).snapshot();
+    }
+
+    @Override
+    public Map<String, TimerStats> getStages() {
+        Map<String, TimerStats> result = new LinkedHashMap<>();
+        for (Map.Entry<Stage, Timer> entry : this.stages.entrySet()) {
+            result.put(entry.getKey().getLabel(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, TimerStats> getEndpoints() {
+        Map<String, TimerStats> result = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : this.endpoints.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            result.put(counter.getLabel(), this.get(counter));
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (Timer timer : this.stages.values()) {
+            timer.reset();
+        }
+        this.endpoints.clear();
+        for (int i = 0; i < this.counters.length(); i++) {
+            this.counters.set(i, 0L);
+        }
+    }
+
+    /**
+     * Histograma de duraciones con intervalos en potencias de 2 de microsegundos: el intervalo
+     * {@code i} acumula las duraciones de {@code [2^(i-1), 2^i)} microsegundos, y el 0 las menores
+     * a un microsegundo.
+     */
+    private static final class Timer {
+
+        /** Numero de mediciones en cada intervalo */
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        /** Numero de mediciones */
+        private final LongAdder count = new LongAdder();
+
+        /** Numero de mediciones que terminaron con error */
+        private final LongAdder failures = new LongAdder();
+
+        /** Suma de las duraciones, en nanosegundos */
+        private final LongAdder totalNanos = new LongAdder();
+
+        /** Duracion maxima, en nanosegundos */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Registra una medicion.
+         * @param nanos duracion en nanosegundos
+         * @param failed indica si la operacion termino con error
+         */
+        void record(long nanos, boolean failed) {
+            long micros = Math.max(0L, nanos) / 1000L;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            this.buckets.incrementAndGet(bucket);
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            if (failed) {
+                this.failures.increment();
+            }
+            long max = this.maxNanos.get();
+            while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+                max = this.maxNanos.get();
+            }
+        }
+
+        /**
+         * Elimina todas las mediciones.
+         */
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                this.buckets.set(i, 0L);
+            }
+            this.count.reset();
+            this.failures.reset();
+            this.totalNanos.reset();
+            this.maxNanos.set(0L);
+        }
+
+        /**
+         * Obtiene una copia de las mediciones acumuladas.
+         * @return las estadisticas del histograma
+         */
+        TimerStats snapshot() {
+            long[] copy = new long[BUCKETS];
+            long total = 0L;
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = this.buckets.get(i);
+                total += copy[i];
+            }
+            return new TimerStats(total, this.failures.sum(), this.totalNanos.sum(), this.maxNanos.get(), copy);
+        }
+    }
+
+    /**
+     * Estadisticas de un histograma de duraciones en un momento dado. Los percentiles son
+     * estimaciones: el limite superior del intervalo en que se encuentran.
+     */
+    public static final class TimerStats {
+
+        /** Numero de mediciones */
+        private final long count;
+
+        /** Numero de mediciones que terminaron con error */
+        private final long failures;
+
+        /** Suma de las duraciones, en nanosegundos */
+        private final long totalNanos;
+
+        /** Duracion maxima, en nanosegundos */
+        private final long maxNanos;
+
+        /** Numero de mediciones en cada intervalo */
+        private final long[] buckets;
+
+        TimerStats(long count, long failures, long totalNanos, long maxNanos, long[] buckets) {
+            this.count = count;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        /** @return el numero de mediciones */
+        public long getCount() {
+            return this.count;
+        }
+
+        /** @return el numero de mediciones que terminaron con error */
+        public long getFailures() {
+            return this.failures;
+        }
+
+        /** @return la suma de las duraciones, en milisegundos */
+        public double getTotalMillis() {
+            return this.totalNanos / 1e6;
+        }
+
+        /** @return la duracion promedio, en milisegundos */
+        public double getMeanMillis() {
+            return this.count == 0 ? 0.0 : this.totalNanos / 1e6 / this.count;
+        }
+
+        /** @return la duracion maxima, en milisegundos */
+        public double getMaxMillis() {
+            return this.maxNanos / 1e6;
+        }
+
+        /** @return la mediana estimada, en milisegundos */
+        public double getP50Millis() {
+            return this.percentileMillis(0.50);
+        }
+
+        /** @return el percentil 90 estimado, en milisegundos */
+        public double getP90Millis() {
+            return this.percentileMillis(0.90);
+        }
+
+        /** @return el percentil 99 estimado, en milisegundos */
+        public double getP99Millis() {
+            return this.percentileMillis(0.99);
+        }
+
+        /**
+         * Obtiene el numero de mediciones de cada intervalo del histograma; el intervalo {@code i}
+         * corresponde a duraciones menores a {@code 2^i} microsegundos.
+         * @return una copia de los intervalos
+         */
+        public long[] getHistogram() {
+            return this.buckets.clone();
+        }
+
+        /**
+         * Estima un percentil a partir de los intervalos del histograma.
+         * @param quantile el percentil, entre 0 y 1
+         * @return el limite superior del intervalo que contiene el percentil, acotado por la
+         *     duracion maxima, en milisegundos
+         */
+        private double percentileMillis(double quantile) {
+            if (this.count == 0) {
+                return 0.0;
+            }
+            long target = (long) Math.ceil(quantile * this.count);
+            long seen = 0L;
+            for (int i = 0; i < this.buckets.length; i++) {
+                seen += this.buckets[i];
+                if (seen >= target) {
+                    long upperMicros = 1L << i;
+                    return Math.min(TimeUnit.MICROSECONDS.toNanos(upperMicros), this.maxNanos) / 1e6;
+                }
+            }
+            return this.getMaxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d failures=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                    this.count, this.failures, this.getMeanMillis(), this.getP50Millis(), this.getP90Millis(),
+                    this.getP99Millis(), this.getMaxMillis());
+        }
+    }
+}
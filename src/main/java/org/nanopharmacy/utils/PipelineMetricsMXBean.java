@@ -0,0 +1,34 @@
+package org.nanopharmacy.utils;
+
+import java.util.Map;
+
+/**
+ * Interfaz de administracion (JMX) de {@link PipelineMetrics}. Se registra en el servidor de MBeans
+ * de la plataforma con el nombre {@value PipelineMetrics#OBJECT_NAME}.
+ */
+public interface PipelineMetricsMXBean {
+
+    /**
+     * Obtiene los tiempos de cada etapa de la obtencion y almacenamiento de publicaciones.
+     * @return estadisticas de tiempo indexadas por el nombre de la etapa
+     */
+    Map<String, PipelineMetrics.TimerStats> getStages();
+
+    /**
+     * Obtiene los tiempos de las peticiones a Entrez por servicio y base de datos, por ejemplo
+     * {@literal efetch.pubmed}.
+     * @return estadisticas de tiempo indexadas por servicio y base de datos
+     */
+    Map<String, PipelineMetrics.TimerStats> getEndpoints();
+
+    /**
+     * Obtiene los contadores de articulos procesados.
+     * @return el valor de cada contador, indexado por su nombre
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Reinicia todas las estadisticas.
+     */
+    void reset();
+}
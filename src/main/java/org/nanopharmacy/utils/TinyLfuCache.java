@@ -0,0 +1,593 @@
+package org.nanopharmacy.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache en memoria de cadenas, acotado en numero de entradas, con una politica de desalojo que
+ * considera la frecuencia de uso (W-TinyLFU).
+ * <p>
+ * Las entradas nuevas ingresan a una ventana LRU pequeña (1% de la capacidad); al salir de la
+ * ventana, una entrada solo se admite en la region principal si su frecuencia estimada es mayor a
+ * la de la entrada que desalojaria. La region principal es un LRU segmentado: las entradas
+ * consultadas de nuevo pasan del segmento de prueba al protegido (80% de la capacidad). La
+ * frecuencia se estima con un count-min sketch de contadores de 4 bits cuyo valor se reduce a la
+ * mitad periodicamente, de modo que la popularidad antigua se olvida. Asi, una rafaga de
+ * consultas a llaves que no se repiten no desplaza a las llaves consultadas con frecuencia.
+ * </p>
+ * <p>
+ * Cada entrada vence {@code expireAfterWrite} milisegundos despues de almacenarse. Si se consulta
+ * con {@link #get(String, Function)} despues de {@code refreshAfterWrite} milisegundos, se entrega
+ * el valor almacenado y se calcula uno nuevo en segundo plano; si el calculo falla (devuelve
+ * {@literal null}), el valor anterior se conserva hasta su vencimiento.
+ * </p>
+ * <p>
+ * El contenido puede guardarse en un archivo con {@link #save(File)} y recuperarse con
+ * {@link #load(File)}, para no iniciar con el cache vacio tras reiniciar la aplicacion.
+ * </p>
+ * <p>
+ * Esta clase es segura para su uso concurrente; todas las operaciones se realizan con un candado.
+ * </p>
+ */
+public final class TinyLfuCache {
+
+    /** Identificador del formato del archivo de respaldo */
+    private static final int MAGIC = 0x4E50544C;
+
+    /** Version del formato del archivo de respaldo */
+    private static final int VERSION = 1;
+
+    /** Numero maximo de entradas */
+    private final int maximumSize;
+
+    /** Numero maximo de entradas en la ventana de admision */
+    private final int windowSize;
+
+    /** Numero maximo de entradas en el segmento protegido */
+    private final int protectedSize;
+
+    /** Tiempo, en milisegundos, tras el cual vence una entrada */
+    private final long expireAfterWrite;
+
+    /** Tiempo, en milisegundos, tras el cual una entrada consultada se recalcula en segundo plano */
+    private final long refreshAfterWrite;
+
+    /** Ejecuta los recalculos en segundo plano */
+    private final Executor refreshExecutor;
+
+    /** Frecuencia estimada de las llaves */
+    private final FrequencySketch sketch;
+
+    /** Todas las entradas, por llave */
+    private final HashMap<String, Node> data;
+
+    /** Ventana de admision, con la entrada usada menos recientemente primero */
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Segmento de prueba de la region principal */
+    private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Segmento protegido de la region principal */
+    private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long refreshes;
+    private long refreshFailures;
+
+    /**
+     * Crea un cache vacio.
+     * @param maximumSize numero maximo de entradas
+     * @param expireAfterWrite tiempo, en milisegundos, tras el cual vence una entrada
+     * @param refreshAfterWrite tiempo, en milisegundos, tras el cual una entrada consultada se
+     *     recalcula en segundo plano; un valor mayor o igual a {@code expireAfterWrite} lo deshabilita
+     * @param refreshExecutor ejecuta los recalculos en segundo plano
+     */
+    public TinyLfuCache(int maximumSize, long expireAfterWrite, long refreshAfterWrite, Executor refreshExecutor) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize debe ser mayor a cero");
+        }
+        if (expireAfterWrite <= 0) {
+            throw new IllegalArgumentException("expireAfterWrite debe ser mayor a cero");
+        }
+        if (refreshExecutor == null) {
+            throw new IllegalArgumentException("refreshExecutor es nulo");
+        }
+        this.maximumSize = maximumSize;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.protectedSize = (int) ((maximumSize - this.windowSize) * 0.8);
+        this.expireAfterWrite = expireAfterWrite;
+        this.refreshAfterWrite = refreshAfterWrite;
+        this.refreshExecutor = refreshExecutor;
+        this.sketch = new FrequencySketch(maximumSize);
+        this.data = new HashMap<>(Math.min(maximumSize, 1 << 16) * 4 / 3 + 1);
+    }
+
+    /**
+     * Obtiene el valor de una llave, sin recalcularlo.
+     * @param key la llave
+     * @return el valor, o {@literal null} si no existe o vencio
+     */
+    public String get(String key) {
+        return this.get(key, null);
+    }
+
+    /**
+     * Obtiene el valor de una llave. Si el valor debe renovarse, se entrega el valor actual y se
+     * programa el calculo de uno nuevo con {@code refresher}.
+     * @param key la llave
+     * @param refresher calcula el nuevo valor de la llave, o devuelve {@literal null} si no puede
+     *     calcularse; puede ser {@literal null}
+     * @return el valor, o {@literal null} si no existe o vencio
+     */
+    public String get(final String key, final Function<String, String> refresher) {
+
+        long now = System.currentTimeMillis();
+        Node node;
+        String value;
+        synchronized (this) {
+            this.sketch.increment(key);
+            node = this.data.get(key);
+            if (node == null) {
+                this.misses++;
+                return null;
+            }
+            if (now - node.written >= this.expireAfterWrite) {
+                this.remove(node);
+                this.expirations++;
+                this.misses++;
+                return null;
+            }
+            this.hits++;
+            this.onAccess(node);
+            value = node.value;
+            if (refresher == null || node.refreshing || now - node.written < this.refreshAfterWrite
+                    || this.refreshAfterWrite >= this.expireAfterWrite) {
+                return value;
+            }
+            node.refreshing = true;
+            this.refreshes++;
+        }
+        final Node stale = node;
+        try {
+            this.refreshExecutor.execute(() -> this.refresh(key, stale, refresher));
+        } catch (RejectedExecutionException ree) {
+            synchronized (this) {
+                stale.refreshing = false;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Calcula de nuevo el valor de una llave y lo almacena, si la entrada no cambio mientras tanto.
+     */
+    private void refresh(String key, Node stale, Function<String, String> refresher) {
+
+        String value = null;
+        try {
+            value = refresher.apply(key);
+        } catch (RuntimeException re) {
+            Logger.getLogger(TinyLfuCache.class.getName()).log(Level.SEVERE, null, re);
+        }
+        synchronized (this) {
+            stale.refreshing = false;
+            if (value == null) {
+                this.refreshFailures++;
+            } else if (this.data.get(key) == stale) {
+                stale.value = value;
+                stale.written = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Almacena el valor de una llave, reemplazando el anterior.
+     * @param key la llave
+     * @param value el valor
+     */
+    public void put(String key, String value) {
+        this.put(key, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Almacena el valor de una llave con el momento en que se obtuvo.
+     */
+    private synchronized void put(String key, String value, long written) {
+
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("la llave y el valor no pueden ser nulos");
+        }
+        Node node = this.data.get(key);
+        if (node != null) {
+            node.value = value;
+            node.written = written;
+            this.onAccess(node);
+            return;
+        }
+        node = new Node(key, value, written);
+        this.data.put(key, node);
+        node.segment = this.window;
+        this.window.put(key, node);
+        this.evict();
+    }
+
+    /**
+     * Elimina el valor de una llave.
+     * @param key la llave
+     */
+    public synchronized void invalidate(String key) {
+        Node node = this.data.get(key);
+        if (node != null) {
+            this.remove(node);
+        }
+    }
+
+    /**
+     * Elimina todas las entradas, conservando las estadisticas y las frecuencias.
+     */
+    public synchronized void clear() {
+        this.data.clear();
+        this.window.clear();
+        this.probation.clear();
+        this.protectedSegment.clear();
+    }
+
+    /** @return el numero de entradas almacenadas, incluyendo las vencidas no eliminadas aun */
+    public synchronized int size() {
+        return this.data.size();
+    }
+
+    /** @return el numero de consultas en que se encontro un valor vigente */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /** @return el numero de consultas en que no se encontro un valor vigente */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /** @return la proporcion de consultas en que se encontro un valor vigente */
+    public synchronized double getHitRate() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0.0 : (double) this.hits / total;
+    }
+
+    /** @return el numero de entradas desalojadas o no admitidas por falta de espacio */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /** @return el numero de entradas eliminadas por vencimiento */
+    public synchronized long getExpirations() {
+        return this.expirations;
+    }
+
+    /** @return el numero de recalculos en segundo plano iniciados */
+    public synchronized long getRefreshes() {
+        return this.refreshes;
+    }
+
+    /** @return el numero de recalculos en segundo plano que no obtuvieron un valor */
+    public synchronized long getRefreshFailures() {
+        return this.refreshFailures;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TinyLfuCache{size=" + this.data.size() + "/" + this.maximumSize + ", hits=" + this.hits +
+                ", misses=" + this.misses + ", evictions=" + this.evictions + ", expirations=" +
+                this.expirations + ", refreshes=" + this.refreshes + ", refreshFailures=" +
+                this.refreshFailures + "}";
+    }
+
+    /**
+     * Actualiza la posicion de una entrada consultada: en su segmento si esta en la ventana o en el
+     * segmento protegido, o la promueve al segmento protegido si esta en el de prueba.
+     */
+    private void onAccess(Node node) {
+
+        if (node.segment == this.probation) {
+            this.probation.remove(node.key);
+            node.segment = this.protectedSegment;
+            this.protectedSegment.put(node.key, node);
+            if (this.protectedSegment.size() > this.protectedSize) {
+                //la entrada protegida menos reciente regresa al segmento de prueba
+                Node demoted = this.removeEldest(this.protectedSegment);
+                demoted.segment = this.probation;
+                this.probation.put(demoted.key, demoted);
+            }
+        } else {
+            node.segment.get(node.key);
+        }
+    }
+
+    /**
+     * Mueve las entradas que exceden la ventana a la region principal, desalojando la entrada de
+     * menor frecuencia estimada mientras se exceda la capacidad.
+     */
+    private void evict() {
+
+        while (this.window.size() > this.windowSize) {
+            Node candidate = this.removeEldest(this.window);
+            candidate.segment = this.probation;
+            this.probation.put(candidate.key, candidate);
+            if (this.data.size() <= this.maximumSize) {
+                continue;
+            }
+            Node victim = this.probation.values().iterator().next();
+            if (victim == candidate) {
+                victim = this.protectedSegment.isEmpty() ? candidate
+                        : this.protectedSegment.values().iterator().next();
+            }
+            Node evicted = this.sketch.frequency(candidate.key) > this.sketch.frequency(victim.key)
+                    ? victim : candidate;
+            this.remove(evicted);
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Elimina y devuelve la entrada usada menos recientemente de un segmento.
+     */
+    private Node removeEldest(LinkedHashMap<String, Node> segment) {
+        Iterator<Node> it = segment.values().iterator();
+        Node eldest = it.next();
+        it.remove();
+        return eldest;
+    }
+
+    /**
+     * Elimina una entrada del cache.
+     */
+    private void remove(Node node) {
+        node.segment.remove(node.key);
+        this.data.remove(node.key);
+    }
+
+    /**
+     * Guarda las entradas vigentes en un archivo, con las consultadas mas recientemente al final.
+     * El archivo se escribe primero con otro nombre y despues se renombra, de modo que una escritura
+     * interrumpida no dañe el respaldo anterior.
+     * @param file el archivo de respaldo
+     * @throws IOException en caso de problemas con la escritura del archivo
+     */
+    public void save(File file) throws IOException {
+
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> frequencies = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            this.collect(this.probation, now, nodes, frequencies);
+            this.collect(this.window, now, nodes, frequencies);
+            this.collect(this.protectedSegment, now, nodes, frequencies);
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio " + parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                out.writeLong(node.written);
+                out.writeByte(frequencies.get(i));
+                TinyLfuCache.writeString(out, node.key);
+                TinyLfuCache.writeString(out, node.value);
+            }
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Copia las entradas vigentes de un segmento y su frecuencia estimada.
+     */
+    private void collect(LinkedHashMap<String, Node> segment, long now, List<Node> nodes, List<Integer> frequencies) {
+        for (Node node : segment.values()) {
+            if (now - node.written < this.expireAfterWrite) {
+                nodes.add(new Node(node.key, node.value, node.written));
+                frequencies.add(this.sketch.frequency(node.key));
+            }
+        }
+    }
+
+    /**
+     * Agrega al cache las entradas vigentes de un archivo creado con {@link #save(File)},
+     * conservando el momento en que se obtuvieron y su frecuencia estimada.
+     * @param file el archivo de respaldo
+     * @return el numero de entradas agregadas, 0 si el archivo no existe
+     * @throws IOException en caso de problemas con la lectura del archivo o si su formato no es valido
+     */
+    public int load(File file) throws IOException {
+
+        if (!file.isFile()) {
+            return 0;
+        }
+        int loaded = 0;
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Formato de respaldo no valido: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long written = in.readLong();
+                int frequency = in.readUnsignedByte();
+                String key = TinyLfuCache.readString(in);
+                String value = TinyLfuCache.readString(in);
+                if (now - written < this.expireAfterWrite && written <= now) {
+                    synchronized (this) {
+                        for (int f = this.sketch.frequency(key); f < frequency; f++) {
+                            this.sketch.increment(key);
+                        }
+                        this.put(key, value, written);
+                    }
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Longitud de cadena no valida: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Entrada del cache.
+     */
+    private static final class Node {
+
+        final String key;
+        String value;
+
+        /** Momento, en milisegundos desde la epoca, en que se obtuvo el valor */
+        long written;
+
+        /** Segmento en que se encuentra la entrada */
+        LinkedHashMap<String, Node> segment;
+
+        /** Indica si hay un recalculo en curso */
+        boolean refreshing;
+
+        Node(String key, String value, long written) {
+            this.key = key;
+            this.value = value;
+            this.written = written;
+        }
+    }
+
+    /**
+     * Count-min sketch con contadores de 4 bits, 16 por cada {@code long}. Cada llave incrementa un
+     * contador en cada uno de 4 renglones y su frecuencia es el menor de ellos. Cuando el numero de
+     * incrementos alcanza 10 veces la capacidad del cache, todos los contadores se reducen a la mitad.
+     */
+    private static final class FrequencySketch {
+
+        /** Semillas de las funciones de dispersion de cada renglon */
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+        /** Contadores; cada renglon ocupa una cuarta parte de los {@code long} */
+        private final long[] table;
+
+        /** Mascara para obtener el indice de un {@code long} dentro de un renglon */
+        private final int rowMask;
+
+        /** Numero de incrementos tras el cual se reducen los contadores */
+        private final int sampleSize;
+
+        /** Numero de incrementos desde la ultima reduccion */
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int row = Integer.highestOneBit(Math.max(4, Math.min(maximumSize, 1 << 24) / 4 - 1) << 1);
+            this.table = new long[row * 4];
+            this.rowMask = row - 1;
+            this.sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Obtiene la frecuencia estimada de una llave.
+         * @return un valor entre 0 y 15
+         */
+        int frequency(String key) {
+            int hash = FrequencySketch.spread(key.hashCode());
+            int min = 15;
+            for (int i = 0; i < 4; i++) {
+                int index = this.indexOf(hash, i);
+                int offset = this.offsetOf(hash, i);
+                min = Math.min(min, (int) ((this.table[index] >>> offset) & 0xFL));
+            }
+            return min;
+        }
+
+        /**
+         * Incrementa la frecuencia de una llave.
+         */
+        void increment(String key) {
+            int hash = FrequencySketch.spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = this.indexOf(hash, i);
+                int offset = this.offsetOf(hash, i);
+                if (((this.table[index] >>> offset) & 0xFL) != 0xFL) {
+                    this.table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++this.additions >= this.sampleSize) {
+                this.reset();
+            }
+        }
+
+        /**
+         * Reduce todos los contadores a la mitad.
+         */
+        private void reset() {
+            for (int i = 0; i < this.table.length; i++) {
+                this.table[i] = (this.table[i] >>> 1) & 0x7777777777777777L;
+            }
+            this.additions /= 2;
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return row * (this.rowMask + 1) + ((int) h & this.rowMask);
+        }
+
+        private int offsetOf(int hash, int row) {
+            return ((hash >>> (row << 3)) & 0xF) << 2;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package org.nanopharmacy.utils;
 
 import org.nanopharmacy.ai.Analizer;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,24 +16,37 @@ import java.net.ProtocolException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jdom.Document;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.jdom.JDOMException;
 import org.jdom.input.SAXBuilder;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.nanopharmacy.eutility.impl.Article;
 import org.nanopharmacy.eutility.impl.ESearchImpl;
+import org.nanopharmacy.eutility.impl.KnownArticles;
 import org.nanopharmacy.eutility.impl.NoDataException;
 import org.nanopharmacy.eutility.impl.UseHistoryException;
 //import org.nanopharmacy.utils.Utils.BD;
+import org.nanopharmacy.utils.NanoSources.Source;
+import org.nanopharmacy.utils.PipelineMetrics.Counter;
+import org.nanopharmacy.utils.PipelineMetrics.Stage;
 import org.semanticwb.datamanager.DataList;
-import org.semanticwb.datamanager.DataMgr;
 import org.semanticwb.datamanager.DataObject;
 import org.semanticwb.datamanager.SWBDataSource;
-import org.semanticwb.datamanager.SWBScriptEngine;
 import org.nanopharmacy.util.parser.html.HTMLParser;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
 
 /**
  * <p>
@@ -73,6 +87,33 @@ public class Utils {
      */
     private static int bufferSize = 8192;
 
+    /** Bit de {@link #scanTerms} que indica que el texto menciona la alteracion molecular */
+    public static final long TERM_ALTERATION = 1L;
+
+    /** Bit de {@link #scanTerms} que indica que el texto menciona {@literal prognosis} */
+    public static final long TERM_PROGNOSIS = 1L << 1;
+
+    /** Bit de {@link #scanTerms} que indica que el texto menciona {@literal treatment} */
+    public static final long TERM_TREATMENT = 1L << 2;
+
+    /** Bit de {@link #scanTerms} que indica que el texto menciona alguna palabra que inicia con {@literal predict} */
+    public static final long TERM_PREDICTION = 1L << 3;
+
+    /** Numero maximo de automatas de busqueda que se conservan, uno por alteracion molecular */
+    private static final int MAX_RANKING_SCANNERS = 512;
+
+    /**
+     * Automatas de busqueda de los terminos de relevancia, indexados por alteracion molecular; los
+     * menos usados se descartan
+     */
+    private static final Map<String, KeywordScanner> RANKING_SCANNERS =
+            new LinkedHashMap<String, KeywordScanner>(16, 0.75F, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, KeywordScanner> eldest) {
+                    return size() > MAX_RANKING_SCANNERS;
+                }
+            };
+
     /**
      * Calcula el valor de relevancia de una publicación médica recuperada con
      * Entrez.
@@ -92,17 +133,27 @@ public class Utils {
      * predict.
      */
     public static int getRanking(String text, String geneName, String molecularAlt) {
-        int rank = 0;
         if (text == null || geneName == null || molecularAlt == null) {
-            return rank;
+            return 0;
         }
+        return getRanking(scanTerms(text, molecularAlt));
+    }
 
-        final String content = text.toLowerCase();
-        boolean containsPrognosis = content.contains("prognosis");
-        boolean containsTreatment = content.contains("treatment");
-        boolean containsPredict = content.contains("predict");
+    /**
+     * Calcula el valor de relevancia de una publicación a partir de los terminos
+     * encontrados en su texto por {@link #scanTerms(String, String)}, con los mismos
+     * criterios que {@link #getRanking(String, String, String)}.
+     *
+     * @param terms mascara de bits con los terminos encontrados en el texto
+     * @return el valor de relevancia: 10, 8, 6, 2 o 0
+     */
+    public static int getRanking(long terms) {
+        int rank = 0;
+        boolean containsPrognosis = (terms & TERM_PROGNOSIS) != 0;
+        boolean containsTreatment = (terms & TERM_TREATMENT) != 0;
+        boolean containsPredict = (terms & TERM_PREDICTION) != 0;
 
-        if (content.contains(molecularAlt)) {
+        if ((terms & TERM_ALTERATION) != 0) {
             rank = 10;
         } else if (containsPrognosis && containsTreatment && containsPredict) {
             rank = 8;
@@ -116,6 +167,30 @@ public class Utils {
         return rank;
     }
 
+    /**
+     * Busca en un solo recorrido del texto, sin distinguir mayusculas de minusculas, la alteracion
+     * molecular y las vertientes: prognosis, treatment y cualquier palabra que inicie con predict.
+     *
+     * @param text el texto en que se buscan los terminos
+     * @param molecularAlt el simbolo de la alteracion molecular en el esquema de busqueda,
+     * {@literal null} si solo se buscan las vertientes
+     * @return una mascara con los bits {@link #TERM_ALTERATION}, {@link #TERM_PROGNOSIS},
+     * {@link #TERM_TREATMENT} y {@link #TERM_PREDICTION} de los terminos encontrados
+     */
+    public static long scanTerms(String text, String molecularAlt) {
+        String alteration = molecularAlt != null ? molecularAlt : "";
+        KeywordScanner scanner;
+        synchronized (RANKING_SCANNERS) {
+            scanner = RANKING_SCANNERS.get(alteration);
+            if (scanner == null) {
+                scanner = new KeywordScanner(alteration, "prognosis", "treatment", "predict");
+                RANKING_SCANNERS.put(alteration, scanner);
+            }
+        }
+        long terms = scanner.scanMask(text);
+        return molecularAlt != null ? terms : terms & ~TERM_ALTERATION;
+    }
+
     /**
      * Representa la abreviatura de los meses
      */
@@ -127,8 +202,36 @@ public class Utils {
      */
     public static class XML {
 
+        /** Resuelve DTDs y entidades externas sin realizar peticiones por red */
+        private static final EmptyDtdResolver RESOLVER = new EmptyDtdResolver();
+
         /**
-         * Convierte un objeto {@code InputStream} a un objeto {@code Document}
+         * Constructor de documentos JDOM de cada hilo. {@code SAXBuilder} no puede usarse
+         * concurrentemente, pero conserva y reutiliza el parser configurado entre documentos.
+         */
+        private static final ThreadLocal<SAXBuilder> BUILDER = new ThreadLocal<SAXBuilder>() {
+            @Override
+            protected SAXBuilder initialValue() {
+                SAXBuilder builder = new SAXBuilder(false);
+                builder.setReuseParser(true);
+                builder.setEntityResolver(RESOLVER);
+                return builder;
+            }
+        };
+
+        /** Fabrica de lectores StAX, compartida entre hilos */
+        private static final XMLInputFactory STREAM_FACTORY = XMLInputFactory.newInstance();
+
+        static {
+            STREAM_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            STREAM_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+            STREAM_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+            STREAM_FACTORY.setXMLResolver(RESOLVER);
+        }
+
+        /**
+         * Convierte un objeto {@code InputStream} a un objeto {@code Document}. Los DTDs
+         * declarados en el documento no se descargan, se sustituyen por un DTD vacio.
          *
          * @param is objeto {@code InputStream} que ser&aacute; tranformado a un
          * objeto de tipo {@code Document}
@@ -141,14 +244,42 @@ public class Utils {
          * documento.
          */
         public static org.jdom.Document getXML(InputStream is) throws IOException, JDOMException {
-            SAXBuilder builder = new SAXBuilder();
-            //String data = getStringFromInputStream(is);
-            //byte[] data2 = data.getBytes();
-            Document document = builder.build(is);
-            //Document document = (Document) builder.build(new ByteArrayInputStream(data2));
-            return document;
+            return BUILDER.get().build(is);
+        }
+
+        /**
+         * Crea un lector StAX sobre un documento XML. Los DTDs declarados en el documento no
+         * se descargan, se sustituyen por un DTD vacio.
+         *
+         * @param is flujo con el documento XML
+         * @return el lector posicionado al inicio del documento
+         * @throws XMLStreamException si no es posible leer el inicio del documento
+         */
+        public static XMLStreamReader getStreamReader(InputStream is) throws XMLStreamException {
+            return STREAM_FACTORY.createXMLStreamReader(is);
         }
 
+        /**
+         * Resuelve todos los DTDs y entidades externas con un documento vacio, para que el analisis
+         * de las respuestas de Entrez nunca descargue los DTDs de la NCBI y JATS. Los documentos no se
+         * validan y las respuestas de Entrez solo usan referencias numericas a caracteres, por lo que
+         * el contenido del DTD no altera el resultado.
+         */
+        private static final class EmptyDtdResolver implements EntityResolver, XMLResolver {
+
+            @Override
+            public InputSource resolveEntity(String publicId, String systemId) {
+                InputSource source = new InputSource(new ByteArrayInputStream(new byte[0]));
+                source.setPublicId(publicId);
+                source.setSystemId(systemId);
+                return source;
+            }
+
+            @Override
+            public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+        }
     }
 
     /*
@@ -157,6 +288,18 @@ public class Utils {
      */
     public static class ENG {
 
+        /**
+         * N&uacute;mero m&aacute;ximo de identificadores por consulta
+         * {@literal $in} en las b&uacute;squedas de art&iacute;culos por lote.
+         */
+        private static final int BATCH_SIZE = 500;
+
+        /**
+         * Tiempos y contadores de la obtenci&oacute;n y almacenamiento de
+         * publicaciones.
+         */
+        private static final PipelineMetrics METRICS = PipelineMetrics.getDefault();
+
         /**
          * Valida que un registro con p&aacute;rametros espec&iacute;ficos
          * exista en una tabla de la BD.
@@ -186,8 +329,7 @@ public class Utils {
                 String[] namesInt, int[] valuesInt)
                 throws IOException {
             boolean valid = false;
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource ds = engine.getDataSource(titleDataSource);
+            SWBDataSource ds = NanoSources.get(titleDataSource);
 
             DataObject obj = getDataProperty(ds, namesString, values, namesInt, valuesInt);
 
@@ -217,8 +359,7 @@ public class Utils {
          */
         public static String getIdProperty(String dataSource, String property, String valueProp) throws IOException {
             String ret = null;
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource ds = engine.getDataSource(dataSource);
+            SWBDataSource ds = NanoSources.get(dataSource);
             DataObject obj = getDataProperty(ds, property, valueProp, 0);
             if (obj != null) {
                 int rows = obj.getDataObject("response").getInt("totalRows");
@@ -345,74 +486,65 @@ public class Utils {
          */
         public static String saveNewArticles(JSONObject publications, String idSearch, int countNewArt, int countRecommended)
                 throws IOException, InterruptedException {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource ds = engine.getDataSource("Article");
-            SWBDataSource dsSearch = engine.getDataSource("Search");
-            SWBDataSource dsArtSearch = engine.getDataSource("Art_Search");
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                String result = storeNewArticles(publications, idSearch, countNewArt, countRecommended);
+                failed = false;
+                return result;
+            } finally {
+                METRICS.record(Stage.PERSIST, start, failed);
+            }
+        }
+
+        /**
+         * Realiza el almacenamiento de {@link #saveNewArticles(JSONObject, String, int, int)}.
+         */
+        private static String storeNewArticles(JSONObject publications, String idSearch, int countNewArt, int countRecommended)
+                throws IOException, InterruptedException {
+            SWBDataSource ds = NanoSources.get(Source.ARTICLE);
+            SWBDataSource dsSearch = NanoSources.get(Source.SEARCH);
+            SWBDataSource dsArtSearch = NanoSources.get(Source.ART_SEARCH);
             DataObject datObjSearch = dsSearch.fetchObjById(idSearch);
 
             JSONArray arrOutstanding = publications.getJSONArray("outstanding");
-            for (int i = 0; i < arrOutstanding.length(); i++) {
+            int length = arrOutstanding.length();
+            int[] pmids = new int[length];
+            int[] pmcs = new int[length];
+            for (int i = 0; i < length; i++) {
                 JSONObject art = arrOutstanding.getJSONObject(i);
+                pmids[i] = parseArticleId(art, "pmid");
+                pmcs[i] = parseArticleId(art, "pmc");
+            }
+            //Consulta en lotes los articulos existentes y las asociaciones de la busqueda
+            ArticleIndex index = ArticleIndex.getDefault();
+            resolveArticles(ds, index, pmids, pmcs);
+            Set<String> linked = fetchLinkedArticles(dsArtSearch, idSearch);
 
-                int pmid = 0, pmc = 0;
-                if (art.has("pmid") && !art.getString("pmid").equals("")) {
-                    pmid = Integer.parseInt(art.getString("pmid"));
-                }
-                if (art.has("pmc") && !art.getString("pmid").equals("")) {
-                    pmc = Integer.parseInt(art.getString("pmc"));
-                }
-                int ranking = art.has("ranking") ? art.getInt("ranking") : null;
-                DataObject obj = new DataObject();
-                DataObject dataNewArticle = new DataObject();
-                String idArticle = null;
-                int rows = 0;
-                //Hace una petición a la BD a traves de la propiedad "pmcid" del artículo
-                if (pmc != 0) {
-                    obj = getDataProperty(ds, "pmcid", null, pmc);
-                    rows = obj.getDataObject("response").getInt("totalRows");
-                }
-                //Sino trae información la consulta, hace una segunda petición a la BD a traves
-                // de la propiedad "pmid" 
-                if (rows == 0 && pmid != 0) {
-                    obj = getDataProperty(ds, "pmid", null, pmid);
-                    rows = obj.getDataObject("response").getInt("totalRows");
-                }
-
-                if (rows == 0) {
+            for (int i = 0; i < length; i++) {
+                JSONObject art = arrOutstanding.getJSONObject(i);
+                int pmid = pmids[i], pmc = pmcs[i];
+                int ranking = art.optInt("ranking", 0);
+                //Busca el articulo primero por su "pmcid" y despues por su "pmid"
+                String existing = index.find(pmid, pmc);
+                String idArticle;
+                if (existing == null) {
                     //Si el articulo no existe, guardar el objeto 
-                    dataNewArticle = setPropArticle(ds, art, pmid, pmc);
+                    DataObject dataNewArticle = setPropArticle(ds, art, pmid, pmc);
                     idArticle = dataNewArticle.getDataObject("response").getDataObject("data").getString("_id");
-                    countNewArt++;
-                    if (ranking > 5) {
-                        countRecommended++;
-                    }
+                    index.put(pmid, pmc, idArticle);
+                    METRICS.add(Counter.SAVED, 1);
                 } else {
-                    //si ya existe el articulo, obtiene la información del artículo
-                    dataNewArticle = obj;
-                    idArticle = dataNewArticle.getDataObject("response").getDataList("data").getDataObject(0).getString("_id");
-                    //Aqui inicia temporal en lo que se modifica lo de Jose
-                    //Consulta la tabla de asociación entre articulos y búsquedas y si ya existe la relación, continua con el siguiente articulo 
-                    String[] propertiesName = {"article", "search"};
-                    String[] propertiesValues = {idArticle, idSearch};
-                    DataObject obj1 = getDataProperty(dsArtSearch, propertiesName, propertiesValues, null, null);
-                    rows = obj1.getDataObject("response").getInt("totalRows");
-                    //Reviso si ya existe esta asociacion de busqueda y articulo, salgo
-                    if (rows > 0) {
+                    //si ya existe el articulo y ya esta asociado a la busqueda, continua con el siguiente
+                    idArticle = existing;
+                    if (linked.contains(idArticle)) {
                         continue;
-                    } else {
-                        //Sino existe asociacion significa que es nuevo para la busqueda
-                        countNewArt++;
-                        if (ranking > 5) {
-                            countRecommended++;
-                        }
                     }
-                    //Aqui termina en lo que se modifica lo de Jose
-/*Remover esto cuando ya funione lo de Jose
-                     countNewArt++;
-                     if (ranking > 5) {
-                     countRecommended++;
-                     }*/
+                }
+                //Si no existe asociacion significa que es nuevo para la busqueda
+                countNewArt++;
+                if (ranking > 5) {
+                    countRecommended++;
                 }
                 //almacena la asociación entre una búsqueda y un artículo
                 DataObject newArtSearch = new DataObject();
@@ -420,13 +552,13 @@ public class Utils {
                 newArtSearch.put("article", idArticle);
                 newArtSearch.put("ranking", ranking);
                 newArtSearch.put("status", 1);
+                long write = System.nanoTime();
                 dsArtSearch.addObj(newArtSearch);
-                // if (ranking > 5) {
-                //     countRecommended++;
-                // }
-                // countNewArt++;
+                METRICS.record(Stage.WRITE, write);
+                linked.add(idArticle);
             }
             arrOutstanding = null;
+            index.flush();
             //asigna el número de artículos nuevos
             datObjSearch.put("notification", countNewArt);
             datObjSearch.put("recommended", countRecommended);
@@ -439,6 +571,159 @@ public class Utils {
             return countNewArt + "," + countRecommended;
         }
 
+        /**
+         * Obtiene el identificador numerico de un articulo de la respuesta de
+         * {@link ESearchImpl#getPublicationsInfo}.
+         *
+         * @param art Objeto JSON que define el art&iacute;culo
+         * @param property nombre de la propiedad con el identificador,
+         * {@literal pmid} o {@literal pmc}
+         * @return el identificador, o 0 si el art&iacute;culo no lo tiene o no
+         * es num&eacute;rico
+         */
+        private static int parseArticleId(JSONObject art, String property) {
+            String value = art.optString(property, "");
+            if (value.isEmpty()) {
+                return 0;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException nfe) {
+                return 0;
+            }
+        }
+
+        /**
+         * Consulta en la BD los art&iacute;culos cuyo identificador num&eacute;rico
+         * se encuentra en un conjunto, con una petici&oacute;n
+         * {@literal $in} por cada {@link #BATCH_SIZE} identificadores en lugar de
+         * una petici&oacute;n por art&iacute;culo.
+         *
+         * @param ds DataSource que define los art&iacute;culos en la BD de la
+         * aplicaci&oacute;n.
+         * @param property nombre de la columna con el identificador,
+         * {@literal pmid} o {@literal pmcid}
+         * @param ids identificadores a buscar; los valores 0 se ignoran
+         * @return los art&iacute;culos encontrados, por identificador
+         * @throws IOException si durante la ejecuci&oacute;n ocurre
+         * alg&uacute;n problema con la consulta a la BD
+         */
+        private static Map<Integer, DataObject> fetchArticlesById(SWBDataSource ds, String property, int[] ids)
+                throws IOException {
+            Map<Integer, DataObject> found = new HashMap<>();
+            DataList batch = new DataList();
+            for (int i = 0; i <= ids.length; i++) {
+                if (i < ids.length && ids[i] != 0) {
+                    batch.add(ids[i]);
+                }
+                if (batch.size() == BATCH_SIZE || (i == ids.length && !batch.isEmpty())) {
+                    DataObject query = new DataObject();
+                    DataObject data = new DataObject();
+                    DataObject in = new DataObject();
+                    in.put("$in", batch);
+                    data.put(property, in);
+                    query.put("data", data);
+                    Iterator<DataObject> it = getDataList(ds.fetch(query));
+                    while (it.hasNext()) {
+                        DataObject article = it.next();
+                        int id = article.getInt(property);
+                        if (id != 0 && !found.containsKey(id)) {
+                            found.put(id, article);
+                        }
+                    }
+                    batch = new DataList();
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Obtiene los identificadores de los art&iacute;culos que ya
+         * est&aacute;n asociados a una b&uacute;squeda, con una sola consulta a
+         * la tabla {@literal Art_Search}.
+         *
+         * @param dsArtSearch DataSource que define la asociaci&oacute;n entre
+         * art&iacute;culos y b&uacute;squedas
+         * @param idSearch identificador de la b&uacute;squeda
+         * @return el conjunto de identificadores de art&iacute;culos asociados
+         * @throws IOException si durante la ejecuci&oacute;n ocurre
+         * alg&uacute;n problema con la consulta a la BD
+         */
+        private static Set<String> fetchLinkedArticles(SWBDataSource dsArtSearch, String idSearch)
+                throws IOException {
+            Set<String> linked = new HashSet<>();
+            Iterator<DataObject> it = getDataList(getDataProperty(dsArtSearch, "search", idSearch, 0));
+            while (it.hasNext()) {
+                String article = it.next().getString("article");
+                if (article != null) {
+                    linked.add(article);
+                }
+            }
+            return linked;
+        }
+
+        /**
+         * Obtiene los art&iacute;culos que ya est&aacute;n asociados a una
+         * b&uacute;squeda, para que
+         * {@link ESearchImpl#getPublicationsInfo(String, String, int, int, int, int, KnownArticles)}
+         * no vuelva a descargarlos. Los identificadores de PubMed y PMC se
+         * resuelven con el &iacute;ndice de art&iacute;culos; un art&iacute;culo
+         * que no est&aacute; en el &iacute;ndice se considera desconocido.
+         *
+         * @param idSearch identificador de la b&uacute;squeda
+         * @return los art&iacute;culos conocidos para la b&uacute;squeda
+         * @throws IOException si durante la ejecuci&oacute;n ocurre
+         * alg&uacute;n problema con la consulta a la BD
+         */
+        public static KnownArticles getKnownArticles(String idSearch) throws IOException {
+            final Set<String> linked = fetchLinkedArticles(NanoSources.get(Source.ART_SEARCH), idSearch);
+            final ArticleIndex index = ArticleIndex.getDefault();
+            return (source, id) -> {
+                String article = source == Article.Source.PMC ? index.find(0, id) : index.find(id, 0);
+                return article != null && linked.contains(article);
+            };
+        }
+
+        /**
+         * Asegura que el &iacute;ndice de art&iacute;culos contenga los
+         * art&iacute;culos de un lote que ya existen en la BD. Los
+         * identificadores que no est&aacute;n en el &iacute;ndice se consultan
+         * en la BD por lotes y los art&iacute;culos encontrados se agregan al
+         * &iacute;ndice.
+         *
+         * @param ds DataSource que define los art&iacute;culos en la BD de la
+         * aplicaci&oacute;n.
+         * @param index &iacute;ndice de art&iacute;culos por {@literal pmid} y
+         * {@literal pmcid}
+         * @param pmids identificadores en pubmed de los art&iacute;culos del
+         * lote, 0 si no lo tienen
+         * @param pmcs identificadores en pmc de los art&iacute;culos del lote,
+         * 0 si no lo tienen
+         * @throws IOException si durante la ejecuci&oacute;n ocurre
+         * alg&uacute;n problema con la consulta a la BD
+         */
+        private static void resolveArticles(SWBDataSource ds, ArticleIndex index, int[] pmids, int[] pmcs)
+                throws IOException {
+            int[] missingPmids = new int[pmids.length];
+            int[] missingPmcs = new int[pmcs.length];
+            boolean missing = false;
+            for (int i = 0; i < pmids.length; i++) {
+                if (index.find(pmids[i], pmcs[i]) == null) {
+                    missingPmids[i] = pmids[i];
+                    missingPmcs[i] = pmcs[i];
+                    missing = true;
+                }
+            }
+            if (missing) {
+                for (DataObject article : fetchArticlesById(ds, "pmcid", missingPmcs).values()) {
+                    index.put(article.getInt("pmid"), article.getInt("pmcid"), article.getString("_id"));
+                }
+                for (DataObject article : fetchArticlesById(ds, "pmid", missingPmids).values()) {
+                    index.put(article.getInt("pmid"), article.getInt("pmcid"), article.getString("_id"));
+                }
+            }
+        }
+
         /**
          * Copia las relaciones de un esquema de busqueda existente a uno nuevo,
          * colocando todos los articulos como nuevos.
@@ -449,10 +734,9 @@ public class Utils {
          * separados por una coma
          */
         public static String saveLocalNewArticles(String newSearchId, DataObject localSearch, int maxMonth) {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource dsSearch = engine.getDataSource("Search");
-            SWBDataSource dsArtSearch = engine.getDataSource("Art_Search");
-            SWBDataSource dsArticle = engine.getDataSource("Article");
+            SWBDataSource dsSearch = NanoSources.get(Source.SEARCH);
+            SWBDataSource dsArtSearch = NanoSources.get(Source.ART_SEARCH);
+            SWBDataSource dsArticle = NanoSources.get(Source.ARTICLE);
             int countNewArt = 0, countRecommended = 0;
             try {
                 DataObject obj = getDataProperty(dsArtSearch, "search", localSearch.getString("_id"), 0);
@@ -508,80 +792,63 @@ public class Utils {
          * hilo se interrumpe, ya sea antes o durante la actividad.
          */
         public static void saveUpdateArticles(JSONObject publications, String idSearch) throws IOException, InterruptedException {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource ds = engine.getDataSource("Article");
-            SWBDataSource dsSearch = engine.getDataSource("Search");
-            SWBDataSource dsArtSearch = engine.getDataSource("Art_Search");
+            SWBDataSource ds = NanoSources.get(Source.ARTICLE);
+            SWBDataSource dsSearch = NanoSources.get(Source.SEARCH);
+            SWBDataSource dsArtSearch = NanoSources.get(Source.ART_SEARCH);
             DataObject datObjSearch = dsSearch.fetchObjById(idSearch);
 
             JSONArray arrOutstanding = publications.getJSONArray("outstanding");
             int countNewArt = (datObjSearch.get("notification") != null && datObjSearch.getInt("notification") > 0) ? datObjSearch.getInt("notification") : 0;
             int countRecommended = (datObjSearch.get("recommeded") != null && datObjSearch.getInt("recommeded") > 0) ? datObjSearch.getInt("recommeded") : 0;
-            for (int i = 0; i < arrOutstanding.length(); i++) {//
+            int length = arrOutstanding.length();
+            int[] pmids = new int[length];
+            int[] pmcs = new int[length];
+            for (int i = 0; i < length; i++) {
                 JSONObject art = arrOutstanding.getJSONObject(i);
-
-                int pmid = 0, pmc = 0;
-                if (art.has("pmid")) {
-                    pmid = Integer.parseInt(art.getString("pmid"));
-                }
-                if (art.has("pmc")) {
-                    pmc = Integer.parseInt(art.getString("pmc"));
-                }
-                int ranking = art.has("ranking") ? art.getInt("ranking") : null;
-                DataObject obj = new DataObject();
-                DataObject dataNewArticle = new DataObject();
+                pmids[i] = parseArticleId(art, "pmid");
+                pmcs[i] = parseArticleId(art, "pmc");
+            }
+            //Consulta en lotes los articulos existentes y las asociaciones de la busqueda
+            ArticleIndex index = ArticleIndex.getDefault();
+            resolveArticles(ds, index, pmids, pmcs);
+            Set<String> linked = fetchLinkedArticles(dsArtSearch, idSearch);
+            //Verifica la cantidad de articulos aceptados
+            DataObject objSearch = Utils.ENG.getDataProperty(dsArtSearch, new String[]{"search"}, new String[]{idSearch}, new String[]{"status"}, new int[]{2});//status
+            boolean isValidArtsAccept = objSearch.getDataObject("response").getInt("totalRows") > 2;
+
+            for (int i = 0; i < length; i++) {//
+                JSONObject art = arrOutstanding.getJSONObject(i);
+                int pmid = pmids[i], pmc = pmcs[i];
+                int ranking = art.optInt("ranking", 0);
                 String idArticle = null;
                 String abstractTxt = "";
                 int status = 0;
-                int rows = 0;
-                //Verifica la cantidad de articulos aceptados
-                DataObject objSearch = Utils.ENG.getDataProperty(dsArtSearch, new String[]{"search"}, new String[]{idSearch}, new String[]{"status"}, new int[]{2});//status
-                boolean isValidArtsAccept = objSearch.getDataObject("response").getInt("totalRows") > 2;
-
-                //Hace una petición a la BD a traves de la propiedad "pmcid" del artículo
-                if (pmc != 0) {
-                    obj = getDataProperty(ds, "pmcid", null, pmc);
-                    rows = obj.getDataObject("response").getInt("totalRows");
-                }
-                //Sino trae información la consulta, hace una segunda petición a la BD a traves
-                // de la propiedad "pmid"    
-                if (rows == 0 && pmid != 0) {
-                    obj = getDataProperty(ds, "pmid", null, pmid);
-                    rows = obj.getDataObject("response").getInt("totalRows");
-                }
+                //Busca el articulo primero por su "pmcid" y despues por su "pmid"
+                String existing = index.find(pmid, pmc);
 
-                if (rows == 0) {
+                if (existing == null) {
                     //Si el articulo no existe, guardar el objeto 
-                    dataNewArticle = setPropArticle(ds, art, pmid, pmc);
-                    idArticle = dataNewArticle.getDataObject("response").getDataObject("data").getString("_id");
-                    abstractTxt = dataNewArticle.getDataObject("response").getDataObject("data").getString("abstract");
+                    DataObject dataNewArticle = setPropArticle(ds, art, pmid, pmc);
+                    DataObject saved = dataNewArticle.getDataObject("response").getDataObject("data");
+                    idArticle = saved.getString("_id");
+                    abstractTxt = saved.getString("abstract");
+                    index.put(pmid, pmc, idArticle);
                     status = 1;
-                    countNewArt++;
-                    if (ranking > 5 && !isValidArtsAccept) {
-                        countRecommended++;
-                    }
                 } else {
-                    //si ya existe el articulo, obtiene la información del artículo
-                    dataNewArticle = obj;
-                    idArticle = dataNewArticle.getDataObject("response").getDataList("data").getDataObject(0).getString("_id");
-                    abstractTxt = dataNewArticle.getDataObject("response").getDataList("data").getDataObject(0).getString("abstract");
-
-                    //Consulta la tabla de asociación entre articulos y búsquedas y si ya existe la relación, continua con el siguiente articulo 
-                    String[] propertiesName = {"article", "search"};
-                    String[] propertiesValues = {idArticle, idSearch};
-                    DataObject obj1 = getDataProperty(dsArtSearch, propertiesName, propertiesValues, null, null);
-                    rows = obj1.getDataObject("response").getInt("totalRows");
-                    //Reviso si ya existe esta asociacion de busqueda y articulo, salgo
-                    if (rows > 0) {
+                    //si ya existe el articulo y ya esta asociado a la busqueda, continua con el siguiente
+                    idArticle = existing;
+                    if (linked.contains(idArticle)) {
                         continue;
-                    } else {
-                        //Sino existe asociacion significa que es nuevo para la busqueda
-                        countNewArt++;
-                        if (ranking > 5 && !isValidArtsAccept) {
-                            countRecommended++;
-                        }
                     }
-
+                    if (isValidArtsAccept && ranking < 10) {
+                        DataObject article = ds.fetchObjById(idArticle);
+                        abstractTxt = article != null ? article.getString("abstract") : "";
+                    }
+                }
+                //Si no existe asociacion significa que es nuevo para la busqueda
+                countNewArt++;
+                if (ranking > 5 && !isValidArtsAccept) {
+                    countRecommended++;
                 }
                 art = null;
 
@@ -592,13 +859,15 @@ public class Utils {
                 newArtSearch.put("ranking", ranking);
                 newArtSearch.put("status", status);
                 DataObject addArtSearch = dsArtSearch.addObj(newArtSearch);
+                linked.add(idArticle);
 
                 if (isValidArtsAccept && ranking < 10) {
-                    countRecommended = countRecommended + Analizer.getUpdateArticleRanking(engine, idSearch, abstractTxt, addArtSearch.getDataObject("response").getDataObject("data").getString("_id"));
+                    countRecommended = countRecommended + Analizer.getUpdateArticleRanking(idSearch, abstractTxt, addArtSearch.getDataObject("response").getDataObject("data").getString("_id"));
                 }
 
             }
             arrOutstanding = null;
+            index.flush();
             //asigna el número de artículos nuevos y recomendados (Search)
             datObjSearch.put("notification", countNewArt);
             datObjSearch.put("recommended", countRecommended);
@@ -632,6 +901,7 @@ public class Utils {
          */
         private static DataObject setPropArticle(SWBDataSource ds, JSONObject art, int pmid, int pmc)
                 throws IOException, InterruptedException {
+            long start = System.nanoTime();
             DataObject newArticle = new DataObject();
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
 
@@ -642,14 +912,15 @@ public class Utils {
                 newArticle.put("pmcid", pmc);
             }
             if (art.has("articleTitle")) {
-                newArticle.put("title", TEXT.parseTextJson(TEXT.parseHTML((art.getString("articleTitle")))));
-                newArticle.put("titleSort", TEXT.parseTextJson(TEXT.parseHTML((art.getString("articleTitle")))).toLowerCase());
+                String title = TEXT.parseHTMLJson(art.getString("articleTitle"));
+                newArticle.put("title", title);
+                newArticle.put("titleSort", title.toLowerCase());
             }
             if (art.has("url")) {
                 newArticle.put("link", art.getString("url"));
             }
             if (art.has("reference")) {
-                newArticle.put("reference", TEXT.parseTextJson(TEXT.parseHTML((art.getString("reference")))));
+                newArticle.put("reference", TEXT.parseHTMLJson(art.getString("reference")));
             }
             if (art.has("author")) {
                 newArticle.put("autor", art.getString("author"));
@@ -674,10 +945,10 @@ public class Utils {
                 JSONObject abstTxt = abstractTxt.getJSONObject(j);
                 if (!abstTxt.getString("label").equalsIgnoreCase("Unlabeled")) {
                     sbf.append("<strong>");
-                    sbf.append(TEXT.parseTextJson(TEXT.parseHTML(abstTxt.getString("label"))));
+                    TEXT.parseHTMLJson(abstTxt.getString("label"), sbf);
                     sbf.append("</strong><br>");
                 }
-                sbf.append(TEXT.parseTextJson(TEXT.parseHTML(abstTxt.getString("text"))));
+                TEXT.parseHTMLJson(abstTxt.getString("text"), sbf);
                 if ((j + 1) != abstractTxt.length()) {
                     sbf.append("<br>");
                 }
@@ -696,7 +967,10 @@ public class Utils {
             }
             String date = sdf.format(new Date());
             newArticle.put("lastUpdate", date);
+            METRICS.record(Stage.CLEANUP, start);
+            long write = System.nanoTime();
             DataObject dataNewArticle = ds.addObj(newArticle);
+            METRICS.record(Stage.WRITE, write);
             return dataNewArticle;
         }
 
@@ -716,9 +990,8 @@ public class Utils {
          * hilo se interrumpe, ya sea antes o durante la actividad.
          */
         public static void setNewDisease(JSONArray arrayDiseases, String idGene) throws IOException, InterruptedException {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource ds = engine.getDataSource("CancerType");
-            SWBDataSource dsGeneCancer = engine.getDataSource("Gene_Cancer");
+            SWBDataSource ds = NanoSources.get(Source.CANCER_TYPE);
+            SWBDataSource dsGeneCancer = NanoSources.get(Source.GENE_CANCER);
 
             for (int i = 0; i < arrayDiseases.length(); i++) {
                 JSONObject obj = arrayDiseases.getJSONObject(i);
@@ -726,10 +999,10 @@ public class Utils {
                 String definition = "";
                 String conceptId = "";
                 if (obj.has("title")) {
-                    title = TEXT.parseTextJson(TEXT.parseHTML(obj.getString("title")));
+                    title = TEXT.parseHTMLJson(obj.getString("title"));
                 }
                 if (obj.has("definition")) {
-                    definition = TEXT.parseTextJson(TEXT.parseHTML(obj.getString("definition")));
+                    definition = TEXT.parseHTMLJson(obj.getString("definition"));
                 }
                 if (obj.has("conceptId")) {
                     conceptId = obj.getString("conceptId");
@@ -782,9 +1055,8 @@ public class Utils {
          * hilo se interrumpe, ya sea antes o durante la actividad.
          */
         public static void setUpdateDisease(JSONArray arrayDiseases, String idGene) throws IOException, InterruptedException {
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource ds = engine.getDataSource("CancerType");
-            SWBDataSource dsGeneCancer = engine.getDataSource("Gene_Cancer");
+            SWBDataSource ds = NanoSources.get(Source.CANCER_TYPE);
+            SWBDataSource dsGeneCancer = NanoSources.get(Source.GENE_CANCER);
 
             for (int i = 0; i < arrayDiseases.length(); i++) {
                 JSONObject obj = arrayDiseases.getJSONObject(i);
@@ -792,10 +1064,10 @@ public class Utils {
                 String definition = "";
                 String conceptId = "";
                 if (obj.has("title")) {
-                    title = TEXT.parseTextJson(TEXT.parseHTML(obj.getString("title")));
+                    title = TEXT.parseHTMLJson(obj.getString("title"));
                 }
                 if (obj.has("definition")) {
-                    definition = TEXT.parseTextJson(TEXT.parseHTML(obj.getString("definition")));
+                    definition = TEXT.parseHTMLJson(obj.getString("definition"));
                 }
                 if (obj.has("conceptId")) {
                     conceptId = obj.getString("conceptId");
@@ -890,6 +1162,24 @@ public class Utils {
                 String altMolecular, String id, String geneId, String alterationId)
                 throws NoDataException, UseHistoryException, ProtocolException, IOException, InterruptedException {
             
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                JSONObject result = searchPublication(artYearsOld, gene, altMolecular, id, geneId, alterationId);
+                failed = result.has("error");
+                return result;
+            } finally {
+                METRICS.record(Stage.PUBLICATION, start, failed);
+            }
+        }
+
+        /**
+         * Realiza la busqueda de {@link #getPublication(int, String, String, String, String, String)}.
+         */
+        private static JSONObject searchPublication(int artYearsOld, String gene,
+                String altMolecular, String id, String geneId, String alterationId)
+                throws NoDataException, UseHistoryException, ProtocolException, IOException, InterruptedException {
+            
             ESearchImpl esearch = new ESearchImpl();
             JSONObject obj = new JSONObject();
             int monthInc = 6;
@@ -897,8 +1187,7 @@ public class Utils {
             int tmpNotification = 0;
             int tmpRecommended = 0;
 //            System.out.println("artYearsOld: " + artYearsOld);
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource ds = engine.getDataSource("Search");
+            SWBDataSource ds = NanoSources.get(Source.SEARCH);
             DataObject existSearch = getDataProperty(ds, new String[]{"gene", "altMolecular"}, new String[]{geneId, alterationId}, null, null);
             //System.out.println(existSearch);
             DataList list = existSearch.getDataObject("response").getDataList("data");
@@ -950,25 +1239,30 @@ public class Utils {
                 }
             }
             if (getExternalPblications) {
-                for (int m = init; m < months; m += monthInc) {
-                    JSONObject dataArt = esearch.getPublicationsInfo(gene, altMolecular, 0, 0, m, m + monthInc);
-                    if (dataArt != null) {
-
-                        if (dataArt.has("error")) {
-                            engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-                            ds.removeObjById(id);
-                            obj = dataArt;
-                        } else if (dataArt.has("outstanding")) {
-                            String res = saveNewArticles(dataArt, id, tmpNotification, tmpRecommended);
-                            String[] temp = res.split(",");
-                            if (temp.length == 2) {
-                                tmpNotification = Integer.parseInt(temp[0]);
-                                tmpRecommended = Integer.parseInt(temp[1]);
+                final KnownArticles known = getKnownArticles(id);
+                final JSONObject[] error = new JSONObject[1];
+                final int[] counts = {tmpNotification, tmpRecommended};
+                esearch.getPublicationsInfo(gene, altMolecular, init, months, monthInc, known,
+                        (initMonth, finalMonth, dataArt) -> {
+                            if (dataArt.has("error")) {
+                                ds.removeObjById(id);
+                                error[0] = dataArt;
+                                return false;
+                            } else if (dataArt.has("outstanding")) {
+                                String res = saveNewArticles(dataArt, id, counts[0], counts[1]);
+                                String[] temp = res.split(",");
+                                if (temp.length == 2) {
+                                    counts[0] = Integer.parseInt(temp[0]);
+                                    counts[1] = Integer.parseInt(temp[1]);
+                                }
                             }
-                        }
-                        dataArt = null;
-                    }
+                            return true;
+                        });
+                if (error[0] != null) {
+                    obj = error[0];
                 }
+                tmpNotification = counts[0];
+                tmpRecommended = counts[1];
             }
             obj.put("recommended", tmpRecommended);
             obj.put("notification", tmpNotification);
@@ -989,8 +1283,7 @@ public class Utils {
          */
         public static boolean isValidAltMol(String idGen, String nameAltMol) throws IOException {
             boolean isValid = false;
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource dsAlterationMolecular = engine.getDataSource("AlterationMolecular");
+            SWBDataSource dsAlterationMolecular = NanoSources.get(Source.ALTERATION_MOLECULAR);
             String[] propertiesName = {"gene", "name"};
             String[] propertiesValues = {idGen, nameAltMol};
             DataObject obj = getDataProperty(dsAlterationMolecular, propertiesName, propertiesValues, null, null);
@@ -1014,8 +1307,7 @@ public class Utils {
          */
         public static boolean isValidCancerType(String idGen, String nameDisease) throws IOException {
             boolean isValid = true;
-            SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-            SWBDataSource dsGeneCancerType = engine.getDataSource("Gene_Cancer");
+            SWBDataSource dsGeneCancerType = NanoSources.get(Source.GENE_CANCER);
             String idCancerType = getIdProperty("CancerType", "name", nameDisease);
             if (idCancerType != null) {
                 String[] propertiesName = {"gene", "cancer"};
@@ -1035,10 +1327,9 @@ public class Utils {
          */
         public static void removeUserData(String userId) {
             try {
-                SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
                 SWBDataSource dataSource;
                 DataObject obj;
-                dataSource = engine.getDataSource("Search");
+                dataSource = NanoSources.get(Source.SEARCH);
                 obj = getDataProperty(dataSource, "user", userId, 0);
                 if (obj != null) {
                     int rows = obj.getDataObject("response").getInt("totalRows");
@@ -1065,10 +1356,9 @@ public class Utils {
          */
         public static int removeSchemeData(String schemeId) {
             try {
-                SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
                 SWBDataSource dataSource;
                 DataObject obj;
-                dataSource = engine.getDataSource("Art_Search");
+                dataSource = NanoSources.get(Source.ART_SEARCH);
                 obj = getDataProperty(dataSource, "search", schemeId, 0);
                 if (obj != null) {
                     int rows = obj.getDataObject("response").getInt("totalRows");
@@ -1081,7 +1371,7 @@ public class Utils {
 
                     }
                 }
-                dataSource = engine.getDataSource("Report");
+                dataSource = NanoSources.get(Source.REPORT);
                 obj = getDataProperty(dataSource, "search", schemeId, 0);
                 if (obj != null) {
                     int rows = obj.getDataObject("response").getInt("totalRows");
@@ -1094,7 +1384,7 @@ public class Utils {
                     }
                 }
 
-                dataSource = engine.getDataSource("Analize");
+                dataSource = NanoSources.get(Source.ANALIZE);
                 obj = getDataProperty(dataSource, "search", schemeId, 0);
                 if (obj != null) {
                     int rows = obj.getDataObject("response").getInt("totalRows");
@@ -1120,8 +1410,7 @@ public class Utils {
          */
         public static void removeImages(String imageId) {
             try {
-                SWBScriptEngine engine = DataMgr.getUserScriptEngine("/public/NanoSources.js", null, false);
-                SWBDataSource dataSource = engine.getDataSource("Images");
+                SWBDataSource dataSource = NanoSources.get(Source.IMAGES);
                 DataObject obj = getDataProperty(dataSource, "_id", imageId, 0);
                 if (obj != null) {
                     int rows = obj.getDataObject("response").getInt("totalRows");
@@ -1154,7 +1443,7 @@ public class Utils {
         public static void testSaveUpdateArticles(String geneSymbol, String molAlteration, String searchId) throws NoDataException, UseHistoryException, IOException, InterruptedException {
             ESearchImpl esearch = new ESearchImpl();
             System.out.println("----------------------------------------------------------------------------------------------");
-            JSONObject dataArt = esearch.getPublicationsInfo(geneSymbol, molAlteration, 0, 0, 0, 9);
+            JSONObject dataArt = esearch.getPublicationsInfo(geneSymbol, molAlteration, 0, 0, 0, 9, getKnownArticles(searchId));
             if (dataArt.has("outstanding")) {
                 saveUpdateArticles(dataArt, searchId);
             }
@@ -1193,32 +1482,147 @@ public class Utils {
 
             String ret = null;
             if (txt != null) {
-                HTMLParser parser = new HTMLParser(new StringReader(txt));
-                ret = parser.getText();
+                StringBuilder out = new StringBuilder(txt.length());
+                TEXT.parseHTML(txt, out);
+                ret = out.toString();
             }
             return ret;
         }
 
+        /**
+         * Extrae todo el texto de un documento HTML y lo agrega al destino
+         * indicado. El an&aacute;lisis se realiza en el hilo actual, sin crear
+         * hilos ni flujos intermedios.
+         *
+         * @param txt el contenido del documento HTML; si es {@literal null} no
+         * se agrega nada
+         * @param out el destino del texto extra&iacute;do
+         * @throws java.io.IOException si ocurre cualquier error de E/S al
+         * escribir en el destino.
+         */
+        public static void parseHTML(String txt, Appendable out) throws IOException {
+
+            if (txt != null) {
+                new HTMLParser(new StringReader(txt)).getText(out);
+            }
+        }
+
+        /**
+         * Caracteres que se consideran comillas dobles y se reemplazan por
+         * {@literal &quot;}. Todos, excepto el primero, son posteriores a
+         * {@literal \u201c}.
+         */
+        private static final String QUOTES = "\"\u201c\u201d\u201f\u275d\u275e\u301d\u301e\uff02";
+
+        /** Representaci&oacute;n en HTML de las comillas dobles */
+        private static final String QUOTE_ENTITY = "&quot;";
+
+        /**
+         * Indica si un caracter se considera comilla doble.
+         *
+         * @param c el caracter
+         * @return {@literal true} si el caracter debe reemplazarse por
+         * {@literal &quot;}
+         */
+        private static boolean isQuote(char c) {
+            return c == '"' || (c >= '\u201c' && QUOTES.indexOf(c) > 0);
+        }
+
         /**
          * Parsea un texto, cambiando las comillas dobles por el c&oacute;digo
-         * equivalente en HTML.
+         * equivalente en HTML. El texto se recorre una sola vez y, si no
+         * contiene comillas, se devuelve la misma cadena.
          *
          * @param txt Cadena inicial que contiene comillas dobles
          * @return Cadena modificada con los codigos HTML correspondientes a las
          * dobles comillas.
          */
-        private static String parseTextJson(String txt) {
-            txt = txt.replaceAll("\"", "&quot;");
-            txt = txt.replaceAll('\u0022' + "", "&quot;");
-            txt = txt.replaceAll('\u201c' + "", "&quot;");
-            txt = txt.replaceAll('\u201d' + "", "&quot;");
-            txt = txt.replaceAll('\u201f' + "", "&quot;");
-            txt = txt.replaceAll('\u275d' + "", "&quot;");
-            txt = txt.replaceAll('\u275e' + "", "&quot;");
-            txt = txt.replaceAll('\u301d' + "", "&quot;");
-            txt = txt.replaceAll('\u301e' + "", "&quot;");
-            txt = txt.replaceAll('\uff02' + "", "&quot;");
-            return txt;
+        public static String parseTextJson(String txt) {
+
+            int length = txt.length();
+            int first = 0;
+            while (first < length && !TEXT.isQuote(txt.charAt(first))) {
+                first++;
+            }
+            if (first == length) {
+                return txt;
+            }
+            StringBuilder out = new StringBuilder(length + 16);
+            out.append(txt, 0, first);
+            TEXT.appendTextJson(txt, first, length, out);
+            return out.toString();
+        }
+
+        /**
+         * Agrega un fragmento de texto a un destino, cambiando las comillas
+         * dobles por el c&oacute;digo equivalente en HTML.
+         *
+         * @param txt el texto
+         * @param start posici&oacute;n inicial del fragmento
+         * @param end posici&oacute;n siguiente al final del fragmento
+         * @param out el destino del texto
+         */
+        private static void appendTextJson(CharSequence txt, int start, int end, StringBuilder out) {
+
+            int from = start;
+            for (int i = start; i < end; i++) {
+                if (TEXT.isQuote(txt.charAt(i))) {
+                    out.append(txt, from, i).append(QUOTE_ENTITY);
+                    from = i + 1;
+                }
+            }
+            out.append(txt, from, end);
+        }
+
+        /**
+         * Extrae el texto de un documento HTML y lo agrega a un destino,
+         * cambiando las comillas dobles por el c&oacute;digo equivalente en
+         * HTML a medida que se extrae. Equivale a
+         * {@code out.append(parseTextJson(parseHTML(txt)))}, recorriendo el
+         * texto una sola vez.
+         *
+         * @param txt el contenido del documento HTML; si es {@literal null} no
+         * se agrega nada
+         * @param out el destino del texto
+         * @throws java.io.IOException si ocurre cualquier error de E/S.
+         */
+        static void parseHTMLJson(String txt, StringBuilder out) throws IOException {
+            TEXT.parseHTML(txt, new Appendable() {
+                @Override
+                public Appendable append(CharSequence csq) {
+                    return this.append(csq, 0, csq.length());
+                }
+
+                @Override
+                public Appendable append(CharSequence csq, int start, int end) {
+                    TEXT.appendTextJson(csq, start, end, out);
+                    return this;
+                }
+
+                @Override
+                public Appendable append(char c) {
+                    if (TEXT.isQuote(c)) {
+                        out.append(QUOTE_ENTITY);
+                    } else {
+                        out.append(c);
+                    }
+                    return this;
+                }
+            });
+        }
+
+        /**
+         * Extrae el texto de un documento HTML, cambiando las comillas dobles
+         * por el c&oacute;digo equivalente en HTML.
+         *
+         * @param txt el contenido del documento HTML
+         * @return el texto del documento con las comillas reemplazadas
+         * @throws java.io.IOException si ocurre cualquier error de E/S.
+         */
+        static String parseHTMLJson(String txt) throws IOException {
+            StringBuilder out = new StringBuilder(txt.length() + 16);
+            TEXT.parseHTMLJson(txt, out);
+            return out.toString();
         }
     }
 
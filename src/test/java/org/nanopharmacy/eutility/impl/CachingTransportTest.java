@@ -0,0 +1,144 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Pruebas de la forma canonica de las peticiones de {@link CachingTransport}.
+ */
+public class CachingTransportTest {
+
+    private static final String BASE = "https://eutils.ncbi.nlm.nih.gov/entrez/eutils/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Respuestas del transporte simulado, por URL */
+    private final Map<String, String> responses = new HashMap<>();
+
+    /** Numero de peticiones que llegaron al transporte simulado */
+    private int requests;
+
+    private CachingTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+
+        EntrezTransport delegate = new EntrezTransport() {
+            @Override
+            public <T> T execute(String path, int readTimeout, ResponseHandler<T> handler) throws IOException {
+                CachingTransportTest.this.requests++;
+                String body = CachingTransportTest.this.responses.get(path);
+                if (body == null) {
+                    throw new IOException("Sin respuesta para: " + path);
+                }
+                return handler.handle(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+            }
+        };
+        this.transport = new CachingTransport(delegate, this.folder.getRoot().toPath());
+    }
+
+    private String canonical(String path) {
+        CachingTransport.Request request = this.transport.canonicalize(path);
+        return request == null ? null : request.canonical;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void parameterOrderDoesNotMatter() {
+
+        String a = this.canonical(BASE + "esearch.fcgi?db=pubmed&term=BRAF&retmax=20&usehistory=y");
+        String b = this.canonical(BASE + "esearch.fcgi?usehistory=y&retmax=20&term=BRAF&db=pubmed");
+        String c = this.canonical(BASE + "esearch.fcgi?RetMax=20&DB=pubmed&term=BRAF&usehistory=y&");
+        assertNotNull(a);
+        assertEquals(a, b);
+        assertEquals(a, c);
+        assertTrue(a.startsWith("esearch?"));
+    }
+
+    @Test
+    public void encodingDoesNotMatter() {
+
+        String plus = this.canonical(BASE + "esearch.fcgi?db=gene&term=BRAF[sym]+AND+human[orgn]");
+        String space = this.canonical(BASE + "esearch.fcgi?db=gene&term=BRAF%5Bsym%5D%20AND%20human%5Borgn%5D");
+        String lower = this.canonical(BASE + "esearch.fcgi?db=gene&term=BRAF%5bsym%5d+AND+human%5borgn%5d");
+        assertEquals(plus, space);
+        assertEquals(plus, lower);
+        assertEquals(this.canonical(BASE + "efetch.fcgi?db=pubmed&id=1,2,3"),
+                this.canonical(BASE + "efetch.fcgi?db=pubmed&id=1%2C2%2c3"));
+        // un valor mal codificado se conserva tal cual
+        assertNotNull(this.canonical(BASE + "esearch.fcgi?db=gene&term=100%"));
+    }
+
+    @Test
+    public void identityIsIgnoredButValuesAreNot() {
+
+        String plain = this.canonical(BASE + "esummary.fcgi?db=gene&id=673");
+        assertEquals(plain, this.canonical(BASE + "esummary.fcgi?db=gene&id=673&tool=NanoPharmacy&email=a%40b.mx&api_key=XYZ"));
+        assertNotEquals(plain, this.canonical(BASE + "esummary.fcgi?db=gene&id=674"));
+        assertNotEquals(plain, this.canonical(BASE + "esummary.fcgi?db=medgen&id=673"));
+        assertNotEquals(plain, this.canonical(BASE + "esearch.fcgi?db=gene&id=673"));
+    }
+
+    @Test
+    public void unsafeOrMissingDbIsNotCached() {
+
+        assertNull(this.canonical(BASE + "esearch.fcgi?term=BRAF"));
+        assertNull(this.canonical(BASE + "esearch.fcgi?db=&term=BRAF"));
+        assertNull(this.canonical(BASE + "esearch.fcgi?db=../etc&term=BRAF"));
+        assertNull(this.canonical(BASE + "esearch.fcgi?db=..%2Fetc&term=BRAF"));
+        assertNull(this.canonical(BASE + "esearch.fcgi?db=a%5Cb&term=BRAF"));
+    }
+
+    @Test
+    public void webEnvIsReplacedByItsSearch() throws IOException {
+
+        String fetch = BASE + "efetch.fcgi?db=pubmed&query_key=1&retstart=0&retmax=500&WebEnv=";
+        assertNull(this.canonical(fetch + "MCID_A"));
+
+        String search = BASE + "esearch.fcgi?db=pubmed&term=BRAF&usehistory=y";
+        this.responses.put(search, "<?xml version=\"1.0\"?>\n<eSearchResult><Count>2</Count><QueryKey>1</QueryKey>"
+                + "<WebEnv>MCID_A</WebEnv></eSearchResult>\n");
+        assertTrue(read(search, this.transport).contains("MCID_A"));
+        String first = this.canonical(fetch + "MCID_A");
+        assertNotNull(first);
+        assertFalse(first.contains("MCID_A"));
+
+        // la misma busqueda con los parametros en otro orden se atiende desde disco
+        int before = this.requests;
+        String reordered = BASE + "esearch.fcgi?usehistory=y&term=BRAF&db=pubmed&tool=x";
+        assertTrue(read(reordered, this.transport).contains("MCID_A"));
+        assertEquals(before, this.requests);
+        // el WebEnv codificado se reconoce igual
+        assertEquals(first, this.canonical(fetch + "MCID%5FA"));
+        assertNotEquals(first, this.canonical(fetch.replace("retstart=0", "retstart=500") + "MCID_A"));
+    }
+
+    private static String read(String path, EntrezTransport transport) throws IOException {
+        return transport.execute(path, 1000, CachingTransportTest::read);
+    }
+}
@@ -0,0 +1,57 @@
+package org.nanopharmacy.eutility.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Pruebas de la lectura de {@link HgncDictionary} y del archivo de simbolos incluido en la aplicacion.
+ */
+public class HgncDictionaryTest {
+
+    private static HgncDictionary load(String content) throws IOException {
+        return HgncDictionary.load(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void bundledSymbolsAreLoaded() {
+
+        HgncDictionary dictionary = HgncDictionary.getDefault();
+        assertTrue(dictionary.size() > 40000);
+        assertTrue(dictionary.contains("BRAF"));
+        assertTrue(dictionary.contains("sf3b1"));
+        // alias y simbolo previo
+        assertTrue(dictionary.contains("HER2"));
+        assertFalse(dictionary.contains("NOTAGENE123"));
+        assertFalse(dictionary.contains("Simbolos"));
+    }
+
+    @Test
+    public void completeSetColumnsAndStatus() throws IOException {
+
+        HgncDictionary dictionary = load("hgnc_id\tsymbol\tname\tstatus\talias_symbol\tprev_symbol\n"
+                + "HGNC:1097\tBRAF\tB-Raf\tApproved\tBRAF1|\"RAFB1\"\t\n"
+                + "HGNC:3430\tERBB2\terb-b2\tApproved\tHER-2|NEU\tNGL\n"
+                + "HGNC:9999\tOLD1\twithdrawn\tEntry Withdrawn\tOLDX\t\n");
+        assertEquals(7, dictionary.size());
+        assertTrue(dictionary.contains("braf1"));
+        assertTrue(dictionary.contains("RAFB1"));
+        assertTrue(dictionary.contains("NGL"));
+        assertFalse(dictionary.contains("OLD1"));
+        assertFalse(dictionary.contains("B-Raf"));
+    }
+
+    @Test
+    public void headerlessFileWithComments() throws IOException {
+
+        HgncDictionary dictionary = load("# comentario con symbol\r\n#\nBRAF\r\nTP53|P53\n\nKRAS\n");
+        assertEquals(4, dictionary.size());
+        assertTrue(dictionary.contains("p53"));
+        assertFalse(dictionary.contains("#"));
+        assertFalse(dictionary.contains("comentario"));
+    }
+}
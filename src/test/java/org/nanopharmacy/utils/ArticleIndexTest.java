@@ -0,0 +1,141 @@
+package org.nanopharmacy.utils;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Pruebas de {@link ArticleIndex} y de su archivo.
+ */
+public class ArticleIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findPrefersPmcAndKeepsFirstId() {
+
+        ArticleIndex index = new ArticleIndex(null);
+        index.put(100, 0, "Article:1");
+        index.put(0, 200, "Article:2");
+        index.put(100, 200, "Article:3");
+        assertEquals("Article:1", index.find(100, 0));
+        assertEquals("Article:2", index.find(100, 200));
+        assertEquals("Article:2", index.find(0, 200));
+        assertEquals("Article:1", index.find(100, 999));
+        assertNull(index.find(101, 201));
+        assertNull(index.find(0, 0));
+        index.put(0, 0, "Article:4");
+        index.put(5, 5, null);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void manyEntriesSurviveResizeAndReload() throws IOException {
+
+        File file = new File(this.folder.getRoot(), "index.bin");
+        ArticleIndex index = new ArticleIndex(file);
+        // suficientes llaves para varias duplicaciones de la tabla inicial de 1024 posiciones;
+        // las llaves multiplos de 1024 comparten los bits bajos antes de dispersarse
+        int count = 20000;
+        for (int i = 1; i <= count; i++) {
+            index.put(i * 1024, i % 2 == 0 ? i : 0, "Article:" + i);
+        }
+        index.flush();
+        assertEquals(count + count / 2, index.size());
+
+        ArticleIndex loaded = new ArticleIndex(file);
+        assertTrue(loaded.load());
+        assertEquals(index.size(), loaded.size());
+        for (int i = 1; i <= count; i++) {
+            assertEquals("Article:" + i, loaded.find(i * 1024, 0));
+            if (i % 2 == 0) {
+                assertEquals("Article:" + i, loaded.find(0, i));
+            }
+        }
+        assertNull(loaded.find(1023, 0));
+    }
+
+    @Test
+    public void truncatedJournalIsReloadedAndExtended() throws IOException {
+
+        File file = new File(this.folder.getRoot(), "index.bin");
+        ArticleIndex index = new ArticleIndex(file);
+        for (int i = 1; i <= 10; i++) {
+            index.put(i, 0, "Article:" + i);
+        }
+        index.flush();
+        // simula una escritura interrumpida a mitad del ultimo registro
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        ArticleIndex reloaded = new ArticleIndex(file);
+        assertTrue(reloaded.load());
+        assertEquals(9, reloaded.size());
+        assertEquals("Article:9", reloaded.find(9, 0));
+        assertNull(reloaded.find(10, 0));
+
+        // los registros agregados tras la carga deben poder leerse de nuevo
+        reloaded.put(10, 0, "Article:10");
+        reloaded.put(11, 110, "Article:11");
+        reloaded.flush();
+        ArticleIndex again = new ArticleIndex(file);
+        assertTrue(again.load());
+        assertEquals(12, again.size());
+        for (int i = 1; i <= 11; i++) {
+            assertEquals("Article:" + i, again.find(i, 0));
+        }
+        assertEquals("Article:11", again.find(0, 110));
+    }
+
+    @Test
+    public void missingFileIsNotLoaded() throws IOException {
+        assertFalse(new ArticleIndex(new File(this.folder.getRoot(), "none.bin")).load());
+        assertFalse(new ArticleIndex(null).load());
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownFormatIsRejected() throws IOException {
+
+        File file = this.folder.newFile("other.bin");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x12345678);
+            out.writeInt(1);
+        }
+        new ArticleIndex(file).load();
+    }
+
+    @Test
+    public void unreadableFileIsSetAsideAndReplaced() throws IOException {
+
+        File file = this.folder.newFile("index.bin");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x12345678);
+            out.writeInt(1);
+            out.writeUTF("otro contenido");
+        }
+        ArticleIndex index = new ArticleIndex(file);
+        assertFalse(index.loadOrDiscard());
+        assertFalse(file.exists());
+        assertTrue(new File(file.getPath() + ".bad").isFile());
+        assertEquals(0, index.size());
+
+        // el archivo nuevo comienza con su cabecera y puede cargarse
+        index.put(1, 10, "Article:1");
+        index.flush();
+        ArticleIndex reloaded = new ArticleIndex(file);
+        assertTrue(reloaded.loadOrDiscard());
+        assertEquals("Article:1", reloaded.find(1, 0));
+        assertEquals("Article:1", reloaded.find(0, 10));
+    }
+}
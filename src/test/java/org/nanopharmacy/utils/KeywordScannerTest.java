@@ -0,0 +1,127 @@
+package org.nanopharmacy.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Compara los resultados de {@link KeywordScanner} con la busqueda mediante expresiones regulares
+ * que sustituye.
+ */
+public class KeywordScannerTest {
+
+    /** Caracteres de los textos aleatorios: letras en ambos casos, caracteres de palabra y separadores */
+    private static final String TEXT_CHARS = "abcABC_1 -.\n";
+
+    /** Caracteres de las palabras clave aleatorias */
+    private static final String KEYWORD_CHARS = "abcAB_ -";
+
+    /**
+     * Expresion regular con que se buscaban las frases como palabras completas.
+     */
+    private static Pattern wholeWordPattern(String phrase) {
+        return Pattern.compile("^" + Pattern.quote(phrase) + "\\W|\\W"
+                + Pattern.quote(phrase) + "\\W|\\W" + Pattern.quote(phrase) + "$",
+                Pattern.DOTALL + Pattern.CASE_INSENSITIVE);
+    }
+
+    private static String randomString(Random random, String chars, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void wholeWordsMatchRegexOnRandomText() {
+
+        Random random = new Random(20150729L);
+        for (int round = 0; round < 2000; round++) {
+            List<String> keywords = new ArrayList<>();
+            int count = 1 + random.nextInt(8);
+            for (int k = 0; k < count; k++) {
+                keywords.add(randomString(random, KEYWORD_CHARS, 1, 4));
+            }
+            KeywordScanner scanner = new KeywordScanner(keywords, true);
+            String text = randomString(random, TEXT_CHARS, 0, 40);
+            BitSet found = scanner.scan(text);
+            long mask = scanner.scanMask(text);
+            for (int k = 0; k < count; k++) {
+                boolean expected = wholeWordPattern(keywords.get(k)).matcher(text).find();
+                assertEquals("keyword [" + keywords.get(k) + "] in [" + text + "]", expected, found.get(k));
+                assertEquals("mask of [" + keywords.get(k) + "] in [" + text + "]", expected, (mask & (1L << k)) != 0);
+            }
+        }
+    }
+
+    @Test
+    public void substringsMatchContainsOnRandomText() {
+
+        Random random = new Random(42L);
+        for (int round = 0; round < 2000; round++) {
+            String[] keywords = new String[1 + random.nextInt(8)];
+            for (int k = 0; k < keywords.length; k++) {
+                keywords[k] = randomString(random, KEYWORD_CHARS, 1, 4);
+            }
+            KeywordScanner scanner = new KeywordScanner(keywords);
+            String text = randomString(random, TEXT_CHARS, 0, 40);
+            long mask = scanner.scanMask(text);
+            BitSet found = scanner.scan(text);
+            for (int k = 0; k < keywords.length; k++) {
+                boolean expected = text.toLowerCase().contains(keywords[k].toLowerCase());
+                assertEquals("keyword [" + keywords[k] + "] in [" + text + "]", expected, (mask & (1L << k)) != 0);
+                assertEquals("keyword [" + keywords[k] + "] in [" + text + "]", expected, found.get(k));
+            }
+        }
+    }
+
+    @Test
+    public void wholeWordBoundaries() {
+
+        KeywordScanner scanner = new KeywordScanner(Arrays.asList("BRAF", "breast cancer"), true);
+        assertTrue(scanner.scan("Mutations of braf-V600E").get(0));
+        assertTrue(scanner.scan("(BRAF)").get(0));
+        assertTrue(scanner.scan("BRAF mutant").get(0));
+        assertTrue(scanner.scan("mutant BRAF").get(0));
+        assertFalse(scanner.scan("BRAFV600E").get(0));
+        assertFalse(scanner.scan("the_braf gene").get(0));
+        assertFalse(scanner.scan("Cobraf").get(0));
+        // como la expresion regular, no se acepta una aparicion que abarca el texto completo
+        assertFalse(scanner.scan("BRAF").get(0));
+        assertTrue(scanner.scan("Early Breast Cancer screening").get(1));
+        assertFalse(scanner.scan("breast cancers").get(1));
+    }
+
+    @Test
+    public void overlappingKeywordsAreAllReported() {
+
+        KeywordScanner scanner = new KeywordScanner("prognosis", "gnosis", "sis", "predict");
+        assertEquals(0x7L, scanner.scanMask("A PROGNOSIS study"));
+        assertEquals(0x8L, scanner.scanMask("predictive value"));
+        assertEquals(0L, scanner.scanMask(null));
+    }
+
+    @Test
+    public void moreThanSixtyFourKeywords() {
+
+        List<String> keywords = new ArrayList<>();
+        for (int k = 0; k < 100; k++) {
+            keywords.add("term" + k);
+        }
+        KeywordScanner scanner = new KeywordScanner(keywords, true);
+        BitSet found = scanner.scan("uses term7, term70 and term99 but not term100");
+        assertEquals(3, found.cardinality());
+        assertTrue(found.get(7));
+        assertTrue(found.get(70));
+        assertTrue(found.get(99));
+    }
+}
@@ -0,0 +1,115 @@
+package org.nanopharmacy.utils;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Pruebas de {@link LongHashSet}.
+ */
+public class LongHashSetTest {
+
+    /**
+     * Posicion inicial de un valor en una tabla de {@code capacity} posiciones, con la misma funcion
+     * de dispersion que {@link LongHashSet}.
+     */
+    private static int slot(long value, int capacity) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (capacity - 1);
+    }
+
+    @Test
+    public void collidingValuesAreAllFound() {
+
+        // valores que comparten la posicion inicial en la tabla de 16 posiciones
+        long[] colliding = new long[7];
+        int n = 0;
+        for (long v = 1; n < colliding.length; v++) {
+            if (slot(v, 16) == 5) {
+                colliding[n++] = v;
+            }
+        }
+        LongHashSet set = new LongHashSet();
+        for (long v : colliding) {
+            assertTrue(set.add(v));
+        }
+        for (long v : colliding) {
+            assertTrue(set.contains(v));
+            assertFalse(set.add(v));
+        }
+        assertEquals(colliding.length, set.size());
+        for (long v = 1; v < 1000; v++) {
+            boolean expected = false;
+            for (long c : colliding) {
+                expected |= c == v;
+            }
+            assertEquals(expected, set.contains(v));
+        }
+    }
+
+    @Test
+    public void matchesHashSetAcrossResizes() {
+
+        Random random = new Random(7L);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 50000; i++) {
+            // mezcla valores pequeños, consecutivos y aleatorios, incluyendo negativos
+            long value = i % 3 == 0 ? 1 + random.nextInt(5000)
+                    : i % 3 == 1 ? ((long) i << 32) | 1L
+                    : random.nextLong();
+            if (value == 0L) {
+                continue;
+            }
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+        for (Long value : expected) {
+            assertTrue(set.contains(value));
+        }
+        for (int i = 0; i < 50000; i++) {
+            long value = random.nextLong();
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    @Test
+    public void extremeValues() {
+
+        LongHashSet set = new LongHashSet(1);
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertTrue(set.add(Long.MAX_VALUE));
+        assertTrue(set.add(-1L));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertTrue(set.contains(Long.MAX_VALUE));
+        assertTrue(set.contains(-1L));
+        assertFalse(set.contains(0L));
+        assertEquals(3, set.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroIsRejected() {
+        new LongHashSet().add(0L);
+    }
+
+    @Test
+    public void clearKeepsTheSetUsable() {
+
+        LongHashSet set = new LongHashSet();
+        for (long v = 1; v <= 1000; v++) {
+            set.add(v);
+        }
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(500L));
+        for (long v = 1; v <= 1000; v++) {
+            assertTrue(set.add(v * 31));
+        }
+        assertEquals(1000, set.size());
+        assertTrue(set.contains(31000L));
+    }
+}
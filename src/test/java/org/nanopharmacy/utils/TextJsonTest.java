@@ -0,0 +1,95 @@
+package org.nanopharmacy.utils;
+
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Compara el reemplazo de comillas de {@link Utils.TEXT#parseTextJson(String)} con los reemplazos
+ * encadenados que sustituye, y la extraccion combinada de {@code parseHTMLJson} con la de
+ * {@link Utils.TEXT#parseHTML(String)} seguida de {@code parseTextJson}.
+ */
+public class TextJsonTest {
+
+    /** Caracteres que se consideran comillas dobles */
+    private static final char[] QUOTES = {'"', '“', '”', '‟', '❝', '❞',
+        '〝', '〞', '＂'};
+
+    /**
+     * Reemplazos con que se cambiaban las comillas antes de recorrer el texto una sola vez.
+     */
+    private static String replaceAllQuotes(String txt) {
+        txt = txt.replaceAll("\"", "&quot;");
+        txt = txt.replaceAll('"' + "", "&quot;");
+        txt = txt.replaceAll('“' + "", "&quot;");
+        txt = txt.replaceAll('”' + "", "&quot;");
+        txt = txt.replaceAll('‟' + "", "&quot;");
+        txt = txt.replaceAll('❝' + "", "&quot;");
+        txt = txt.replaceAll('❞' + "", "&quot;");
+        txt = txt.replaceAll('〝' + "", "&quot;");
+        txt = txt.replaceAll('〞' + "", "&quot;");
+        txt = txt.replaceAll('＂' + "", "&quot;");
+        return txt;
+    }
+
+    @Test
+    public void eachQuoteIsEscaped() {
+
+        for (char quote : QUOTES) {
+            String txt = "a" + quote + "b" + quote + quote;
+            assertEquals("U+" + Integer.toHexString(quote), "a&quot;b&quot;&quot;", Utils.TEXT.parseTextJson(txt));
+            assertEquals("&quot;", Utils.TEXT.parseTextJson(String.valueOf(quote)));
+        }
+        // caracteres vecinos de las comillas que no se reemplazan
+        String others = "'‘’‚‛„†❜❟〜〟！＃";
+        assertSame(others, Utils.TEXT.parseTextJson(others));
+    }
+
+    @Test
+    public void textWithoutQuotesIsReturnedAsIs() {
+
+        String txt = "BRAF V600E in <i>melanoma</i> &amp; colorectal cancer";
+        assertSame(txt, Utils.TEXT.parseTextJson(txt));
+        String empty = "";
+        assertSame(empty, Utils.TEXT.parseTextJson(empty));
+    }
+
+    @Test
+    public void matchesChainedReplacesOnRandomText() {
+
+        Random random = new Random(18L);
+        String chars = "ab <>&;" + new String(QUOTES) + "‘〜";
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(30);
+            for (int i = 0; i < length; i++) {
+                sb.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            String txt = sb.toString();
+            assertEquals(txt, replaceAllQuotes(txt), Utils.TEXT.parseTextJson(txt));
+        }
+    }
+
+    @Test
+    public void fusedParseMatchesTwoSteps() throws IOException, InterruptedException {
+
+        String[] samples = {
+            "Plain text without markup",
+            "<p>The \"BRAF\" <b>V600E</b> mutation</p>",
+            "<div class=\"abstract\">Results &quot;quoted&quot; &amp; “styled” &lt;tag&gt; caf&eacute;</div>",
+            "<script>var a = \"x\";</script><p>Text ＂wide＂ and 〝cjk〞</p><!-- \"comment\" -->",
+            "<table><tr><td>❝A❞</td><td>B&#34;C</td></tr></table>",
+            "Unclosed <i>italic \"text",
+            ""
+        };
+        for (String sample : samples) {
+            String twoSteps = Utils.TEXT.parseTextJson(Utils.TEXT.parseHTML(sample));
+            assertEquals(sample, twoSteps, Utils.TEXT.parseHTMLJson(sample));
+            StringBuilder out = new StringBuilder("prefix:");
+            Utils.TEXT.parseHTMLJson(sample, out);
+            assertEquals(sample, "prefix:" + twoSteps, out.toString());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.nanopharmacy.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Pruebas de la admision, el desalojo, el vencimiento y el respaldo de {@link TinyLfuCache}.
+ */
+public class TinyLfuCacheTest {
+
+    /** Ejecuta los recalculos en el hilo que los solicita */
+    private static final Executor DIRECT = Runnable::run;
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sizeIsBounded() {
+
+        TinyLfuCache cache = new TinyLfuCache(100, HOUR, HOUR, DIRECT);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("k" + i, "v" + i);
+            assertTrue(cache.size() <= 100);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(9900, cache.getEvictions());
+    }
+
+    @Test
+    public void frequentKeysSurviveAScan() {
+
+        TinyLfuCache cache = new TinyLfuCache(100, HOUR, HOUR, DIRECT);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get("hot" + i) == null) {
+                    cache.put("hot" + i, "value" + i);
+                }
+            }
+        }
+        // una rafaga de llaves consultadas una sola vez
+        for (int i = 0; i < 10000; i++) {
+            if (cache.get("scan" + i) == null) {
+                cache.put("scan" + i, "x");
+            }
+        }
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (("value" + i).equals(cache.get("hot" + i))) {
+                survivors++;
+            }
+        }
+        assertTrue("sobrevivieron " + survivors + " de 50", survivors >= 45);
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void newKeyIsNotAdmittedOverAFrequentVictim() {
+
+        TinyLfuCache cache = new TinyLfuCache(10, HOUR, HOUR, DIRECT);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, "v" + i);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.get("k" + i);
+            }
+        }
+        // k9 ocupa la ventana de admision y compite con la misma frecuencia que las demas; las
+        // llaves k0 a k8, en la region principal, no ceden su lugar a llaves consultadas una vez
+        cache.put("once", "x");
+        cache.put("twice", "y");
+        cache.put("thrice", "z");
+        assertEquals(10, cache.size());
+        assertNull(cache.get("once"));
+        assertNull(cache.get("twice"));
+        for (int i = 0; i < 9; i++) {
+            assertEquals("v" + i, cache.get("k" + i));
+        }
+    }
+
+    @Test
+    public void putReplacesAndInvalidateRemoves() {
+
+        TinyLfuCache cache = new TinyLfuCache(10, HOUR, HOUR, DIRECT);
+        cache.put("a", "1");
+        cache.put("a", "2");
+        assertEquals("2", cache.get("a"));
+        assertEquals(1, cache.size());
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        cache.put("b", "3");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void entriesExpire() throws InterruptedException {
+
+        TinyLfuCache cache = new TinyLfuCache(10, 50, 50, DIRECT);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(120);
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void staleEntryIsRefreshedInBackground() throws InterruptedException {
+
+        TinyLfuCache cache = new TinyLfuCache(10, HOUR, 20, DIRECT);
+        cache.put("a", "old");
+        assertEquals("old", cache.get("a", key -> "new"));
+        Thread.sleep(60);
+        // se entrega el valor anterior mientras se calcula el nuevo
+        assertEquals("old", cache.get("a", key -> "new"));
+        assertEquals("new", cache.get("a"));
+        assertEquals(1, cache.getRefreshes());
+
+        Thread.sleep(60);
+        // un recalculo fallido conserva el valor
+        assertEquals("new", cache.get("a", key -> null));
+        assertEquals("new", cache.get("a"));
+        assertEquals(1, cache.getRefreshFailures());
+    }
+
+    @Test
+    public void saveAndLoadKeepEntries() throws IOException {
+
+        File file = new File(this.folder.getRoot(), "cache.bin");
+        TinyLfuCache cache = new TinyLfuCache(100, HOUR, HOUR, DIRECT);
+        for (int i = 0; i < 20; i++) {
+            cache.put("k" + i, "valor á" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            cache.get("k0");
+        }
+        cache.save(file);
+
+        TinyLfuCache restored = new TinyLfuCache(100, HOUR, HOUR, DIRECT);
+        assertEquals(20, restored.load(file));
+        for (int i = 0; i < 20; i++) {
+            assertEquals("valor á" + i, restored.get("k" + i));
+        }
+        assertEquals(0, new TinyLfuCache(10, HOUR, HOUR, DIRECT).load(new File(this.folder.getRoot(), "none.bin")));
+    }
+}